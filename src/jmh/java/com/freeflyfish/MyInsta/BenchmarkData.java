@@ -0,0 +1,81 @@
+package com.freeflyfish.MyInsta;
+
+import com.freeflyfish.MyInsta.entity.Comment;
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaRendition;
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Данные для бенчмарков, похожие на настоящие: у поста автор и карусель из трех фото
+ * с уменьшенными копиями, у комментария - автор и пост. ID - в диапазоне TSID.
+ */
+public final class BenchmarkData {
+
+    private static final long BASE_ID = 600_000_000_000_000_000L;
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private BenchmarkData() {
+    }
+
+    public static List<Post> posts(int count) {
+        List<Post> posts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Post post = new Post();
+            post.setId(BASE_ID + i);
+            post.setTitle("Закат на море #" + i);
+            post.setCaption("Вечер на побережье, #sunset #sea и немного @friend_" + i);
+            post.setCreatedDate(NOW.minusMinutes(i));
+            post.setLikeCount(i * 7L);
+            post.setUser(user(i % 50));
+            for (int position = 0; position < 3; position++) {
+                post.getMediaFiles().add(mediaFile(post, position));
+            }
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    public static List<Comment> comments(int count) {
+        Post post = posts(1).get(0);
+        List<Comment> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Comment comment = new Comment();
+            comment.setId(BASE_ID + 1_000_000 + i);
+            comment.setMessage("Отличный кадр! Где это снято? " + i);
+            comment.setCreatedDate(NOW.minusSeconds(i));
+            comment.setUser(user(i % 50));
+            comment.setPost(post);
+            comments.add(comment);
+        }
+        return comments;
+    }
+
+    private static User user(int index) {
+        User user = new User();
+        user.setId(BASE_ID + 2_000_000 + index);
+        user.setUsername("photographer_" + index);
+        return user;
+    }
+
+    private static MediaFile mediaFile(Post post, int position) {
+        String hash = Long.toHexString(post.getId()) + "0" + position;
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setId(post.getId() * 10 + position);
+        mediaFile.setFilePath("photos/" + hash + ".jpg");
+        mediaFile.setMediaType(MediaType.PHOTO);
+        mediaFile.setPosition(position);
+        mediaFile.setWidth(1080);
+        mediaFile.setHeight(1350);
+        mediaFile.setRenditions(new ArrayList<>(List.of(
+                new MediaRendition(640, 800, "photos/" + hash + "_w640.jpg"),
+                new MediaRendition(320, 400, "photos/" + hash + "_w320.jpg"))));
+        mediaFile.setPost(post);
+        return mediaFile;
+    }
+}
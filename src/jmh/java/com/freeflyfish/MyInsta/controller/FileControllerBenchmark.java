@@ -0,0 +1,41 @@
+package com.freeflyfish.MyInsta.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение Content-Type по ключу файла - выполняется при каждой отдаче файла.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileControllerBenchmark {
+
+    private static final String[] KEYS = {
+            "photos/ab/cd/abcd0123.jpg", "photos/ef/01/ef012345_w320.jpg", "photos/12/34/12345678.png",
+            "photos/56/78/5678abcd.webp", "videos/9a/bc/9abcdef0.mp4", "videos/de/f0/def01234.MOV",
+            "photos/old-upload.gif", "files/unknown.bin"
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void determineContentType(Blackhole blackhole) {
+        for (String key : KEYS) {
+            blackhole.consume(FileController.determineContentType(key));
+        }
+    }
+}
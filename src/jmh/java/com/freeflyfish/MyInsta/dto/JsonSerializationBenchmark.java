@@ -0,0 +1,57 @@
+package com.freeflyfish.MyInsta.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freeflyfish.MyInsta.BenchmarkData;
+import com.freeflyfish.MyInsta.util.DTOConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов в JSON тем же ObjectMapper, что строит Spring (модуль java.time и т.д.).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<PostDTO> posts;
+    private List<CommentDTO> comments;
+
+    @Setup
+    public void setUp() {
+        DTOConverter dtoConverter = new DTOConverter();
+        posts = dtoConverter.convertToPostDTOList(BenchmarkData.posts(size));
+        comments = dtoConverter.convertToCommentDTOList(BenchmarkData.comments(size));
+    }
+
+    @Benchmark
+    public byte[] postList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(posts);
+    }
+
+    @Benchmark
+    public byte[] commentList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(comments);
+    }
+}
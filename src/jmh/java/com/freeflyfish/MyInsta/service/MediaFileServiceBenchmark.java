@@ -0,0 +1,60 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.MediaType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определение типа медиафайла по имени - выполняется для каждого файла загрузки.
+ * Имена разного регистра и типа, чтобы JIT не свел проверку к одной ветке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediaFileServiceBenchmark {
+
+    private static final String[] FILE_NAMES = {
+            "IMG_0001.JPG", "photo.jpeg", "screenshot.png", "animation.gif", "scan.bmp", "sticker.webp",
+            "clip.mp4", "VID_0002.MOV", "old.avi", "record.webm", "archive.2024.photo.jpg", "movie.wmv"
+    };
+
+    private MediaFileService mediaFileService;
+
+    @Setup
+    public void setUp() {
+        // Для определения типа зависимости не нужны
+        mediaFileService = new MediaFileService(null, null, null, null, null, null,
+                "target/jmh-tmp", 1, false, new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        mediaFileService.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(12)
+    public void determineMediaType(Blackhole blackhole) {
+        for (String fileName : FILE_NAMES) {
+            MediaType mediaType = mediaFileService.determineMediaType(fileName);
+            blackhole.consume(mediaType);
+        }
+    }
+}
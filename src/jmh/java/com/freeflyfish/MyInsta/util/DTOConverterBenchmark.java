@@ -0,0 +1,47 @@
+package com.freeflyfish.MyInsta.util;
+
+import com.freeflyfish.MyInsta.BenchmarkData;
+import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.entity.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование постов в DTO: страница ленты (20), поиск (100) и список постов пользователя (1000).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DTOConverterBenchmark {
+
+    @Param({"20", "100", "1000"})
+    private int size;
+
+    private final DTOConverter dtoConverter = new DTOConverter();
+    private List<Post> posts;
+
+    @Setup
+    public void setUp() {
+        posts = BenchmarkData.posts(size);
+    }
+
+    @Benchmark
+    public List<PostDTO> convertToPostDTOList() {
+        return dtoConverter.convertToPostDTOList(posts);
+    }
+}
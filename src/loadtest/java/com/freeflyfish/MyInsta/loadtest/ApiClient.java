@@ -0,0 +1,115 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * HTTP-клиент приложения для наполнения данных и нагрузки.
+ * Запросы строятся отдельно от отправки, чтобы в замер попадала только отправка
+ * (а не, например, генерация картинки для нового поста).
+ */
+public class ApiClient {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ApiClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public HttpRequest get(String path, String token) {
+        return builder(path, token).GET().build();
+    }
+
+    public HttpRequest postJson(String path, String token, Object body) {
+        try {
+            return builder(path, token)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Запрос создания поста: поля title и caption и файлы в части mediaFiles.
+     */
+    public HttpRequest createPost(String token, String title, String caption, List<byte[]> images) {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeField(body, boundary, "title", title);
+        writeField(body, boundary, "caption", caption);
+        for (int i = 0; i < images.size(); i++) {
+            writeAscii(body, "--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"mediaFiles\"; filename=\"photo" + i + ".png\"\r\n"
+                    + "Content-Type: image/png\r\n\r\n");
+            body.writeBytes(images.get(i));
+            writeAscii(body, "\r\n");
+        }
+        writeAscii(body, "--" + boundary + "--\r\n");
+
+        return builder("/api/posts", token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    /**
+     * Отправляет запрос и читает тело ответа целиком (как это делал бы клиент).
+     */
+    public HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Отправляет запрос, ожидая успешного ответа, и разбирает JSON ответа.
+     * Используется при наполнении данных, где любая ошибка делает прогон бессмысленным.
+     */
+    public JsonNode sendForJson(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send(request);
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " -> "
+                    + response.statusCode() + ": " + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return response.body().length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+    }
+
+    private HttpRequest.Builder builder(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private static void writeField(ByteArrayOutputStream body, String boundary, String name, String value) {
+        writeAscii(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n\r\n");
+        body.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        writeAscii(body, "\r\n");
+    }
+
+    private static void writeAscii(ByteArrayOutputStream body, String text) {
+        body.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
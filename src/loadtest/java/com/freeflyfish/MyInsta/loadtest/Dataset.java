@@ -0,0 +1,52 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import java.util.List;
+
+/**
+ * Созданные при наполнении данные, из которых нагрузка выбирает пользователей, посты и файлы.
+ */
+public class Dataset {
+
+    private final List<SeededUser> users;
+    private final List<Long> postIds;
+    private final List<String> fileUrls;
+
+    public Dataset(List<SeededUser> users, List<Long> postIds, List<String> fileUrls) {
+        this.users = List.copyOf(users);
+        this.postIds = List.copyOf(postIds);
+        this.fileUrls = List.copyOf(fileUrls);
+    }
+
+    public List<SeededUser> getUsers() {
+        return users;
+    }
+
+    public List<Long> getPostIds() {
+        return postIds;
+    }
+
+    public List<String> getFileUrls() {
+        return fileUrls;
+    }
+
+    /**
+     * Зарегистрированный пользователь и его токен.
+     */
+    public static class SeededUser {
+        private final long id;
+        private final String token;
+
+        public SeededUser(long id, String token) {
+            this.id = id;
+            this.token = token;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Наполняет приложение данными через его же API: пользователи, подписки, посты с фото
+ * и комментарии. Через API, а не прямо в БД, чтобы одинаково работать со встроенным
+ * приложением и с уже запущенным, и чтобы заполнились ленты подписчиков и счетчики.
+ *
+ * Случайность каждого шага выводится из loadtest.seed и номера элемента, поэтому
+ * при тех же параметрах набор данных (кто на кого подписан, сколько фото в посте)
+ * получается тем же, сколько бы потоков его ни создавало.
+ */
+public class DatasetSeeder {
+
+    private final ApiClient apiClient;
+    private final LoadTestConfig config;
+
+    public DatasetSeeder(ApiClient apiClient, LoadTestConfig config) {
+        this.apiClient = apiClient;
+        this.config = config;
+    }
+
+    public Dataset seed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+        try {
+            // Имена уникальны для прогона, чтобы повторный прогон на той же базе не упал на регистрации
+            String runTag = Long.toString(System.currentTimeMillis(), 36);
+
+            List<Callable<Dataset.SeededUser>> registrations = new ArrayList<>();
+            for (int i = 0; i < config.getUsers(); i++) {
+                String username = "lt_" + runTag + "_" + i;
+                registrations.add(() -> register(username));
+            }
+            List<Dataset.SeededUser> users = runAll(executor, registrations);
+            log("пользователей: " + users.size());
+
+            // Подписки - до постов, чтобы посты разошлись по лентам подписчиков
+            List<Callable<Integer>> follows = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                Dataset.SeededUser follower = users.get(i);
+                Random random = random(1, i);
+                follows.add(() -> follow(follower, users, random));
+            }
+            int followCount = runAll(executor, follows).stream().mapToInt(Integer::intValue).sum();
+            log("подписок: " + followCount);
+
+            List<Callable<JsonNode>> posts = new ArrayList<>();
+            for (int i = 0; i < users.size() * config.getPostsPerUser(); i++) {
+                Dataset.SeededUser author = users.get(i % users.size());
+                Random random = random(2, i);
+                int number = i;
+                posts.add(() -> createPost(author, random, number));
+            }
+            List<Long> postIds = new ArrayList<>();
+            List<String> fileUrls = new ArrayList<>();
+            for (JsonNode post : runAll(executor, posts)) {
+                postIds.add(post.get("id").asLong());
+                for (JsonNode mediaFile : post.get("mediaFiles")) {
+                    fileUrls.add(mediaFile.get("fileUrl").asText());
+                }
+            }
+            log("постов: " + postIds.size() + ", файлов: " + fileUrls.size());
+
+            List<Callable<Integer>> comments = new ArrayList<>();
+            for (int i = 0; i < postIds.size(); i++) {
+                long postId = postIds.get(i);
+                Random random = random(3, i);
+                comments.add(() -> comment(postId, users, random));
+            }
+            int commentCount = runAll(executor, comments).stream().mapToInt(Integer::intValue).sum();
+            log("комментариев: " + commentCount);
+
+            return new Dataset(users, postIds, fileUrls);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Dataset.SeededUser register(String username) throws Exception {
+        JsonNode response = apiClient.sendForJson(apiClient.postJson("/api/auth/register", null,
+                Map.of("username", username, "password", "loadtest-password")));
+        return new Dataset.SeededUser(response.get("userId").asLong(), response.get("token").asText());
+    }
+
+    private int follow(Dataset.SeededUser follower, List<Dataset.SeededUser> users, Random random) throws Exception {
+        int count = Math.min(config.getFollowsPerUser(), users.size() - 1);
+        List<Dataset.SeededUser> candidates = new ArrayList<>(users);
+        candidates.remove(follower);
+        for (int i = 0; i < count; i++) {
+            Dataset.SeededUser followee = candidates.remove(random.nextInt(candidates.size()));
+            apiClient.sendForJson(apiClient.postJson("/api/users/" + followee.getId() + "/follow",
+                    follower.getToken(), Map.of()));
+        }
+        return count;
+    }
+
+    private JsonNode createPost(Dataset.SeededUser author, Random random, int number) throws Exception {
+        // Каждый третий пост - карусель из двух фото
+        int imageCount = random.nextInt(3) == 0 ? 2 : 1;
+        List<byte[]> images = new ArrayList<>();
+        for (int i = 0; i < imageCount; i++) {
+            images.add(SyntheticImages.png(random, config.getImageSize()));
+        }
+        JsonNode response = apiClient.sendForJson(apiClient.createPost(author.getToken(),
+                "Пост " + number, "Нагрузочный тест #loadtest", images));
+        return response.get("post");
+    }
+
+    private int comment(long postId, List<Dataset.SeededUser> users, Random random) throws Exception {
+        for (int i = 0; i < config.getCommentsPerPost(); i++) {
+            Dataset.SeededUser author = users.get(random.nextInt(users.size()));
+            apiClient.sendForJson(apiClient.postJson("/api/comments", author.getToken(),
+                    Map.of("message", "Комментарий " + i, "postId", postId)));
+        }
+        return config.getCommentsPerPost();
+    }
+
+    private Random random(int step, int index) {
+        return new Random(config.getSeed() * 1_000_003L + step * 10_000_019L + index);
+    }
+
+    private static <T> List<T> runAll(ExecutorService executor, List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : executor.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        return results;
+    }
+
+    private static void log(String message) {
+        System.out.println("[наполнение] " + message);
+    }
+}
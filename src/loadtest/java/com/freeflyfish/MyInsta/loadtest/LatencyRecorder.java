@@ -0,0 +1,125 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Времена ответов по операциям. У каждого потока нагрузки свой экземпляр (без синхронизации
+ * на горячем пути), в конце прогона они объединяются через {@link #merge}.
+ * Хранятся все замеры, поэтому квантили точные, в том числе p99.9.
+ */
+public class LatencyRecorder {
+
+    private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+
+    public void record(Operation operation, long nanos, boolean success) {
+        Samples operationSamples = samples.computeIfAbsent(operation, key -> new Samples());
+        operationSamples.add(nanos);
+        if (!success) {
+            operationSamples.errors++;
+        }
+    }
+
+    public void merge(LatencyRecorder other) {
+        other.samples.forEach((operation, otherSamples) -> {
+            Samples operationSamples = samples.computeIfAbsent(operation, key -> new Samples());
+            for (int i = 0; i < otherSamples.size; i++) {
+                operationSamples.add(otherSamples.values[i]);
+            }
+            operationSamples.errors += otherSamples.errors;
+        });
+    }
+
+    public Map<Operation, Summary> summarize(double seconds) {
+        Map<Operation, Summary> summaries = new EnumMap<>(Operation.class);
+        samples.forEach((operation, operationSamples) ->
+                summaries.put(operation, operationSamples.summarize(seconds)));
+        return summaries;
+    }
+
+    /**
+     * Итог по операции: количество, ошибки, пропускная способность и квантили в миллисекундах.
+     */
+    public static class Summary {
+        private final long requests;
+        private final long errors;
+        private final double throughput;
+        private final double p50;
+        private final double p99;
+        private final double p999;
+        private final double max;
+
+        Summary(long requests, long errors, double throughput, double p50, double p99, double p999, double max) {
+            this.requests = requests;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+    }
+
+    private static class Samples {
+        private long[] values = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        Summary summarize(double seconds) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return new Summary(size, errors, size / seconds,
+                    millis(quantile(sorted, 0.5)), millis(quantile(sorted, 0.99)),
+                    millis(quantile(sorted, 0.999)), millis(size == 0 ? 0 : sorted[size - 1]));
+        }
+
+        // Квантиль по методу "ближайшего ранга"
+        private static long quantile(long[] sorted, double q) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(q * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
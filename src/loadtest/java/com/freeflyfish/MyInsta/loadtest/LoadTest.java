@@ -0,0 +1,146 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.freeflyfish.MyInsta.MyInstaApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Нагрузочный тест: наполняет приложение синтетическими данными и гоняет смешанную нагрузку,
+ * после чего печатает пропускную способность и p50/p99/p99.9 по каждой операции
+ * и сохраняет их в JSON (loadtest.result).
+ *
+ * Без loadtest.target приложение запускается здесь же на случайном порту: с базой H2
+ * в памяти (loadtest.database=h2) или с PostgreSQL из application.properties
+ * (loadtest.database=postgres); файлы пишутся во временную папку.
+ * С loadtest.target=http://host:port нагружается уже запущенный экземпляр.
+ *
+ *   mvn -P loadtest -DskipTests test-compile exec:java -Dloadtest.users=200 -Dloadtest.duration-seconds=120
+ *
+ * Сравнение обычных и виртуальных потоков на загрузке и отдаче файлов (под JDK 21):
+ *
+ *   mvn -P loadtest,java21 -DskipTests test-compile exec:java -Dloadtest.mix=create-post=1,file=4
+ *       -Dloadtest.concurrency=200 -Dloadtest.tomcat-threads=20 -Dloadtest.virtual-threads=false|true
+ *
+ * При числе клиентов больше пула Tomcat запросы с обычными потоками ждут в очереди,
+ * а с виртуальными поток есть у каждого запроса.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig();
+        System.out.println("Параметры: " + config);
+
+        ConfigurableApplicationContext context = null;
+        Path storageRoot = null;
+        String baseUrl = config.getTarget();
+        try {
+            if (config.isEmbedded()) {
+                storageRoot = Files.createTempDirectory("myinsta-loadtest");
+                context = startApplication(config, storageRoot);
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                baseUrl = "http://localhost:" + port;
+                System.out.println("Приложение запущено: " + baseUrl + " (база: " + config.getDatabase() + ")");
+            }
+
+            ApiClient apiClient = new ApiClient(baseUrl);
+            Dataset dataset = new DatasetSeeder(apiClient, config).seed();
+
+            System.out.println("Нагрузка: прогрев " + config.getWarmup().toSeconds() + " с, замер "
+                    + config.getDuration().toSeconds() + " с, потоков " + config.getConcurrency());
+            LatencyRecorder recorder = new Workload(apiClient, config, dataset).run();
+
+            Map<Operation, LatencyRecorder.Summary> summaries = recorder.summarize(config.getDuration().toMillis() / 1000.0);
+            printReport(summaries);
+            writeResult(config, baseUrl, summaries);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (storageRoot != null) {
+                FileSystemUtils.deleteRecursively(storageRoot);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestConfig config, Path storageRoot) {
+        // Аргументы командной строки имеют приоритет над application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.freeflyfish.MyInsta=WARN",
+                "--spring.threads.virtual.enabled=" + config.isVirtualThreads(),
+                "--server.tomcat.threads.max=" + config.getTomcatThreads(),
+                "--myinsta.storage.type=local",
+                "--myinsta.storage.local.root=" + storageRoot,
+                "--myinsta.storage.temp-dir=" + storageRoot.resolve("tmp"),
+                "--myinsta.upload.session-dir=" + storageRoot.resolve("tmp/sessions")));
+        if ("h2".equals(config.getDatabase())) {
+            args.addAll(List.of(
+                    "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                    "--spring.datasource.username=sa",
+                    "--spring.datasource.password=",
+                    "--spring.jpa.hibernate.ddl-auto=create-drop",
+                    "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"));
+        } else if (!"postgres".equals(config.getDatabase())) {
+            throw new IllegalArgumentException("loadtest.database должен быть h2 или postgres: " + config.getDatabase());
+        }
+        return SpringApplication.run(MyInstaApplication.class, args.toArray(new String[0]));
+    }
+
+    private static void printReport(Map<Operation, LatencyRecorder.Summary> summaries) {
+        System.out.println();
+        System.out.printf("%-32s %9s %7s %9s %9s %9s %9s %9s%n",
+                "Операция", "Запросов", "Ошибок", "Запр/с", "p50 мс", "p99 мс", "p99.9 мс", "max мс");
+        double total = 0;
+        for (Map.Entry<Operation, LatencyRecorder.Summary> entry : summaries.entrySet()) {
+            LatencyRecorder.Summary summary = entry.getValue();
+            total += summary.getThroughput();
+            System.out.printf("%-32s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().getEndpoint(), summary.getRequests(), summary.getErrors(),
+                    summary.getThroughput(), summary.getP50(), summary.getP99(), summary.getP999(), summary.getMax());
+        }
+        System.out.printf("Всего: %.1f запр/с%n", total);
+    }
+
+    private static void writeResult(LoadTestConfig config, String baseUrl,
+                                    Map<Operation, LatencyRecorder.Summary> summaries) throws Exception {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        summaries.forEach((operation, summary) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("endpoint", operation.getEndpoint());
+            values.put("requests", summary.getRequests());
+            values.put("errors", summary.getErrors());
+            values.put("throughputPerSecond", summary.getThroughput());
+            values.put("p50Ms", summary.getP50());
+            values.put("p99Ms", summary.getP99());
+            values.put("p999Ms", summary.getP999());
+            values.put("maxMs", summary.getMax());
+            operations.put(operation.getName(), values);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("target", config.isEmbedded() ? "embedded/" + config.getDatabase() : baseUrl);
+        result.put("config", config.toString());
+        result.put("operations", operations);
+
+        Path path = Path.of(config.getResult());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), result);
+        System.out.println("Результаты сохранены в " + path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,136 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Параметры нагрузочного теста. Задаются системными свойствами (-Dloadtest.users=200 и т.д.),
+ * у каждого есть значение по умолчанию, рассчитанное на запуск на ноутбуке за пару минут.
+ */
+public class LoadTestConfig {
+
+    // Пустой адрес - приложение запускается внутри теста
+    private final String target = property("loadtest.target", "");
+    // h2 - встроенная база в памяти, postgres - база из application.properties
+    private final String database = property("loadtest.database", "h2");
+
+    private final int users = intProperty("loadtest.users", 50);
+    private final int followsPerUser = intProperty("loadtest.follows-per-user", 10);
+    private final int postsPerUser = intProperty("loadtest.posts-per-user", 5);
+    private final int commentsPerPost = intProperty("loadtest.comments-per-post", 3);
+    private final int imageSize = intProperty("loadtest.image-size", 256);
+
+    // Режим встроенного приложения: виртуальные потоки (Java 21) и размер пула Tomcat
+    private final boolean virtualThreads = Boolean.parseBoolean(property("loadtest.virtual-threads", "false"));
+    private final int tomcatThreads = intProperty("loadtest.tomcat-threads", 200);
+
+    private final int concurrency = intProperty("loadtest.concurrency", 16);
+    private final Duration warmup = Duration.ofSeconds(intProperty("loadtest.warmup-seconds", 10));
+    private final Duration duration = Duration.ofSeconds(intProperty("loadtest.duration-seconds", 60));
+    private final long seed = Long.parseLong(property("loadtest.seed", "42"));
+    private final String result = property("loadtest.result", "target/loadtest-result.json");
+
+    // Доли операций в смеси (веса, не обязательно в сумме 100)
+    private final Map<Operation, Integer> mix = parseMix(property("loadtest.mix",
+            "feed=30,timeline=15,post=20,comments=12,comment-create=6,create-post=2,file=15"));
+
+    public String getTarget() {
+        return target;
+    }
+
+    public boolean isEmbedded() {
+        return target.isBlank();
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getFollowsPerUser() {
+        return followsPerUser;
+    }
+
+    public int getPostsPerUser() {
+        return postsPerUser;
+    }
+
+    public int getCommentsPerPost() {
+        return commentsPerPost;
+    }
+
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getTomcatThreads() {
+        return tomcatThreads;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", follows/user=" + followsPerUser + ", posts/user=" + postsPerUser
+                + ", comments/post=" + commentsPerPost + ", image=" + imageSize + "px"
+                + ", virtual-threads=" + virtualThreads + ", tomcat-threads=" + tomcatThreads
+                + ", concurrency=" + concurrency + ", warmup=" + warmup.toSeconds() + "s"
+                + ", duration=" + duration.toSeconds() + "s, seed=" + seed + ", mix=" + mix;
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Неверный элемент loadtest.mix: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(Operation.byName(parts[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("В loadtest.mix нет ни одной операции");
+        }
+        return mix;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(property(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+/**
+ * Операции смешанной нагрузки. Имя операции - ключ в loadtest.mix и строка отчета.
+ */
+public enum Operation {
+
+    FEED("feed", "GET /api/posts"),
+    TIMELINE("timeline", "GET /api/users/{id}/timeline"),
+    POST("post", "GET /api/posts/{id}"),
+    COMMENTS("comments", "GET /api/comments/post/{id}"),
+    COMMENT_CREATE("comment-create", "POST /api/comments"),
+    CREATE_POST("create-post", "POST /api/posts (multipart)"),
+    FILE("file", "GET /api/files/**");
+
+    private final String name;
+    private final String endpoint;
+
+    Operation(String name, String endpoint) {
+        this.name = name;
+        this.endpoint = endpoint;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public static Operation byName(String name) {
+        for (Operation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная операция: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,35 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Генерирует PNG для новых постов. Картинки шумовые: каждая уникальна (хранилище
+ * адресуется содержимым и не дедуплицирует их) и почти не сжимается, поэтому размер
+ * файла близок к size * size * 3 байт, как у настоящего фото того же разрешения.
+ */
+public final class SyntheticImages {
+
+    private SyntheticImages() {
+    }
+
+    public static byte[] png(Random random, int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
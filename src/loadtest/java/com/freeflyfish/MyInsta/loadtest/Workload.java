@@ -0,0 +1,132 @@
+package com.freeflyfish.MyInsta.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Смешанная нагрузка по замкнутой модели: loadtest.concurrency потоков отправляют запросы
+ * один за другим без пауз, выбирая операцию по весам из loadtest.mix.
+ * Первые loadtest.warmup-seconds не замеряются (прогрев JIT, кэшей и пула соединений).
+ */
+public class Workload {
+
+    private final ApiClient apiClient;
+    private final LoadTestConfig config;
+    private final Dataset dataset;
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    public Workload(ApiClient apiClient, LoadTestConfig config, Dataset dataset) {
+        this.apiClient = apiClient;
+        this.config = config;
+        this.dataset = dataset;
+
+        Map<Operation, Integer> mix = config.getMix();
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * @return замеры всех потоков за время измерения
+     */
+    public LatencyRecorder run() throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + config.getWarmup().toNanos();
+        long measureUntil = measureFrom + config.getDuration().toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+        try {
+            List<Future<LatencyRecorder>> workers = new ArrayList<>();
+            for (int i = 0; i < config.getConcurrency(); i++) {
+                Random random = new Random(config.getSeed() * 7_919L + i);
+                workers.add(executor.submit(() -> runWorker(random, measureFrom, measureUntil)));
+            }
+            LatencyRecorder total = new LatencyRecorder();
+            for (Future<LatencyRecorder> worker : workers) {
+                total.merge(worker.get());
+            }
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private LatencyRecorder runWorker(Random random, long measureFrom, long measureUntil) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        while (true) {
+            Operation operation = pick(random);
+            // Запрос (в том числе картинка нового поста) готовится до начала замера
+            HttpRequest request = prepare(operation, random);
+
+            long sentAt = System.nanoTime();
+            if (sentAt >= measureUntil) {
+                return recorder;
+            }
+            boolean success;
+            try {
+                HttpResponse<byte[]> response = apiClient.send(request);
+                success = response.statusCode() / 100 == 2;
+            } catch (IOException e) {
+                success = false;
+            }
+            long elapsed = System.nanoTime() - sentAt;
+
+            if (sentAt >= measureFrom) {
+                recorder.record(operation, elapsed, success);
+            }
+        }
+    }
+
+    private Operation pick(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest prepare(Operation operation, Random random) {
+        Dataset.SeededUser user = pickFrom(dataset.getUsers(), random);
+        switch (operation) {
+            case FEED:
+                return apiClient.get("/api/posts?limit=20", user.getToken());
+            case TIMELINE:
+                return apiClient.get("/api/users/" + user.getId() + "/timeline?limit=20", user.getToken());
+            case POST:
+                return apiClient.get("/api/posts/" + pickFrom(dataset.getPostIds(), random), user.getToken());
+            case COMMENTS:
+                return apiClient.get("/api/comments/post/" + pickFrom(dataset.getPostIds(), random), user.getToken());
+            case COMMENT_CREATE:
+                return apiClient.postJson("/api/comments", user.getToken(), Map.of(
+                        "message", "Комментарий под нагрузкой",
+                        "postId", pickFrom(dataset.getPostIds(), random)));
+            case CREATE_POST:
+                return apiClient.createPost(user.getToken(), "Новый пост", "Создан под нагрузкой",
+                        List.of(SyntheticImages.png(random, config.getImageSize())));
+            case FILE:
+                return apiClient.get(pickFrom(dataset.getFileUrls(), random), null);
+            default:
+                throw new IllegalArgumentException("Неизвестная операция: " + operation);
+        }
+    }
+
+    private static <T> T pickFrom(List<T> values, Random random) {
+        return values.get(random.nextInt(values.size()));
+    }
+}
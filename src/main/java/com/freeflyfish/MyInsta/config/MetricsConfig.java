@@ -0,0 +1,47 @@
+package com.freeflyfish.MyInsta.config;
+
+import com.freeflyfish.MyInsta.metrics.QueryCountInspector;
+import com.freeflyfish.MyInsta.metrics.RequestMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Метрики приложения (отдаются в формате Prometheus на /actuator/prometheus).
+ *
+ * Spring Boot сам публикует время ответа по эндпоинтам (http.server.requests),
+ * статистику Hibernate (hibernate.*, нужна hibernate.generate_statistics=true)
+ * и ожидание соединения из пула (hikaricp.connections.acquire).
+ * Здесь добавляется число SQL-запросов на HTTP-запрос; метрики загрузки и отдачи
+ * файлов пишут MediaFileService и FileController.
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final RequestMetricsInterceptor requestMetricsInterceptor;
+
+    public MetricsConfig(MeterRegistry meterRegistry) {
+        this.requestMetricsInterceptor = new RequestMetricsInterceptor(meterRegistry);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCountInspectorCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(requestMetricsInterceptor).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // Запросы, сделанные в потоке StreamingResponseBody
+        configurer.registerCallableInterceptors(requestMetricsInterceptor);
+    }
+}
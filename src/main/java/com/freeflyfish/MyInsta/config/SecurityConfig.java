@@ -1,13 +1,18 @@
 package com.freeflyfish.MyInsta.config;
 
+import com.freeflyfish.MyInsta.security.TokenAuthenticationFilter;
+import com.freeflyfish.MyInsta.security.TokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -27,8 +32,10 @@ public class SecurityConfig {
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(Arrays.asList("*")); // Разрешаем все origins
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS")); // Разрешаем все методы
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")); // Разрешаем все методы
         configuration.setAllowedHeaders(Arrays.asList("*")); // Разрешаем все заголовки
+        // Заголовки докачиваемой загрузки должны быть видны скрипту в браузере
+        configuration.setExposedHeaders(Arrays.asList("Location", "Upload-Offset", "Upload-Length"));
         configuration.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -36,13 +43,19 @@ public class SecurityConfig {
         return source;
     }
 
+    /**
+     * Аутентификация - по подписанному токену из заголовка Authorization (см. TokenService).
+     * Сессий на сервере нет: каждый запрос проверяется сам по себе, без обращения к БД.
+     * Чтение открыто всем, изменения (посты, комментарии, загрузки, подписки) - только
+     * с токеном, и автор изменения берется из токена, а не из параметров запроса.
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenService tokenService) throws Exception {
         http
                 // Включаем CORS
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
 
-                // Отключаем CSRF для REST API
+                // Отключаем CSRF для REST API (токен передается заголовком, а не cookie)
                 .csrf(csrf -> csrf.disable())
 
                 // Разрешаем frames для H2 console
@@ -50,13 +63,40 @@ public class SecurityConfig {
                         .frameOptions(HeadersConfigurer.FrameOptionsConfig::disable)
                 )
 
+                // Не создаем HTTP-сессий: пользователь известен из токена
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .httpBasic(basic -> basic.disable())
+                .formLogin(form -> form.disable())
+
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+
+                // Запрос без токена к закрытому эндпоинту получает 401 в формате {"error": "..."}
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint((request, response, authException) ->
+                                TokenAuthenticationFilter.writeError(response, "Требуется авторизация"))
+                )
+
                 // Настраиваем правила авторизации
                 .authorizeHttpRequests(authz -> authz
                         // Разрешаем доступ к H2 console
                         .requestMatchers("/h2-console/**").permitAll()
 
-                        // Разрешаем ВСЕ API запросы
-                        .requestMatchers("/api/**").permitAll()
+                        // Проверка живости и метрики для Prometheus (доступ к порту ограничивается сетью)
+                        .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll()
+
+                        // Регистрация и вход
+                        .requestMatchers("/api/auth/**").permitAll()
+
+                        // Сессии загрузки видит только их владелец
+                        .requestMatchers("/api/uploads/**").authenticated()
+
+                        // Чтение доступно всем
+                        .requestMatchers(HttpMethod.GET, "/api/**").permitAll()
+                        .requestMatchers(HttpMethod.HEAD, "/api/**").permitAll()
+                        .requestMatchers(HttpMethod.OPTIONS, "/api/**").permitAll()
+
+                        // Все изменения - только с токеном
+                        .requestMatchers("/api/**").authenticated()
 
                         // Все остальные запросы запрещаем (чтобы Spring не искал статические ресурсы)
                         .anyRequest().denyAll()
@@ -64,4 +104,4 @@ public class SecurityConfig {
 
         return http.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package com.freeflyfish.MyInsta.config;
+
+import com.freeflyfish.MyInsta.util.Tsid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Номер узла в генерируемых ID ({@link Tsid}).
+ *
+ * Номер задается свойством myinsta.tsid.node (переменная окружения MYINSTA_TSID_NODE)
+ * и должен быть своим у каждого экземпляра приложения. Без него берется хэш имени хоста,
+ * который у двух экземпляров совпадает с вероятностью 1/32 - тогда возможны дубликаты
+ * первичных ключей. Если экземпляров может быть несколько, нужно включить
+ * myinsta.tsid.require-node: без номера узла приложение не запустится.
+ */
+@Configuration
+public class TsidConfig {
+
+    public TsidConfig(@Value("${myinsta.tsid.node:#{null}}") Integer node,
+                      @Value("${myinsta.tsid.require-node:false}") boolean requireNode) {
+        if (node != null) {
+            Tsid.useNode(node);
+        } else if (requireNode) {
+            throw new IllegalStateException("Не задан номер узла для ID (myinsta.tsid.node): "
+                    + "он обязателен при myinsta.tsid.require-node=true");
+        } else {
+            // Номер из хэша имени хоста - с предупреждением в логе при старте, а не при первой вставке
+            Tsid.node();
+        }
+    }
+}
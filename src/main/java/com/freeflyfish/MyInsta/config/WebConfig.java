@@ -0,0 +1,90 @@
+package com.freeflyfish.MyInsta.config;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Настройки Spring MVC для потоковых эндпоинтов (NDJSON).
+ *
+ * Open EntityManager in View - для всех эндпоинтов, кроме потоковых.
+ * Spring Boot регистрирует этот перехватчик сам (spring.jpa.open-in-view), но только
+ * для всех путей сразу. Под ним соединение, однажды полученное запросом, удерживается
+ * до конца ответа - для потоковой выдачи это все время записи медленному клиенту.
+ * Потоковые эндпоинты читают БД короткими транзакциями и держат соединение только
+ * на время чтения страницы, поэтому встроенный перехватчик выключен
+ * (spring.jpa.open-in-view=false) и зарегистрирован здесь с исключениями.
+ *
+ * Тело StreamingResponseBody пишется в отдельном пуле: поток занят записью в сокет, пока
+ * медленный клиент читает ответ (до spring.mvc.async.request-timeout). Общий пул Spring Boot
+ * (applicationTaskExecutor, 8 потоков и неограниченная очередь) несколько медленных клиентов
+ * заняли бы целиком, и остальные выдачи стояли бы в очереди. Здесь пул ограничен
+ * myinsta.streams.threads потоками и очередью myinsta.streams.queue-capacity; сверх нее
+ * запрос получает 503. С spring.threads.virtual.enabled=true (Java 21) каждая выдача
+ * пишется в своем виртуальном потоке и ожидание клиента поток ОС не занимает.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final AsyncTaskExecutor streamExecutor;
+
+    public WebConfig(EntityManagerFactory entityManagerFactory,
+                     @Value("${myinsta.streams.threads:64}") int streamThreads,
+                     @Value("${myinsta.streams.queue-capacity:100}") int queueCapacity,
+                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.entityManagerFactory = entityManagerFactory;
+        // На Java 17 настройка игнорируется, как и самим Spring Boot
+        this.streamExecutor = virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)
+                ? virtualStreamWriters()
+                : platformStreamWriters(streamThreads, queueCapacity);
+    }
+
+    private static AsyncTaskExecutor platformStreamWriters(int streamThreads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamThreads);
+        executor.setMaxPoolSize(streamThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("stream-writer-");
+        executor.setDaemon(true);
+        executor.initialize();
+        return executor;
+    }
+
+    private static AsyncTaskExecutor virtualStreamWriters() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-writer-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor)
+                .excludePathPatterns("/api/posts/user/*/stream", "/api/comments/user/*/stream");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (streamExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (streamExecutor instanceof SimpleAsyncTaskExecutor virtual) {
+            virtual.close();
+        }
+    }
+}
@@ -2,13 +2,16 @@ package com.freeflyfish.MyInsta.controller;
 
 import com.freeflyfish.MyInsta.dto.LoginRequest;
 import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.security.TokenService;
 import com.freeflyfish.MyInsta.service.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
@@ -21,15 +24,17 @@ public class AuthController {
 
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
+    private final TokenService tokenService;
 
     /**
      * Конструктор для внедрения зависимостей.
-     * Spring автоматически передаст реализации UserService и PasswordEncoder
+     * Spring автоматически передаст реализации UserService, PasswordEncoder и TokenService
      * при создании экземпляра этого контроллера.
      */
-    public AuthController(UserService userService, PasswordEncoder passwordEncoder) {
+    public AuthController(UserService userService, PasswordEncoder passwordEncoder, TokenService tokenService) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
     }
 
     /**
@@ -51,6 +56,8 @@ public class AuthController {
             response.put("message", "Пользователь успешно зарегистрирован");
             response.put("userId", user.getId());
             response.put("username", user.getUsername());
+            // Сразу выдаем токен, чтобы после регистрации не нужно было отдельно входить
+            putToken(response, user);
 
             // Возвращаем успешный ответ со статусом 201 Created
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -67,8 +74,8 @@ public class AuthController {
 
     /**
      * Эндпоинт для входа пользователя в систему.
-     * В упрощенной версии просто проверяем правильность логина/пароля.
-     * В реальном приложении здесь бы генерировался JWT токен.
+     * Проверяем логин/пароль и выдаем подписанный токен. Дальше клиент передает его
+     * в заголовке "Authorization: Bearer {token}" - пароль и БД при этом больше не проверяются.
      *
      * @param loginRequest данные для входа (username и password)
      * @return ResponseEntity с результатом аутентификации
@@ -89,6 +96,7 @@ public class AuthController {
                 response.put("message", "Вход выполнен успешно");
                 response.put("userId", user.getId());
                 response.put("username", user.getUsername());
+                putToken(response, user);
 
                 return ResponseEntity.ok(response);
             }
@@ -100,4 +108,27 @@ public class AuthController {
 
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
     }
-}
\ No newline at end of file
+
+    /**
+     * Проверка, свободно ли имя (для формы регистрации).
+     * Доступен по URL: GET /api/auth/username-available?username={name}
+     * Свободные имена обычно отсеиваются фильтром Блума без обращения к БД.
+     *
+     * @param username проверяемое имя
+     * @return имя и признак available
+     */
+    @GetMapping("/username-available")
+    public ResponseEntity<?> isUsernameAvailable(@RequestParam("username") String username) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("username", username);
+        response.put("available", !userService.isUsernameTaken(username));
+        return ResponseEntity.ok(response);
+    }
+
+    private void putToken(Map<String, Object> response, User user) {
+        TokenService.IssuedToken token = tokenService.issue(user.getId(), user.getUsername());
+        response.put("token", token.getToken());
+        response.put("tokenType", "Bearer");
+        response.put("expiresAt", token.getExpiresAt().toString());
+    }
+}
@@ -5,14 +5,21 @@ import com.freeflyfish.MyInsta.dto.CreateCommentRequest;
 import com.freeflyfish.MyInsta.entity.Comment;
 import com.freeflyfish.MyInsta.entity.Post;
 import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
 import com.freeflyfish.MyInsta.service.CommentService;
 import com.freeflyfish.MyInsta.service.PostService;
 import com.freeflyfish.MyInsta.service.UserService;
 import com.freeflyfish.MyInsta.util.DTOConverter;
+import com.freeflyfish.MyInsta.util.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,16 +32,18 @@ public class CommentController {
     private final UserService userService;
     private final PostService postService;
     private final DTOConverter dtoConverter;
+    private final ObjectMapper objectMapper;
 
     /**
      * Конструктор для внедрения зависимостей.
      */
     public CommentController(CommentService commentService, UserService userService,
-                             PostService postService, DTOConverter dtoConverter) {
+                             PostService postService, DTOConverter dtoConverter, ObjectMapper objectMapper) {
         this.commentService = commentService;
         this.userService = userService;
         this.postService = postService;
         this.dtoConverter = dtoConverter;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -42,29 +51,27 @@ public class CommentController {
      *
      * URL: POST /api/comments
      * Формат данных: application/json
+     * Автор - пользователь из токена запроса.
      *
      * @param createCommentRequest данные для создания комментария
+     * @param currentUser пользователь из токена
      * @return ResponseEntity с созданным комментарием или ошибкой
      */
     @PostMapping
-    public ResponseEntity<?> createComment(@RequestBody CreateCommentRequest createCommentRequest) {
+    public ResponseEntity<?> createComment(@RequestBody CreateCommentRequest createCommentRequest,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             // Валидация входных данных
             if (createCommentRequest.getMessage() == null || createCommentRequest.getMessage().trim().isEmpty()) {
                 throw new RuntimeException("Текст комментария не может быть пустым");
             }
 
-            if (createCommentRequest.getAuthorId() == null) {
-                throw new RuntimeException("ID автора обязателен");
-            }
-
             if (createCommentRequest.getPostId() == null) {
                 throw new RuntimeException("ID поста обязателен");
             }
 
-            // Находим автора комментария
-            User author = userService.findById(createCommentRequest.getAuthorId())
-                    .orElseThrow(() -> new RuntimeException("Пользователь с ID " + createCommentRequest.getAuthorId() + " не найден"));
+            // Автор комментария - пользователь из токена, без запроса к БД
+            User author = userService.getAuthenticatedUser(currentUser);
 
             // Находим пост, к которому добавляется комментарий
             Post post = postService.getPostById(createCommentRequest.getPostId());
@@ -149,17 +156,68 @@ public class CommentController {
         }
     }
 
+    /**
+     * Эндпоинт для получения всех комментариев пользователя потоком в формате NDJSON
+     * (по одному CommentDTO на строку, новые первыми).
+     *
+     * Комментарии читаются из БД страницами и пишутся в ответ по мере чтения, поэтому
+     * память не зависит от количества комментариев пользователя, а соединение с БД
+     * на время записи клиенту не удерживается.
+     *
+     * URL: GET /api/comments/user/{userId}/stream
+     *
+     * @param userId идентификатор пользователя
+     * @return поток комментариев или ошибка, если пользователь не найден
+     */
+    @GetMapping("/user/{userId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamCommentsByUser(@PathVariable Long userId) {
+        try {
+            User user = userService.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Пользователь с ID " + userId + " не найден"));
+
+            StreamingResponseBody body = out -> {
+                NdjsonWriter writer = new NdjsonWriter(objectMapper, out);
+                try {
+                    commentService.forEachCommentPageByUser(user.getId(), dtoConverter::convertToCommentDTOList,
+                            writer::writeBatch);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            // Тело этого метода всегда StreamingResponseBody, поэтому и ошибка пишется через него
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, errorResponse));
+        }
+    }
+
     /**
      * Эндпоинт для удаления комментария.
      *
      * URL: DELETE /api/comments/{id}
+     * Удалить комментарий может только его автор.
      *
      * @param id идентификатор комментария для удаления
+     * @param currentUser пользователь из токена
      * @return результат операции
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteComment(@PathVariable Long id) {
+    public ResponseEntity<?> deleteComment(@PathVariable Long id,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
+            Long authorId = commentService.findAuthorId(id)
+                    .orElseThrow(() -> new RuntimeException("Комментарий с ID " + id + " не найден"));
+            if (!authorId.equals(currentUser.getId())) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Удалить комментарий может только его автор");
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+            }
+
             // Удаляем комментарий через сервис
             commentService.deleteComment(id);
 
@@ -186,12 +244,8 @@ public class CommentController {
     @GetMapping("/post/{postId}/count")
     public ResponseEntity<?> getCommentCountByPost(@PathVariable Long postId) {
         try {
-            // Находим пост
-            Post post = postService.getPostById(postId);
-
-            // Получаем комментарии и считаем их
-            List<Comment> comments = commentService.getCommentsByPost(post);
-            int commentCount = comments.size();
+            // Читаем денормализованный счетчик поста, не загружая сами комментарии
+            long commentCount = commentService.getCommentCount(postId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("postId", postId);
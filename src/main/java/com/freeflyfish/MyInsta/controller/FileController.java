@@ -1,65 +1,121 @@
 package com.freeflyfish.MyInsta.controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import com.freeflyfish.MyInsta.service.MediaStreamingService;
+import com.freeflyfish.MyInsta.service.MediaValidatorCache;
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.HandlerMapping;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 
 @RestController
 @RequestMapping("/api/files")
 public class FileController {
 
+    private static final String URL_PREFIX = "/api/files/";
+
+    private final MediaStreamingService mediaStreamingService;
+    private final MediaValidatorCache mediaValidatorCache;
+
+    // Время отдачи (для неблокирующей записи - до ее завершения; при sendfile - только подготовка
+    // ответа, передача идет уже после выхода из метода)
+    // и объем отданных файлов; скорость отдачи - rate(myinsta.files.served.bytes_total)
+    private final Timer serveTimer;
+    private final Counter servedBytes;
+
+    public FileController(MediaStreamingService mediaStreamingService, MediaValidatorCache mediaValidatorCache,
+                          MeterRegistry meterRegistry) {
+        this.mediaStreamingService = mediaStreamingService;
+        this.mediaValidatorCache = mediaValidatorCache;
+        this.serveTimer = Timer.builder("myinsta.files.serve")
+                .description("Отдача медиафайла")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.servedBytes = Counter.builder("myinsta.files.served.bytes")
+                .description("Байты файлов, отданные в телах ответов")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
     /**
      * Эндпоинт для отдачи медиафайлов (фото и видео) клиенту.
-     * Этот эндпоинт преобразует путь из базы данных в реальный файл на диске.
+     * Этот эндпоинт преобразует путь из базы данных в ключ хранилища (см. MediaStorage).
+     *
+     * Поддерживает запросы диапазонов (Range), поэтому видеоплееры могут перематывать видео,
+     * не скачивая файл с начала. Ответы кэшируются клиентом как неизменяемые;
+     * условные запросы (If-None-Match) получают 304 без чтения файла.
      *
-     * @param filePath путь к файлу относительно папки uploads (передается в URL)
-     * @return ResponseEntity с файлом или ошибкой 404
+     * URL: GET /api/files/{путь}, например /api/files/photos/abc123.jpg
+     *
+     * @param request HTTP-запрос (путь к файлу берется из URL)
+     * @param response HTTP-ответ, в который пишется файл
+     * @throws IOException если клиент оборвал соединение во время передачи
      */
-    @GetMapping("/{filePath:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filePath) {
-        try {
-            // Создаем полный путь к файлу на диске
-            // filePath приходит в формате "photos/abc123.jpg" или "videos/xyz789.mp4"
-            Path file = Paths.get("uploads/" + filePath);
+    @GetMapping("/**")
+    public void serveFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // filePath приходит в формате "photos/abc123.jpg" или (старые записи) "uploads/photos/abc123.jpg"
+        String filePath = extractFilePath(request);
+        String key = MediaStorage.normalizeKey(filePath);
 
-            // Проверяем существует ли файл
-            if (!Files.exists(file)) {
-                return ResponseEntity.notFound().build();
-            }
+        // Валидатор берется из кэша; при промахе - из сведений хранилища о файле
+        MediaValidatorCache.MediaValidator validator = key == null ? null : mediaValidatorCache.get(key);
 
-            // Создаем Resource объект для файла
-            Resource resource = new UrlResource(file.toUri());
+        // Проверяем существует ли файл
+        if (validator == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-            // Определяем Content-Type на основе расширения файла
-            String contentType = determineContentType(filePath);
+        // Определяем Content-Type на основе расширения файла
+        String contentType = determineContentType(key);
 
-            // Возвращаем файл с правильными заголовками
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+        Timer.Sample sample = Timer.start();
+        try {
+            // Неблокирующая запись заканчивается уже после выхода из метода - метрики пишутся по ее завершении
+            mediaStreamingService.serve(key, contentType, validator, request, response, sent -> {
+                servedBytes.increment(sent);
+                sample.stop(serveTimer);
+            });
+        } catch (NoSuchFileException e) {
+            sample.stop(serveTimer);
+            // Файл удален после того, как его валидатор попал в кэш
+            mediaValidatorCache.invalidate(key);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (IOException | RuntimeException e) {
+            sample.stop(serveTimer);
+            throw e;
+        }
+    }
 
-        } catch (Exception e) {
-            // В случае ошибки возвращаем 404
-            return ResponseEntity.notFound().build();
+    /**
+     * Извлекает путь к файлу из URL запроса (все, что после /api/files/).
+     */
+    private String extractFilePath(HttpServletRequest request) {
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        if (path == null || !path.startsWith(URL_PREFIX)) {
+            return "";
         }
+        return path.substring(URL_PREFIX.length());
     }
 
     /**
      * Определяет Content-Type файла на основе его расширения.
      * Это нужно чтобы браузер правильно отображал фото и видео.
+     * Открыт в пределах пакета для микробенчмарка (src/jmh/java).
      *
      * @param filename имя файла или путь
      * @return строку с MIME-типом
      */
-    private String determineContentType(String filename) {
+    static String determineContentType(String filename) {
         // Извлекаем расширение файла (в нижнем регистре)
         String extension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
 
@@ -1,6 +1,7 @@
 package com.freeflyfish.MyInsta.controller;
 
 import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.dto.PostPageDTO;
 import com.freeflyfish.MyInsta.dto.TestPostRequest;
 import com.freeflyfish.MyInsta.entity.MediaFile;
 import com.freeflyfish.MyInsta.entity.MediaType;
@@ -8,24 +9,28 @@ import com.freeflyfish.MyInsta.entity.Post;
 import com.freeflyfish.MyInsta.entity.User;
 import com.freeflyfish.MyInsta.repository.MediaFileRepository;
 import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.service.LikeService;
 import com.freeflyfish.MyInsta.service.MediaFileService;
 import com.freeflyfish.MyInsta.service.PostService;
 import com.freeflyfish.MyInsta.service.UserService;
 import com.freeflyfish.MyInsta.util.DTOConverter;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import com.freeflyfish.MyInsta.util.NdjsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/posts")
@@ -37,16 +42,21 @@ public class PostController {
     private final PostRepository postRepository;
     private final MediaFileService mediaFileService;
     private final MediaFileRepository mediaFileRepository;
+    private final LikeService likeService;
+    private final ObjectMapper objectMapper;
 
     public PostController(PostService postService, UserService userService,
                           DTOConverter dtoConverter, PostRepository postRepository,
-                          MediaFileService mediaFileService, MediaFileRepository mediaFileRepository) {
+                          MediaFileService mediaFileService, MediaFileRepository mediaFileRepository,
+                          LikeService likeService, ObjectMapper objectMapper) {
         this.postService = postService;
         this.userService = userService;
         this.dtoConverter = dtoConverter;
         this.postRepository = postRepository;
         this.mediaFileService = mediaFileService;
         this.mediaFileRepository = mediaFileRepository;
+        this.likeService = likeService;
+        this.objectMapper = objectMapper;
 
         System.out.println("=== PostController создан ===");
         System.out.println("userService: " + (userService != null ? "NOT NULL" : "NULL"));
@@ -72,18 +82,18 @@ public class PostController {
      * Эндпоинт для тестирования создания поста БЕЗ файлов
      */
     @PostMapping("/test")
-    public ResponseEntity<?> createTestPost(@RequestBody TestPostRequest request) {
+    public ResponseEntity<?> createTestPost(@RequestBody TestPostRequest request,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             System.out.println("=== СОЗДАНИЕ ТЕСТОВОГО ПОСТА ===");
             System.out.println("Title: " + request.getTitle());
             System.out.println("Caption: " + request.getCaption());
-            System.out.println("AuthorId: " + request.getAuthorId());
+            System.out.println("Author: " + currentUser);
 
-            // ШАГ 1: Поиск пользователя
-            System.out.println("ШАГ 1: Поиск пользователя...");
-            User author = userService.findById(request.getAuthorId())
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-            System.out.println("✓ Пользователь найден: " + author.getUsername());
+            // ШАГ 1: Автор - пользователь из токена
+            System.out.println("ШАГ 1: Автор из токена...");
+            User author = userService.getAuthenticatedUser(currentUser);
+            System.out.println("✓ Автор: " + author.getUsername());
 
             // ШАГ 2: Создание объекта Post
             System.out.println("ШАГ 2: Создание объекта Post...");
@@ -117,17 +127,17 @@ public class PostController {
 
     /**
      * Эндпоинт для создания нового поста с медиафайлами.
+     * Автор - пользователь из токена запроса.
      */
     @PostMapping(consumes = "multipart/form-data")
     public ResponseEntity<?> createPost(
             @RequestParam("title") String title,
             @RequestParam("caption") String caption,
             @RequestParam("mediaFiles") MultipartFile[] mediaFiles,
-            @RequestParam("authorId") Long authorId) {
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
         try {
-            User author = userService.findById(authorId)
-                    .orElseThrow(() -> new RuntimeException("Пользователь с ID " + authorId + " не найден"));
+            User author = userService.getAuthenticatedUser(currentUser);
 
             Post post = postService.createPost(author, title, caption, mediaFiles);
             PostDTO postDTO = dtoConverter.convertToPostDTO(post);
@@ -150,28 +160,47 @@ public class PostController {
     }
 
     /**
-     * Получение всех постов для ленты.
+     * Получение ленты постов с курсорной пагинацией.
+     *
+     * URL: GET /api/posts?before={cursor}&limit={n}
+     * Первая страница запрашивается без before; для следующей страницы
+     * передается nextCursor из предыдущего ответа.
+     *
+     * @param before курсор последнего полученного поста (необязательный)
+     * @param limit размер страницы (по умолчанию 20, максимум 100)
+     * @return страница постов и курсор следующей страницы
      */
     @GetMapping
-    public ResponseEntity<List<PostDTO>> getAllPosts() {
+    public ResponseEntity<?> getAllPosts(@RequestParam(value = "before", required = false) String before,
+                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                         @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        // 400 - только для поврежденного курсора; ошибки чтения ленты обрабатывает GlobalExceptionHandler
+        FeedCursor cursor;
         try {
-            List<Post> posts = postService.getAllPosts();
-            List<PostDTO> postDTOs = dtoConverter.convertToPostDTOList(posts);
-            return ResponseEntity.ok(postDTOs);
-        } catch (Exception e) {
-            return ResponseEntity.ok(List.of());
+            cursor = FeedCursor.decode(before);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         }
+        int pageSize = postService.normalizeFeedLimit(limit);
+
+        List<Post> posts = postService.getFeedPage(cursor, pageSize);
+        PostPageDTO page = dtoConverter.convertToPostPageDTO(posts, pageSize);
+        likeService.applyLikes(page.getPosts(), currentUser);
+        return ResponseEntity.ok(page);
     }
 
     /**
      * Получение поста по ID.
+     * DTO из кэша общий, поэтому лайки текущего пользователя проставляются в копию.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getPostById(@PathVariable Long id) {
+    public ResponseEntity<?> getPostById(@PathVariable Long id,
+                                         @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
-            Post post = postService.getPostById(id);
-            PostDTO postDTO = dtoConverter.convertToPostDTO(post);
-            return ResponseEntity.ok(postDTO);
+            PostDTO postDTO = new PostDTO(postService.getPostDTOById(id));
+            return ResponseEntity.ok(likeService.applyLikes(postDTO, currentUser));
         } catch (RuntimeException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", e.getMessage());
@@ -179,18 +208,28 @@ public class PostController {
         }
     }
 
+    /**
+     * Статистика кэша PostDTO (попадания, промахи, вытеснения, занятый объем).
+     * Нужна для подбора размеров кэша.
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(postService.getPostCacheStats());
+    }
+
     /**
      * Получение постов конкретного пользователя.
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<?> getPostsByUser(@PathVariable Long userId) {
+    public ResponseEntity<?> getPostsByUser(@PathVariable Long userId,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
             User user = userService.findById(userId)
                     .orElseThrow(() -> new RuntimeException("Пользователь с ID " + userId + " не найден"));
 
             List<Post> posts = postService.getPostsByUser(user);
             List<PostDTO> postDTOs = dtoConverter.convertToPostDTOList(posts);
-            return ResponseEntity.ok(postDTOs);
+            return ResponseEntity.ok(likeService.applyLikes(postDTOs, currentUser));
         } catch (RuntimeException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", e.getMessage());
@@ -199,11 +238,60 @@ public class PostController {
     }
 
     /**
-     * Удаление поста.
+     * Все посты пользователя потоком в формате NDJSON (application/x-ndjson):
+     * по одному PostDTO на строку, новые первыми.
+     *
+     * В отличие от /user/{userId}, ни посты, ни DTO не собираются в список целиком:
+     * посты читаются из БД страницами и пишутся в ответ по мере чтения, поэтому память
+     * не зависит от количества постов пользователя. Соединение с БД на время записи
+     * страницы клиенту не удерживается (для этого пути отключен open-in-view, см. WebConfig).
+     *
+     * URL: GET /api/posts/user/{userId}/stream
+     */
+    @GetMapping("/user/{userId}/stream")
+    public ResponseEntity<StreamingResponseBody> streamPostsByUser(@PathVariable Long userId,
+                                                                   @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            User user = userService.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Пользователь с ID " + userId + " не найден"));
+
+            StreamingResponseBody body = out -> {
+                NdjsonWriter writer = new NdjsonWriter(objectMapper, out);
+                try {
+                    postService.forEachPostPageByUser(user.getId(), dtoConverter::convertToPostDTOList,
+                            posts -> writer.writeBatch(likeService.applyLikes(posts, currentUser)));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(org.springframework.http.MediaType.APPLICATION_NDJSON)
+                    .body(body);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            // Тело этого метода всегда StreamingResponseBody, поэтому и ошибка пишется через него
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, errorResponse));
+        }
+    }
+
+    /**
+     * Удаление поста. Удалить пост может только его автор.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deletePost(@PathVariable Long id) {
+    public ResponseEntity<?> deletePost(@PathVariable Long id,
+                                        @AuthenticationPrincipal AuthenticatedUser currentUser) {
         try {
+            Long ownerId = postService.findAuthorId(id)
+                    .orElseThrow(() -> new RuntimeException("Пост с ID " + id + " не найден"));
+            if (!ownerId.equals(currentUser.getId())) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Удалить пост может только его автор");
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+            }
+
             postService.deletePost(id);
             Map<String, String> response = new HashMap<>();
             response.put("message", "Пост успешно удален");
@@ -215,6 +303,50 @@ public class PostController {
         }
     }
 
+    /**
+     * Лайк поста. Повторный лайк ничего не меняет.
+     *
+     * URL: PUT /api/posts/{id}/like
+     */
+    @PutMapping("/{id}/like")
+    public ResponseEntity<?> likePost(@PathVariable Long id,
+                                      @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            likeService.like(id, currentUser.getId());
+            return ResponseEntity.ok(likeResponse(id, true));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
+
+    /**
+     * Снятие лайка. Снятие несуществующего лайка ничего не меняет.
+     *
+     * URL: DELETE /api/posts/{id}/like
+     */
+    @DeleteMapping("/{id}/like")
+    public ResponseEntity<?> unlikePost(@PathVariable Long id,
+                                        @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            likeService.unlike(id, currentUser.getId());
+            return ResponseEntity.ok(likeResponse(id, false));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
+
+    private Map<String, Object> likeResponse(Long postId, boolean liked) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("postId", postId);
+        response.put("liked", liked);
+        response.put("likeCount", likeService.getLikeCount(postId));
+        return response;
+    }
+
     /**
      * Самый простой эндпоинт для диагностики - без параметров
      */
@@ -283,17 +415,16 @@ public class PostController {
             System.out.println("AuthorId: " + authorId);
             System.out.println("File: " + mediaFile.getOriginalFilename() + " (" + mediaFile.getSize() + " bytes)");
 
-            // Просто сохраняем файл на диск БЕЗ сохранения в БД
+            // Только проверяем, что файл получен и его тип поддерживается. На диск не пишем:
+            // хранилище хранит содержимое по ссылкам из БД, и файл без записи стал бы "сиротой"
             MediaType mediaType = mediaFileService.determineMediaType(mediaFile.getOriginalFilename());
-            String filePath = saveFileToDisk(mediaFile, mediaType);
-
-            System.out.println("Файл сохранен на диск: " + filePath);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("message", "Файл загружен успешно!");
-            response.put("filePath", filePath);
+            response.put("message", "Файл получен успешно!");
+            response.put("fileName", mediaFile.getOriginalFilename());
+            response.put("size", mediaFile.getSize());
             response.put("mediaType", mediaType.toString());
-            response.put("savedToDisk", true);
+            response.put("savedToDisk", false);
 
             return ResponseEntity.ok(response);
 
@@ -314,46 +445,24 @@ public class PostController {
     public ResponseEntity<?> createPostWithFile(
             @RequestParam("title") String title,
             @RequestParam("caption") String caption,
-            @RequestParam("authorId") Long authorId,
-            @RequestParam("mediaFile") MultipartFile mediaFile) {
+            @RequestParam("mediaFile") MultipartFile mediaFile,
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
 
         try {
             System.out.println("=== СОЗДАНИЕ ПОСТА С ФАЙЛОМ (ИСПРАВЛЕННАЯ ВЕРСИЯ) ===");
             System.out.println("Title: " + title);
             System.out.println("Caption: " + caption);
-            System.out.println("AuthorId: " + authorId);
+            System.out.println("Author: " + currentUser);
             System.out.println("File: " + mediaFile.getOriginalFilename());
 
-            // Находим пользователя
-            User author = userService.findById(authorId)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-
-            // 1. Создаем и сохраняем пост
-            Post post = new Post();
-            post.setTitle(title);
-            post.setCaption(caption);
-            post.setUser(author);
+            // Автор - пользователь из токена
+            User author = userService.getAuthenticatedUser(currentUser);
 
-            Post savedPost = postRepository.save(post);
+            // Пост и файл сохраняются тем же путем, что и в основном эндпоинте создания поста
+            Post savedPost = postService.createPost(author, title, caption, new MultipartFile[]{mediaFile});
+            MediaFile savedMediaFile = savedPost.getMediaFiles().get(0);
             System.out.println("✓ Пост сохранен с ID: " + savedPost.getId());
-
-            // 2. Сохраняем файл на диск
-            MediaType mediaType = mediaFileService.determineMediaType(mediaFile.getOriginalFilename());
-            String filePath = saveFileToDisk(mediaFile, mediaType);
-            System.out.println("✓ Файл сохранен на диск: " + filePath);
-
-            // 3. Создаем MediaFile и устанавливаем связь с постом
-            MediaFile mediaFileEntity = new MediaFile();
-            mediaFileEntity.setFilePath(filePath);
-            mediaFileEntity.setMediaType(mediaType);
-            mediaFileEntity.setPost(savedPost);  // ВАЖНО: устанавливаем связь
-            mediaFileEntity.setPosition(0);
-
-            MediaFile savedMediaFile = mediaFileRepository.save(mediaFileEntity);
-            System.out.println("✓ MediaFile сохранен с ID: " + savedMediaFile.getId());
-
-            // 4. Обновляем пост с медиафайлом
-            savedPost.getMediaFiles().add(savedMediaFile);
+            System.out.println("✓ Файл сохранен: " + savedMediaFile.getFilePath());
 
             Map<String, Object> response = new HashMap<>();
             response.put("message", "Пост с файлом создан успешно!");
@@ -421,26 +530,4 @@ public class PostController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         }
     }
-
-    /**
-     * Вспомогательный метод для сохранения файла на диск
-     */
-    private String saveFileToDisk(MultipartFile file, MediaType mediaType) throws IOException {
-        String originalFileName = file.getOriginalFilename();
-        String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
-
-        String subfolder = mediaType == MediaType.PHOTO ? "photos/" : "videos/";
-        String fullUploadPath = "uploads/" + subfolder;
-
-        Path uploadPath = Paths.get(fullUploadPath);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        Path filePath = uploadPath.resolve(uniqueFileName);
-        Files.copy(file.getInputStream(), filePath);
-
-        return fullUploadPath + uniqueFileName;
-    }
 }
\ No newline at end of file
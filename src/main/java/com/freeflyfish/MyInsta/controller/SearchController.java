@@ -0,0 +1,65 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.dto.SearchResultDTO;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.service.LikeService;
+import com.freeflyfish.MyInsta.service.SearchService;
+import com.freeflyfish.MyInsta.util.DTOConverter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private final SearchService searchService;
+    private final DTOConverter dtoConverter;
+    private final LikeService likeService;
+
+    public SearchController(SearchService searchService, DTOConverter dtoConverter, LikeService likeService) {
+        this.searchService = searchService;
+        this.dtoConverter = dtoConverter;
+        this.likeService = likeService;
+    }
+
+    /**
+     * Поиск постов по заголовку, описанию и комментариям.
+     *
+     * URL: GET /api/search?q={запрос}&page={n}&size={n}
+     *
+     * @param q    поисковый запрос
+     * @param page номер страницы (с 0, по умолчанию 0)
+     * @param size размер страницы (по умолчанию 20, максимум 50)
+     * @return посты в порядке релевантности
+     */
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam("q") String q,
+                                    @RequestParam(value = "page", required = false, defaultValue = "0") int page,
+                                    @RequestParam(value = "size", required = false) Integer size,
+                                    @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            int pageSize = searchService.normalizePageSize(size);
+            List<Post> posts = searchService.search(q, page, pageSize);
+
+            boolean hasMore = posts.size() > pageSize;
+            List<PostDTO> postDTOs = dtoConverter.convertToPostDTOList(hasMore ? posts.subList(0, pageSize) : posts);
+            likeService.applyLikes(postDTOs, currentUser);
+            return ResponseEntity.ok(new SearchResultDTO(q.trim(), page, pageSize, postDTOs, hasMore));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.dto.PostPageDTO;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.service.LikeService;
+import com.freeflyfish.MyInsta.service.PostService;
+import com.freeflyfish.MyInsta.service.TagService;
+import com.freeflyfish.MyInsta.util.DTOConverter;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import com.freeflyfish.MyInsta.util.TagParser;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/tags")
+public class TagController {
+
+    private final TagService tagService;
+    private final PostService postService;
+    private final DTOConverter dtoConverter;
+    private final LikeService likeService;
+
+    public TagController(TagService tagService, PostService postService, DTOConverter dtoConverter,
+                         LikeService likeService) {
+        this.tagService = tagService;
+        this.postService = postService;
+        this.dtoConverter = dtoConverter;
+        this.likeService = likeService;
+    }
+
+    /**
+     * Посты с хэштегом или упоминанием, с курсорной пагинацией.
+     *
+     * URL: GET /api/tags/{tag}/posts?before={cursor}&limit={n}
+     * tag - хэштег без знака ("закат") или упоминание со знаком ("@alice").
+     *
+     * @param tag    метка
+     * @param before курсор последнего полученного поста (необязательный)
+     * @param limit  размер страницы (по умолчанию 20, максимум 100)
+     * @return страница постов и курсор следующей страницы
+     */
+    @GetMapping("/{tag}/posts")
+    public ResponseEntity<?> getPostsByTag(@PathVariable String tag,
+                                           @RequestParam(value = "before", required = false) String before,
+                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                           @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        String normalized;
+        FeedCursor cursor;
+        try {
+            normalized = TagParser.normalize(tag);
+            if (normalized == null) {
+                throw new IllegalArgumentException("Метка не может быть пустой");
+            }
+            cursor = FeedCursor.decode(before);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+        int pageSize = postService.normalizeFeedLimit(limit);
+
+        List<Post> posts = tagService.getPostsByTag(normalized, cursor, pageSize);
+        PostPageDTO page = dtoConverter.convertToPostPageDTO(posts, pageSize);
+        likeService.applyLikes(page.getPosts(), currentUser);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Популярные хэштеги за последнее окно (по умолчанию - за час).
+     *
+     * URL: GET /api/tags/trending?limit={n}
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<?> getTrending(@RequestParam(value = "limit", required = false, defaultValue = "10") int limit) {
+        return ResponseEntity.ok(tagService.getTrending(limit));
+    }
+}
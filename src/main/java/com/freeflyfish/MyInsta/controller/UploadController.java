@@ -0,0 +1,197 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.dto.CompleteUploadRequest;
+import com.freeflyfish.MyInsta.dto.CreateUploadRequest;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.UploadSession;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.service.PostService;
+import com.freeflyfish.MyInsta.service.ResumableUploadService;
+import com.freeflyfish.MyInsta.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Докачиваемая загрузка больших файлов.
+ *
+ * 1. POST   /api/uploads                 - создать сессию (имя и размер файла), ответ содержит uploadId
+ * 2. PATCH  /api/uploads/{id}            - прислать часть; заголовок Upload-Offset - смещение части,
+ *                                          тело - байты файла (application/offset+octet-stream)
+ * 3. HEAD   /api/uploads/{id}            - узнать, сколько байт уже получено (после обрыва связи)
+ * 4. POST   /api/uploads/{id}/complete   - завершить загрузку и прикрепить файл к посту
+ *    DELETE /api/uploads/{id}            - отменить загрузку
+ *
+ * Все запросы - с токеном; сессия видна только создавшему ее пользователю,
+ * для остальных она "не найдена".
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ResumableUploadService resumableUploadService;
+    private final UserService userService;
+    private final PostService postService;
+
+    public UploadController(ResumableUploadService resumableUploadService,
+                            UserService userService, PostService postService) {
+        this.resumableUploadService = resumableUploadService;
+        this.userService = userService;
+        this.postService = postService;
+    }
+
+    /**
+     * Создает сессию загрузки.
+     */
+    @PostMapping
+    public ResponseEntity<?> createUpload(@RequestBody CreateUploadRequest request,
+                                          @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            if (request.getSize() == null) {
+                throw new RuntimeException("Не указан размер файла");
+            }
+            User author = userService.getAuthenticatedUser(currentUser);
+
+            UploadSession session = resumableUploadService.createSession(author, request.getFileName(), request.getSize());
+
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, String.valueOf(session.getTotalSize()))
+                    .body(toResponse(session));
+
+        } catch (RuntimeException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось создать загрузку: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Состояние загрузки. На HEAD-запрос отвечает только заголовками Upload-Offset и Upload-Length.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getUpload(@PathVariable String id,
+                                       @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Optional<UploadSession> session = findOwnSession(id, currentUser);
+        if (session.isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Сессия загрузки " + id + " не найдена");
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header(UPLOAD_OFFSET, String.valueOf(session.get().getReceivedBytes()))
+                .header(UPLOAD_LENGTH, String.valueOf(session.get().getTotalSize()))
+                .body(toResponse(session.get()));
+    }
+
+    /**
+     * Принимает часть файла. Тело читается потоком прямо в файл сессии.
+     */
+    @PatchMapping(value = "/{id}", consumes = {"application/offset+octet-stream", "application/octet-stream"})
+    public ResponseEntity<?> uploadChunk(@PathVariable String id,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         HttpServletRequest request,
+                                         @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        if (findOwnSession(id, currentUser).isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Сессия загрузки " + id + " не найдена");
+        }
+        try {
+            long newOffset = resumableUploadService.appendChunk(id, offset, request.getInputStream());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                    .build();
+
+        } catch (ResumableUploadService.OffsetConflictException e) {
+            // Клиент должен продолжить с текущего смещения
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("offset", e.getCurrentOffset());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getCurrentOffset()))
+                    .body(errorResponse);
+        } catch (RuntimeException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось записать часть файла: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Завершает загрузку: создает пост с файлом или добавляет файл в существующий пост.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String id,
+                                            @RequestBody(required = false) CompleteUploadRequest request,
+                                            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        if (findOwnSession(id, currentUser).isEmpty()) {
+            return error(HttpStatus.NOT_FOUND, "Сессия загрузки " + id + " не найдена");
+        }
+        CompleteUploadRequest completeRequest = request != null ? request : new CompleteUploadRequest();
+        try {
+            User author = userService.getAuthenticatedUser(currentUser);
+            Post post = resumableUploadService.completeSession(id, author, completeRequest.getPostId(),
+                    completeRequest.getTitle(), completeRequest.getCaption());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", completeRequest.getPostId() == null
+                    ? "Пост успешно создан" : "Файл добавлен в пост");
+            response.put("post", postService.getPostDTOById(post.getId()));
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (RuntimeException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось сохранить файл: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Отменяет загрузку.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelUpload(@PathVariable String id,
+                                          @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            if (findOwnSession(id, currentUser).isEmpty() || !resumableUploadService.cancelSession(id)) {
+                return error(HttpStatus.NOT_FOUND, "Сессия загрузки " + id + " не найдена");
+            }
+            return ResponseEntity.noContent().build();
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось удалить загрузку: " + e.getMessage());
+        }
+    }
+
+    private Optional<UploadSession> findOwnSession(String id, AuthenticatedUser currentUser) {
+        return resumableUploadService.findSession(id)
+                .filter(session -> session.getUserId().equals(currentUser.getId()));
+    }
+
+    private Map<String, Object> toResponse(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("uploadUrl", "/api/uploads/" + session.getId());
+        response.put("fileName", session.getFileName());
+        response.put("mediaType", session.getMediaType());
+        response.put("size", session.getTotalSize());
+        response.put("offset", session.getReceivedBytes());
+        return response;
+    }
+
+    private ResponseEntity<?> error(HttpStatus status, String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
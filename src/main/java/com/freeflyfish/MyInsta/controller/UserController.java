@@ -0,0 +1,135 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.dto.PostPageDTO;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.service.LikeService;
+import com.freeflyfish.MyInsta.service.PostService;
+import com.freeflyfish.MyInsta.service.TimelineService;
+import com.freeflyfish.MyInsta.service.UserService;
+import com.freeflyfish.MyInsta.util.DTOConverter;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserController {
+
+    private final TimelineService timelineService;
+    private final UserService userService;
+    private final PostService postService;
+    private final DTOConverter dtoConverter;
+    private final LikeService likeService;
+
+    /**
+     * Конструктор для внедрения зависимостей.
+     */
+    public UserController(TimelineService timelineService, UserService userService,
+                          PostService postService, DTOConverter dtoConverter, LikeService likeService) {
+        this.timelineService = timelineService;
+        this.userService = userService;
+        this.postService = postService;
+        this.dtoConverter = dtoConverter;
+        this.likeService = likeService;
+    }
+
+    /**
+     * Эндпоинт для подписки на пользователя.
+     *
+     * URL: POST /api/users/{userId}/follow
+     *
+     * @param userId на кого подписываемся
+     * @param currentUser кто подписывается (пользователь из токена)
+     * @return результат операции
+     */
+    @PostMapping("/{userId}/follow")
+    public ResponseEntity<?> follow(@PathVariable Long userId,
+                                    @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long followerId = currentUser.getId();
+        try {
+            boolean created = timelineService.follow(followerId, userId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", created ? "Подписка оформлена" : "Подписка уже существует");
+            response.put("followerId", followerId);
+            response.put("followeeId", userId);
+
+            return ResponseEntity.status(created ? HttpStatus.CREATED : HttpStatus.OK).body(response);
+
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+    }
+
+    /**
+     * Эндпоинт для отписки от пользователя.
+     *
+     * URL: DELETE /api/users/{userId}/follow
+     *
+     * @param userId от кого отписываемся
+     * @param currentUser кто отписывается (пользователь из токена)
+     * @return результат операции
+     */
+    @DeleteMapping("/{userId}/follow")
+    public ResponseEntity<?> unfollow(@PathVariable Long userId,
+                                      @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        Long followerId = currentUser.getId();
+        boolean removed = timelineService.unfollow(followerId, userId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", removed ? "Подписка отменена" : "Подписки не было");
+        response.put("followerId", followerId);
+        response.put("followeeId", userId);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Эндпоинт для получения домашней ленты пользователя (посты его подписок).
+     *
+     * URL: GET /api/users/{userId}/timeline?before={cursor}&limit={n}
+     *
+     * @param userId владелец ленты
+     * @param before курсор последнего полученного поста (необязательный)
+     * @param limit размер страницы
+     * @return страница ленты и курсор следующей страницы
+     */
+    @GetMapping("/{userId}/timeline")
+    public ResponseEntity<?> getHomeTimeline(@PathVariable Long userId,
+                                             @RequestParam(value = "before", required = false) String before,
+                                             @RequestParam(value = "limit", required = false) Integer limit,
+                                             @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        FeedCursor cursor;
+        try {
+            cursor = FeedCursor.decode(before);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+        int pageSize = postService.normalizeFeedLimit(limit);
+
+        List<Post> posts = timelineService.getHomeTimeline(userId, cursor, pageSize);
+        PostPageDTO page = dtoConverter.convertToPostPageDTO(posts, pageSize);
+        likeService.applyLikes(page.getPosts(), currentUser);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Статистика кэша пользователей (попадания, промахи, вытеснения, занятый объем).
+     * Нужна для подбора размеров кэша.
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(userService.getCacheStats());
+    }
+}
@@ -0,0 +1,47 @@
+package com.freeflyfish.MyInsta.dto;
+
+/**
+ * DTO для завершения докачиваемой загрузки.
+ * Если указан postId, файл добавляется в этот пост, иначе создается новый пост
+ * с заголовком title и описанием caption.
+ */
+public class CompleteUploadRequest {
+    private Long postId; // Существующий пост автора (необязательно)
+    private String title; // Заголовок нового поста
+    private String caption; // Описание нового поста
+
+    // Конструкторы
+    public CompleteUploadRequest() {
+    }
+
+    public CompleteUploadRequest(Long postId, String title, String caption) {
+        this.postId = postId;
+        this.title = title;
+        this.caption = caption;
+    }
+
+    // Геттеры и сеттеры
+    public Long getPostId() {
+        return postId;
+    }
+
+    public void setPostId(Long postId) {
+        this.postId = postId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getCaption() {
+        return caption;
+    }
+
+    public void setCaption(String caption) {
+        this.caption = caption;
+    }
+}
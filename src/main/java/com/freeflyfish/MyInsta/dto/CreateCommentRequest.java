@@ -3,19 +3,18 @@ package com.freeflyfish.MyInsta.dto;
 /**
  * DTO для запроса на создание нового комментария.
  * Содержит минимально необходимые данные для создания комментария.
+ * Автор в запросе не передается - он берется из токена.
  */
 public class CreateCommentRequest {
     private String message; // Текст комментария (обязательное поле)
-    private Long authorId; // ID автора комментария (обязательное поле)
     private Long postId; // ID поста, к которому добавляется комментарий (обязательное поле)
 
     // Конструкторы
     public CreateCommentRequest() {
     }
 
-    public CreateCommentRequest(String message, Long authorId, Long postId) {
+    public CreateCommentRequest(String message, Long postId) {
         this.message = message;
-        this.authorId = authorId;
         this.postId = postId;
     }
 
@@ -28,14 +27,6 @@ public class CreateCommentRequest {
         this.message = message;
     }
 
-    public Long getAuthorId() {
-        return authorId;
-    }
-
-    public void setAuthorId(Long authorId) {
-        this.authorId = authorId;
-    }
-
     public Long getPostId() {
         return postId;
     }
@@ -0,0 +1,37 @@
+package com.freeflyfish.MyInsta.dto;
+
+/**
+ * DTO для создания сессии докачиваемой загрузки.
+ * Файл затем присылается частями, поэтому здесь только его имя и размер.
+ * Автор загрузки берется из токена.
+ */
+public class CreateUploadRequest {
+    private String fileName; // Имя файла (по расширению определяется тип: фото или видео)
+    private Long size; // Полный размер файла в байтах
+
+    // Конструкторы
+    public CreateUploadRequest() {
+    }
+
+    public CreateUploadRequest(String fileName, Long size) {
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    // Геттеры и сеттеры
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+}
@@ -2,6 +2,9 @@ package com.freeflyfish.MyInsta.dto;
 
 import com.freeflyfish.MyInsta.entity.MediaType;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * DTO для передачи информации о медиафайле клиенту.
  * Содержит только необходимые данные для отображения, без внутренней логики.
@@ -11,6 +14,9 @@ public class MediaFileDTO {
     private String fileUrl; // URL для доступа к файлу
     private MediaType mediaType; // Тип медиа: PHOTO или VIDEO
     private Integer position; // Порядковый номер в посте (для карусели)
+    private Integer width; // Ширина в пикселях (null, если неизвестна)
+    private Integer height; // Высота в пикселях (null, если неизвестна)
+    private List<MediaRenditionDTO> renditions = new ArrayList<>(); // Уменьшенные копии (для фото)
 
     // Конструкторы
     public MediaFileDTO() {
@@ -56,4 +62,31 @@ public class MediaFileDTO {
     public void setPosition(Integer position) {
         this.position = position;
     }
-}
\ No newline at end of file
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    /**
+     * @return уменьшенные копии фото, отсортированные по ширине
+     */
+    public List<MediaRenditionDTO> getRenditions() {
+        return renditions;
+    }
+
+    public void setRenditions(List<MediaRenditionDTO> renditions) {
+        this.renditions = renditions;
+    }
+}
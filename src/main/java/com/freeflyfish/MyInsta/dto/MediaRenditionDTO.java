@@ -0,0 +1,47 @@
+package com.freeflyfish.MyInsta.dto;
+
+/**
+ * DTO уменьшенной копии фотографии.
+ * Клиент выбирает самую маленькую копию, ширина которой не меньше нужной ему.
+ */
+public class MediaRenditionDTO {
+    private Integer width; // Ширина копии в пикселях
+    private Integer height; // Высота копии в пикселях
+    private String fileUrl; // URL для доступа к копии
+
+    // Конструкторы
+    public MediaRenditionDTO() {
+    }
+
+    public MediaRenditionDTO(Integer width, Integer height, String fileUrl) {
+        this.width = width;
+        this.height = height;
+        this.fileUrl = fileUrl;
+    }
+
+    // ==================== ГЕТТЕРЫ И СЕТТЕРЫ ====================
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getFileUrl() {
+        return fileUrl;
+    }
+
+    public void setFileUrl(String fileUrl) {
+        this.fileUrl = fileUrl;
+    }
+}
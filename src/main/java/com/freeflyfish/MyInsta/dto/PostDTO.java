@@ -14,6 +14,8 @@ public class PostDTO {
     private LocalDateTime createdDate;
     private String authorUsername;
     private Long authorId;
+    private long likeCount; // Количество лайков
+    private boolean likedByMe; // Лайкнул ли пост текущий пользователь (false для анонимного запроса)
 
     // Заменяем одиночное изображение на список медиафайлов
     private List<MediaFileDTO> mediaFiles = new ArrayList<>();
@@ -33,6 +35,18 @@ public class PostDTO {
         this.mediaFiles = mediaFiles;
     }
 
+    /**
+     * Копия DTO. Экземпляры из кэша общие для всех запросов, поэтому
+     * лайки текущего пользователя проставляются в копию.
+     * Список медиафайлов не копируется - он не меняется.
+     */
+    public PostDTO(PostDTO other) {
+        this(other.id, other.title, other.caption, other.createdDate,
+                other.authorUsername, other.authorId, other.mediaFiles);
+        this.likeCount = other.likeCount;
+        this.likedByMe = other.likedByMe;
+    }
+
     // ==================== ГЕТТЕРЫ И СЕТТЕРЫ ====================
 
     public Long getId() {
@@ -83,6 +97,22 @@ public class PostDTO {
         this.authorId = authorId;
     }
 
+    public long getLikeCount() {
+        return likeCount;
+    }
+
+    public void setLikeCount(long likeCount) {
+        this.likeCount = likeCount;
+    }
+
+    public boolean isLikedByMe() {
+        return likedByMe;
+    }
+
+    public void setLikedByMe(boolean likedByMe) {
+        this.likedByMe = likedByMe;
+    }
+
     /**
      * @return список медиафайлов поста (фото и видео)
      */
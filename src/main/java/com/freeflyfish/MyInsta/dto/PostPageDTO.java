@@ -0,0 +1,41 @@
+package com.freeflyfish.MyInsta.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO для страницы ленты с курсорной пагинацией.
+ * nextCursor передается в параметре before для получения следующей страницы;
+ * если он равен null - постов больше нет.
+ */
+public class PostPageDTO {
+    private List<PostDTO> posts = new ArrayList<>();
+    private String nextCursor;
+
+    // Конструкторы
+    public PostPageDTO() {
+    }
+
+    public PostPageDTO(List<PostDTO> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    // ==================== ГЕТТЕРЫ И СЕТТЕРЫ ====================
+
+    public List<PostDTO> getPosts() {
+        return posts;
+    }
+
+    public void setPosts(List<PostDTO> posts) {
+        this.posts = posts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,71 @@
+package com.freeflyfish.MyInsta.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO для страницы результатов поиска.
+ * Результаты упорядочены по релевантности, поэтому пагинация постраничная;
+ * hasMore = true означает, что есть следующая страница.
+ */
+public class SearchResultDTO {
+    private String query; // Поисковый запрос
+    private int page; // Номер страницы (с 0)
+    private int size; // Размер страницы
+    private List<PostDTO> posts = new ArrayList<>(); // Найденные посты
+    private boolean hasMore; // Есть ли следующая страница
+
+    // Конструкторы
+    public SearchResultDTO() {
+    }
+
+    public SearchResultDTO(String query, int page, int size, List<PostDTO> posts, boolean hasMore) {
+        this.query = query;
+        this.page = page;
+        this.size = size;
+        this.posts = posts;
+        this.hasMore = hasMore;
+    }
+
+    // ==================== ГЕТТЕРЫ И СЕТТЕРЫ ====================
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public List<PostDTO> getPosts() {
+        return posts;
+    }
+
+    public void setPosts(List<PostDTO> posts) {
+        this.posts = posts;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,35 @@
+package com.freeflyfish.MyInsta.dto;
+
+/**
+ * DTO популярного хэштега: сколько постов с ним создано за последнее окно времени.
+ */
+public class TrendingTagDTO {
+    private String tag; // Хэштег вместе со знаком "#"
+    private long postCount; // Количество постов за окно
+
+    // Конструкторы
+    public TrendingTagDTO() {
+    }
+
+    public TrendingTagDTO(String tag, long postCount) {
+        this.tag = tag;
+        this.postCount = postCount;
+    }
+
+    // Геттеры и сеттеры
+    public String getTag() {
+        return tag;
+    }
+
+    public void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    public long getPostCount() {
+        return postCount;
+    }
+
+    public void setPostCount(long postCount) {
+        this.postCount = postCount;
+    }
+}
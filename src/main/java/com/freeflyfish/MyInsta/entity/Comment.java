@@ -1,5 +1,6 @@
 package com.freeflyfish.MyInsta.entity;
 
+import com.freeflyfish.MyInsta.util.TsidId;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -9,7 +10,7 @@ import java.time.LocalDateTime;
 @Table(name = "comments")
 public class Comment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TsidId
     private Long id;
 
     @Column(nullable = false, length = 2000)
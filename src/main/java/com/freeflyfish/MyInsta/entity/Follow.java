@@ -0,0 +1,29 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Подписка одного пользователя на другого.
+ * Индекс по followee_id нужен для рассылки нового поста подписчикам автора.
+ */
+@Entity
+@Data
+@Table(name = "follows", indexes = {
+        @Index(name = "idx_follows_followee", columnList = "followee_id")
+})
+public class Follow {
+
+    @EmbeddedId
+    private FollowId id;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    @PrePersist
+    protected void onCreate() {
+        createdDate = LocalDateTime.now();
+    }
+}
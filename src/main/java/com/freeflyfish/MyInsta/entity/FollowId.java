@@ -0,0 +1,30 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Составной ключ подписки: кто подписан (follower) и на кого (followee).
+ * Одна пара может существовать только один раз - это делает подписку идемпотентной.
+ */
+@Embeddable
+@Data
+public class FollowId implements Serializable {
+
+    @Column(name = "follower_id", nullable = false)
+    private Long followerId;
+
+    @Column(name = "followee_id", nullable = false)
+    private Long followeeId;
+
+    public FollowId() {
+    }
+
+    public FollowId(Long followerId, Long followeeId) {
+        this.followerId = followerId;
+        this.followeeId = followeeId;
+    }
+}
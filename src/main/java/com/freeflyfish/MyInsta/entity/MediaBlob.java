@@ -0,0 +1,87 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Содержимое загруженного файла, хранящееся на диске ровно один раз.
+ *
+ * Ключ - SHA-256 содержимого, поэтому повторная загрузка того же файла
+ * (репост мема, одно фото в нескольких постах) не создает новую копию на диске,
+ * а лишь увеличивает счетчик ссылок. Файл удаляется, когда на него не ссылается
+ * ни один медиафайл.
+ */
+@Entity
+@Data
+@Table(name = "media_blobs")
+public class MediaBlob {
+
+    /**
+     * SHA-256 содержимого (hex, 64 символа).
+     */
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Ключ файла в хранилище, например "photos/2cf24d...9824.jpg" (см. MediaStorage).
+     */
+    @Column(name = "file_path", nullable = false)
+    private String filePath;
+
+    @Column(name = "file_size", nullable = false)
+    private long fileSize;
+
+    /**
+     * Количество медиафайлов, ссылающихся на это содержимое.
+     */
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    // ========== ГЕТТЕРЫ И СЕТТЕРЫ ==========
+
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getFilePath() {
+        return this.filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileSize() {
+        return this.fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getRefCount() {
+        return this.refCount;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+}
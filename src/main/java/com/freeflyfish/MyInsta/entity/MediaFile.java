@@ -1,7 +1,13 @@
 package com.freeflyfish.MyInsta.entity;
 
+import com.freeflyfish.MyInsta.util.TsidId;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Сущность для хранения информации о медиафайлах (фото и видео).
@@ -12,16 +18,19 @@ import lombok.Data;
  */
 @Entity
 @Data
-@Table(name = "media_files")
+@Table(name = "media_files", indexes = {
+        // Поиск валидатора (хэша) файла при его отдаче по URL
+        @Index(name = "idx_media_files_file_path", columnList = "file_path")
+})
 public class MediaFile {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TsidId
     private Long id;
 
     /**
-     * Путь к файлу на сервере.
-     * Например: "uploads/photos/abc123.jpg"
+     * Ключ файла в хранилище.
+     * Например: "photos/<sha256>.jpg" (старые записи - "uploads/photos/abc123.jpg")
      */
     @Column(name = "file_path", nullable = false)
     private String filePath;
@@ -41,6 +50,37 @@ public class MediaFile {
     @Column(name = "position")
     private Integer position;
 
+    /**
+     * SHA-256 содержимого файла (hex), вычисляется один раз при записи.
+     * Используется как строгий ETag при отдаче файла.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Размер файла в байтах.
+     */
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    /**
+     * Ширина и высота изображения в пикселях, прочитанные из заголовка файла при загрузке.
+     * null для видео и для файлов, загруженных раньше.
+     */
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    /**
+     * Уменьшенные копии фотографии (генерируются асинхронно после загрузки).
+     * Пустой список - копии еще не готовы или не нужны (видео, маленькое фото).
+     */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "renditions")
+    private List<MediaRendition> renditions = new ArrayList<>();
+
     /**
      * Связь с постом: многие медиафайлы принадлежат одному посту.
      * FetchType.LAZY - файлы загружаются только когда к ним обращаются
@@ -83,6 +123,46 @@ public class MediaFile {
         this.position = position;
     }
 
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getFileSize() {
+        return this.fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Integer getWidth() {
+        return this.width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return this.height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public List<MediaRendition> getRenditions() {
+        return this.renditions;
+    }
+
+    public void setRenditions(List<MediaRendition> renditions) {
+        this.renditions = renditions;
+    }
+
     public Post getPost() {
         return this.post;
     }
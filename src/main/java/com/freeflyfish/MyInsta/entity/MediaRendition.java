@@ -0,0 +1,49 @@
+package com.freeflyfish.MyInsta.entity;
+
+/**
+ * Уменьшенная копия фотографии фиксированной ширины (например, 320px для плиток ленты).
+ * Хранится списком в JSON-колонке media_files.renditions, поэтому загружается
+ * вместе с самим медиафайлом без отдельного запроса.
+ */
+public class MediaRendition {
+
+    private Integer width; // Ширина копии в пикселях
+    private Integer height; // Высота копии в пикселях
+    private String filePath; // Ключ файла копии в хранилище, например "photos/<sha256>_w320.jpg"
+
+    // Конструкторы
+    public MediaRendition() {
+    }
+
+    public MediaRendition(Integer width, Integer height, String filePath) {
+        this.width = width;
+        this.height = height;
+        this.filePath = filePath;
+    }
+
+    // ========== ГЕТТЕРЫ И СЕТТЕРЫ ==========
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+}
@@ -1,17 +1,22 @@
 package com.freeflyfish.MyInsta.entity;
 
+import com.freeflyfish.MyInsta.util.TsidId;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Data
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+        // Индекс для keyset-пагинации ленты (см. PostRepository.findFeedPageBefore)
+        @Index(name = "idx_posts_created_date_id", columnList = "created_date DESC, id DESC")
+})
 public class Post {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TsidId
     private Long id;
 
     @Column(length = 1000)
@@ -23,6 +28,19 @@ public class Post {
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    // Денормализованное количество комментариев.
+    // Изменяется только пакетными UPDATE из CommentCountService, поэтому
+    // сохранение сущности Post эту колонку не перезаписывает.
+    @ColumnDefault("0")
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false)
+    private long commentCount;
+
+    // Денормализованное количество лайков.
+    // Изменяется только пакетными UPDATE из LikeCountService
+    @ColumnDefault("0")
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false)
+    private long likeCount;
+
     // Заменяем одно изображение на коллекцию медиафайлов
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<MediaFile> mediaFiles = new ArrayList<>();
@@ -0,0 +1,26 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Лайк поста пользователем.
+ * Количество лайков поста хранится отдельно, в posts.like_count (см. LikeCountService),
+ * поэтому эта таблица не агрегируется при чтении.
+ * Индекс (user_id, post_id) нужен для проверки "лайкнул ли я" сразу для страницы постов.
+ */
+@Entity
+@Data
+@Table(name = "post_likes", indexes = {
+        @Index(name = "idx_post_likes_user_post", columnList = "user_id, post_id")
+})
+public class PostLike {
+
+    @EmbeddedId
+    private PostLikeId id;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,30 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Составной ключ лайка: пост и пользователь.
+ * Пользователь может лайкнуть пост только один раз - это делает лайк идемпотентным.
+ */
+@Embeddable
+@Data
+public class PostLikeId implements Serializable {
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    public PostLikeId() {
+    }
+
+    public PostLikeId(Long postId, Long userId) {
+        this.postId = postId;
+        this.userId = userId;
+    }
+}
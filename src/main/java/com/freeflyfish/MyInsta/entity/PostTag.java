@@ -0,0 +1,31 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Хэштег или упоминание пользователя из описания поста.
+ * Метки разбираются при создании поста, поэтому поиск постов по метке - это запрос
+ * по индексу (tag, created_date, post_id), а не разбор текста описаний.
+ *
+ * createdDate копирует дату создания поста, чтобы посты с меткой пагинировались
+ * тем же курсором (createdDate, id), что и лента.
+ */
+@Entity
+@Data
+@Table(name = "post_tags", indexes = {
+        @Index(name = "idx_post_tags_tag_created", columnList = "tag, created_date DESC, post_id DESC"),
+        @Index(name = "idx_post_tags_post", columnList = "post_id"),
+        // Восстановление окна популярных хэштегов после перезапуска
+        @Index(name = "idx_post_tags_created", columnList = "created_date")
+})
+public class PostTag {
+
+    @EmbeddedId
+    private PostTagId id;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+}
@@ -0,0 +1,32 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Составной ключ метки поста: метка и пост, в описании которого она встретилась.
+ */
+@Embeddable
+@Data
+public class PostTagId implements Serializable {
+
+    /**
+     * Метка вместе со знаком: "#закат" для хэштега, "@alice" для упоминания.
+     */
+    @Column(name = "tag", nullable = false, length = 101)
+    private String tag;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    public PostTagId() {
+    }
+
+    public PostTagId(String tag, Long postId) {
+        this.tag = tag;
+        this.postId = postId;
+    }
+}
@@ -0,0 +1,33 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись материализованной домашней ленты пользователя.
+ * Создается в момент публикации поста (fan-out on write) для каждого подписчика автора,
+ * поэтому чтение ленты - это один запрос по индексу владельца без join по подпискам.
+ *
+ * createdDate копирует дату создания поста, чтобы лента пагинировалась
+ * тем же курсором (createdDate, id), что и глобальная лента.
+ */
+@Entity
+@Data
+@Table(name = "home_timeline", indexes = {
+        @Index(name = "idx_home_timeline_owner_created", columnList = "owner_id, created_date DESC, post_id DESC"),
+        @Index(name = "idx_home_timeline_post", columnList = "post_id")
+})
+public class TimelineEntry {
+
+    @EmbeddedId
+    private TimelineEntryId id;
+
+    // Автор поста - нужен, чтобы убрать его посты из ленты при отписке
+    @Column(name = "author_id", nullable = false)
+    private Long authorId;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+}
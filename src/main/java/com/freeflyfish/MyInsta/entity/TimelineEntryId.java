@@ -0,0 +1,29 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Составной ключ записи домашней ленты: владелец ленты и пост в ней.
+ */
+@Embeddable
+@Data
+public class TimelineEntryId implements Serializable {
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    public TimelineEntryId() {
+    }
+
+    public TimelineEntryId(Long ownerId, Long postId) {
+        this.ownerId = ownerId;
+        this.postId = postId;
+    }
+}
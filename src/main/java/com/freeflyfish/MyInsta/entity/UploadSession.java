@@ -0,0 +1,131 @@
+package com.freeflyfish.MyInsta.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сессия докачиваемой загрузки большого файла.
+ *
+ * Клиент объявляет размер файла, после чего присылает его частями; каждая часть
+ * пишется в заранее созданный файл нужного размера со своего смещения.
+ * Смещение хранится в БД, поэтому загрузку можно продолжить после обрыва связи
+ * и после перезапуска сервера.
+ */
+@Entity
+@Data
+@Table(name = "upload_sessions", indexes = {
+        // Поиск брошенных сессий для очистки
+        @Index(name = "idx_upload_sessions_updated_date", columnList = "updated_date")
+})
+public class UploadSession {
+
+    /**
+     * Случайный UUID: идентификатор сессии знает только загружающий клиент.
+     */
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    /**
+     * Автор, от имени которого идет загрузка.
+     */
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    /**
+     * Имя файла у клиента; по расширению определяется ожидаемый тип (фото/видео).
+     */
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "media_type", nullable = false)
+    private MediaType mediaType;
+
+    /**
+     * Полный размер файла в байтах, объявленный при создании сессии.
+     */
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    /**
+     * Сколько байт от начала файла уже записано и сброшено на диск.
+     * Следующая часть должна начинаться с этого смещения.
+     */
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+
+    @Column(name = "updated_date", nullable = false)
+    private LocalDateTime updatedDate;
+
+    // ========== ГЕТТЕРЫ И СЕТТЕРЫ ==========
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return this.userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public MediaType getMediaType() {
+        return this.mediaType;
+    }
+
+    public void setMediaType(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public long getTotalSize() {
+        return this.totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public long getReceivedBytes() {
+        return this.receivedBytes;
+    }
+
+    public void setReceivedBytes(long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return this.createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public LocalDateTime getUpdatedDate() {
+        return this.updatedDate;
+    }
+
+    public void setUpdatedDate(LocalDateTime updatedDate) {
+        this.updatedDate = updatedDate;
+    }
+}
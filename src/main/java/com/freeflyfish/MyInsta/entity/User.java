@@ -1,7 +1,9 @@
 package com.freeflyfish.MyInsta.entity;
 
+import com.freeflyfish.MyInsta.util.TsidId;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 
 
 import java.time.LocalDateTime;
@@ -13,7 +15,7 @@ import java.util.List;
 @Table(name = "users")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TsidId
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -25,6 +27,17 @@ public class User {
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    // Денормализованные счетчики подписок.
+    // Обновляются только атомарными UPDATE в UserRepository, поэтому
+    // сохранение сущности User их никогда не перезаписывает.
+    @ColumnDefault("0")
+    @Column(name = "follower_count", nullable = false, insertable = false, updatable = false)
+    private long followerCount;
+
+    @ColumnDefault("0")
+    @Column(name = "following_count", nullable = false, insertable = false, updatable = false)
+    private long followingCount;
+
     // Связь: один пользователь - много постов
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private List<Post> posts = new ArrayList<>();
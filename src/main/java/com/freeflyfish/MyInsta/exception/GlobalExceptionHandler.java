@@ -1,7 +1,11 @@
 package com.freeflyfish.MyInsta.exception;
 
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -15,6 +19,36 @@ import java.util.Map;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    /**
+     * Пул потоковой выдачи (см. WebConfig) и его очередь заполнены - клиенту стоит повторить позже
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<?> handleTaskRejectedException(TaskRejectedException e) {
+        System.out.println("=== ГЛОБАЛЬНЫЙ ОБРАБОТЧИК: пул потоковой выдачи заполнен ===");
+
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Сервер перегружен, повторите запрос позже");
+
+        // Потоковый эндпоинт уже выставил тип ответа application/x-ndjson - ошибка пишется как JSON
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+
+    /**
+     * Сбой БД (в том числе нет свободного соединения в пуле) - ошибка сервера, а не запроса
+     */
+    @ExceptionHandler({DataAccessException.class, TransactionException.class})
+    public ResponseEntity<?> handleDataAccessException(RuntimeException e) {
+        System.out.println("=== ГЛОБАЛЬНЫЙ ОБРАБОТЧИК: ошибка базы данных ===");
+        System.out.println("Класс: " + e.getClass().getSimpleName());
+        e.printStackTrace();
+
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Ошибка базы данных, повторите запрос позже");
+        response.put("type", e.getClass().getSimpleName());
+
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    }
+
     /**
      * Обрабатывает все исключения RuntimeException
      */
@@ -0,0 +1,30 @@
+package com.freeflyfish.MyInsta.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает SQL-запросы Hibernate, подготовленные в текущем потоке.
+ *
+ * Глобальная статистика Hibernate (hibernate.statements и др.) суммирует запросы
+ * всех потоков, поэтому по ней не видно, какой эндпоинт делает N+1.
+ * Счетчик этого класса сбрасывается в начале запроса и читается в конце
+ * (см. RequestMetricsInterceptor). Запросы через JdbcTemplate сюда не попадают.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,119 @@
+package com.freeflyfish.MyInsta.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Записывает, сколько SQL-запросов сделал каждый запрос к API
+ * (метрика myinsta.http.server.queries с тегами method и uri, как у http.server.requests).
+ * Время ответа по эндпоинтам пишет сам Spring в http.server.requests.
+ *
+ * Асинхронный запрос (StreamingResponseBody, неблокирующая отдача файла) выполняется
+ * в нескольких потоках: запросы каждого из них складываются, и метрика пишется один раз -
+ * когда ответ завершен. Поэтому перехватчик регистрируется и как CallableProcessingInterceptor.
+ */
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor {
+
+    // Запросы, уже сделанные асинхронным запросом в других потоках
+    private static final String QUERIES_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".queries";
+
+    private final MeterRegistry meterRegistry;
+
+    public RequestMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCountInspector.reset();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        AtomicLong queries = queries(request);
+        queries.addAndGet(QueryCountInspector.current());
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                record(request, queries.get());
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // Повторная обработка результата асинхронного запроса - метрику запишет onComplete
+            queries(request).addAndGet(QueryCountInspector.current());
+            return;
+        }
+        record(request, QueryCountInspector.current());
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        // Здесь, в потоке запроса: задача может закончиться раньше afterConcurrentHandlingStarted
+        queries(request.getNativeRequest(HttpServletRequest.class));
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        QueryCountInspector.reset();
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        AtomicLong queries = (AtomicLong) request.getAttribute(QUERIES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (queries != null) {
+            queries.addAndGet(QueryCountInspector.current());
+        }
+    }
+
+    private static AtomicLong queries(HttpServletRequest request) {
+        AtomicLong queries = (AtomicLong) request.getAttribute(QUERIES_ATTRIBUTE);
+        if (queries == null) {
+            queries = new AtomicLong();
+            request.setAttribute(QUERIES_ATTRIBUTE, queries);
+        }
+        return queries;
+    }
+
+    private void record(HttpServletRequest request, long queries) {
+        // Шаблон пути, а не сам путь - иначе каждый ID поста дал бы отдельную метрику
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("myinsta.http.server.queries")
+                .description("SQL-запросы Hibernate на один HTTP-запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(queries);
+    }
+}
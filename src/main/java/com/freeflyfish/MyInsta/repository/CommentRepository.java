@@ -1,13 +1,51 @@
 package com.freeflyfish.MyInsta.repository;
 
 import com.freeflyfish.MyInsta.entity.Comment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
+    // Автор загружается тем же запросом, чтобы конвертация в DTO не делала N+1
+    @EntityGraph(attributePaths = "user")
     List<Comment> findByPostIdOrderByCreatedDateDesc(Long postId);
+
+    @EntityGraph(attributePaths = "user")
     List<Comment> findByUserIdOrderByCreatedDateDesc(Long userId);
-}
\ No newline at end of file
+
+    // Те же комментарии страницами (keyset по createdDate, id) для потоковой выдачи
+    @EntityGraph(attributePaths = "user")
+    @Query("select c from Comment c where c.user.id = :userId order by c.createdDate desc, c.id desc")
+    List<Comment> findByUserIdFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "user")
+    @Query("select c from Comment c where c.user.id = :userId " +
+            "and (c.createdDate < :createdDate or (c.createdDate = :createdDate and c.id < :id)) " +
+            "order by c.createdDate desc, c.id desc")
+    List<Comment> findByUserIdPageBefore(@Param("userId") Long userId,
+                                         @Param("createdDate") LocalDateTime createdDate,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    // ID поста, к которому относится комментарий (нужен для обновления счетчика при удалении)
+    @Query("select c.post.id from Comment c where c.id = :id")
+    Optional<Long> findPostIdById(@Param("id") Long id);
+
+    // Удаление комментария: 1 - удален, 0 - его уже нет (в том числе удален параллельно)
+    @Modifying
+    @Query("delete from Comment c where c.id = :id")
+    int deleteCommentById(@Param("id") Long id);
+
+    // ID автора комментария (для проверки прав при удалении)
+    @Query("select c.user.id from Comment c where c.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+}
@@ -0,0 +1,51 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.Follow;
+import com.freeflyfish.MyInsta.entity.FollowId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, FollowId> {
+
+    /**
+     * Создает подписку, если ее еще нет. Одновременные одинаковые подписки не получают
+     * нарушение первичного ключа: вторая дождется первой и ничего не вставит.
+     *
+     * @return 1 - подписка создана, 0 - уже была
+     */
+    @Modifying
+    @Query(value = "insert into follows (follower_id, followee_id, created_date) " +
+            "values (:followerId, :followeeId, :createdDate) on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("followerId") Long followerId,
+                       @Param("followeeId") Long followeeId,
+                       @Param("createdDate") LocalDateTime createdDate);
+
+    /**
+     * Удаляет подписку.
+     *
+     * @return 1 - подписка удалена, 0 - ее не было (или ее удалила параллельная отписка)
+     */
+    @Modifying
+    @Query("delete from Follow f where f.id.followerId = :followerId and f.id.followeeId = :followeeId")
+    int deleteFollow(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+    /**
+     * Находит "популярных" авторов среди подписок пользователя.
+     * Их посты не рассылаются подписчикам при публикации, а подмешиваются в ленту при чтении.
+     *
+     * @param followerId идентификатор подписчика
+     * @param threshold порог количества подписчиков
+     * @return идентификаторы популярных авторов
+     */
+    @Query("select u.id from Follow f, User u " +
+            "where u.id = f.id.followeeId and f.id.followerId = :followerId and u.followerCount >= :threshold")
+    List<Long> findFolloweeIdsWithFollowersAtLeast(@Param("followerId") Long followerId,
+                                                   @Param("threshold") long threshold);
+}
@@ -0,0 +1,66 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+
+    /**
+     * Создает запись о содержимом с нулевым счетчиком ссылок, если ее еще нет.
+     * Если одно и то же новое содержимое одновременно загружают две транзакции,
+     * вторая дождется первой и ничего не вставит (on conflict do nothing), а не получит
+     * нарушение первичного ключа (content_hash - единственный уникальный ключ таблицы).
+     *
+     * @return 1 - запись создана, 0 - содержимое уже хранится
+     */
+    @Modifying
+    @Query(value = "insert into media_blobs (content_hash, file_path, file_size, ref_count, created_date) " +
+            "values (:hash, :filePath, :fileSize, 0, current_timestamp) " +
+            "on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash,
+                       @Param("filePath") String filePath,
+                       @Param("fileSize") long fileSize);
+
+    @Query("select b.filePath from MediaBlob b where b.contentHash = :hash")
+    Optional<String> findFilePathByContentHash(@Param("hash") String hash);
+
+    /**
+     * Счетчик ссылок с блокировкой записи до конца транзакции: пока она держится,
+     * параллельная загрузка того же содержимого не может увеличить счетчик.
+     *
+     * @return счетчик ссылок или пусто, если записи нет
+     */
+    @Query(value = "select ref_count from media_blobs where content_hash = :hash for update", nativeQuery = true)
+    Optional<Long> findRefCountForUpdate(@Param("hash") String hash);
+
+    /**
+     * @return 1 - счетчик увеличен, 0 - записи уже нет (удалена параллельно)
+     */
+    @Modifying
+    @Query("update MediaBlob b set b.refCount = b.refCount + 1 where b.contentHash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    /**
+     * @return 1 - счетчик уменьшен, 0 - записи нет (файл загружен до появления хранилища)
+     */
+    @Modifying
+    @Query("update MediaBlob b set b.refCount = b.refCount - 1 where b.contentHash = :hash")
+    int decrementRefCount(@Param("hash") String hash);
+
+    /**
+     * Удаляет запись, если на содержимое больше никто не ссылается.
+     * Вызывается после удаления файла, под блокировкой {@link #findRefCountForUpdate}.
+     *
+     * @return 1 - запись удалена
+     */
+    @Modifying
+    @Query("delete from MediaBlob b where b.contentHash = :hash and b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+}
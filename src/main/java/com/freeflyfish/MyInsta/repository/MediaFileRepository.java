@@ -2,8 +2,11 @@ package com.freeflyfish.MyInsta.repository;
 
 import com.freeflyfish.MyInsta.entity.MediaFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,4 +25,12 @@ public interface MediaFileRepository extends JpaRepository<MediaFile, Long> {
      * @return количество медиафайлов
      */
     long countByPostId(Long postId);
+
+    /**
+     * Находит хэш содержимого файла по его пути (для ETag при отдаче файла)
+     * @param filePaths варианты пути к файлу, например "uploads/photos/abc123.jpg"
+     * @return хэш или пусто, если файла нет в БД или хэш не вычислялся (старые загрузки)
+     */
+    @Query("select m.contentHash from MediaFile m where m.filePath in :filePaths and m.contentHash is not null")
+    List<String> findContentHashesByFilePathIn(@Param("filePaths") Collection<String> filePaths);
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.PostLike;
+import com.freeflyfish.MyInsta.entity.PostLikeId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PostLikeRepository extends JpaRepository<PostLike, PostLikeId> {
+
+    /**
+     * Добавляет лайк, если его еще нет. Одна вставка без предварительного чтения;
+     * конфликт по первичному ключу (лайк уже есть или вставлен параллельно) не считается ошибкой.
+     *
+     * @return 1 - лайк добавлен, 0 - уже был
+     */
+    @Modifying
+    @Query(value = "insert into post_likes (post_id, user_id, created_date) " +
+            "values (:postId, :userId, :createdDate) on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("postId") Long postId,
+                       @Param("userId") Long userId,
+                       @Param("createdDate") LocalDateTime createdDate);
+
+    /**
+     * Убирает лайк.
+     *
+     * @return 1 - лайк удален, 0 - его не было
+     */
+    @Modifying
+    @Query("delete from PostLike l where l.id.postId = :postId and l.id.userId = :userId")
+    int deleteLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    /**
+     * Какие из постов пользователь лайкнул (одним запросом для всей страницы).
+     */
+    @Query("select l.id.postId from PostLike l where l.id.userId = :userId and l.id.postId in :postIds")
+    List<Long> findLikedPostIds(@Param("userId") Long userId, @Param("postIds") Collection<Long> postIds);
+
+    /**
+     * Удаляет лайки удаленного поста.
+     */
+    @Modifying
+    @Query("delete from PostLike l where l.id.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+}
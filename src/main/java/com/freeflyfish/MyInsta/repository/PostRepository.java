@@ -1,13 +1,103 @@
 package com.freeflyfish.MyInsta.repository;
 
 import com.freeflyfish.MyInsta.entity.Post;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
-    List<Post> findAllByOrderByCreatedDateDesc();
+
+    /**
+     * Посты пользователя вместе с автором (одним запросом, без N+1).
+     * Медиафайлы догружаются пачкой благодаря hibernate.default_batch_fetch_size.
+     */
+    @EntityGraph(attributePaths = "user")
     List<Post> findByUserIdOrderByCreatedDateDesc(Long userId);
-}
\ No newline at end of file
+
+    /**
+     * Первая страница ленты (keyset-пагинация по индексу created_date DESC, id DESC).
+     * @param pageable ограничение количества строк
+     * @return самые новые посты
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query("select p from Post p order by p.createdDate desc, p.id desc")
+    List<Post> findFeedFirstPage(Pageable pageable);
+
+    /**
+     * Следующая страница ленты: посты строго "старше" позиции курсора.
+     * Условие записано через OR, а не через сравнение кортежей,
+     * чтобы запрос одинаково работал во всех диалектах и использовал индекс.
+     *
+     * @param createdDate дата создания последнего отданного поста
+     * @param id идентификатор последнего отданного поста
+     * @param pageable ограничение количества строк
+     * @return посты после курсора
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query("select p from Post p " +
+            "where p.createdDate < :createdDate or (p.createdDate = :createdDate and p.id < :id) " +
+            "order by p.createdDate desc, p.id desc")
+    List<Post> findFeedPageBefore(@Param("createdDate") LocalDateTime createdDate,
+                                  @Param("id") Long id,
+                                  Pageable pageable);
+
+    /**
+     * Посты по списку идентификаторов вместе с авторами.
+     * Порядок не гарантирован - вызывающий код упорядочивает сам.
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query("select p from Post p where p.id in :ids")
+    List<Post> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Первая страница постов нескольких авторов (для подмешивания популярных авторов в ленту).
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query("select p from Post p where p.user.id in :userIds order by p.createdDate desc, p.id desc")
+    List<Post> findByUserIdsFirstPage(@Param("userIds") Collection<Long> userIds, Pageable pageable);
+
+    /**
+     * Следующая страница постов нескольких авторов (keyset по createdDate, id).
+     */
+    @EntityGraph(attributePaths = "user")
+    @Query("select p from Post p where p.user.id in :userIds " +
+            "and (p.createdDate < :createdDate or (p.createdDate = :createdDate and p.id < :id)) " +
+            "order by p.createdDate desc, p.id desc")
+    List<Post> findByUserIdsPageBefore(@Param("userIds") Collection<Long> userIds,
+                                       @Param("createdDate") LocalDateTime createdDate,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+
+    /**
+     * Сохраненное в БД количество комментариев поста (без чтения таблицы comments).
+     */
+    @Query("select p.commentCount from Post p where p.id = :id")
+    Optional<Long> findCommentCountById(@Param("id") Long id);
+
+    /**
+     * Сохраненное в БД количество лайков поста.
+     */
+    @Query("select p.likeCount from Post p where p.id = :id")
+    Optional<Long> findLikeCountById(@Param("id") Long id);
+
+    /**
+     * Сохраненное в БД количество лайков нескольких постов: пары [id, likeCount].
+     */
+    @Query("select p.id, p.likeCount from Post p where p.id in :ids")
+    List<Object[]> findLikeCountsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * ID автора поста (для проверки прав без загрузки поста).
+     */
+    @Query("select p.user.id from Post p where p.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
+}
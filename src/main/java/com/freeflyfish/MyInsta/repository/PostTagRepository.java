@@ -0,0 +1,50 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.PostTag;
+import com.freeflyfish.MyInsta.entity.PostTagId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PostTagRepository extends JpaRepository<PostTag, PostTagId> {
+
+    /**
+     * Первая страница постов с меткой (идентификаторы в порядке ленты).
+     */
+    @Query("select t.id.postId from PostTag t where t.id.tag = :tag " +
+            "order by t.createdDate desc, t.id.postId desc")
+    List<Long> findFirstPage(@Param("tag") String tag, Pageable pageable);
+
+    /**
+     * Следующая страница постов с меткой (keyset по createdDate, postId).
+     */
+    @Query("select t.id.postId from PostTag t where t.id.tag = :tag " +
+            "and (t.createdDate < :createdDate or (t.createdDate = :createdDate and t.id.postId < :postId)) " +
+            "order by t.createdDate desc, t.id.postId desc")
+    List<Long> findPageBefore(@Param("tag") String tag,
+                              @Param("createdDate") LocalDateTime createdDate,
+                              @Param("postId") Long postId,
+                              Pageable pageable);
+
+    List<PostTag> findByIdPostId(Long postId);
+
+    /**
+     * Хэштеги постов, созданных не раньше since (для восстановления окна популярных хэштегов).
+     */
+    @Query("select t from PostTag t where t.createdDate >= :since and t.id.tag like '#%'")
+    List<PostTag> findHashtagsCreatedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Удаляет метки удаленного поста.
+     */
+    @Modifying
+    @Query("delete from PostTag t where t.id.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+}
@@ -0,0 +1,78 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.TimelineEntry;
+import com.freeflyfish.MyInsta.entity.TimelineEntryId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TimelineEntryRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+    /**
+     * Первая страница домашней ленты пользователя.
+     */
+    @Query("select t from TimelineEntry t where t.id.ownerId = :ownerId " +
+            "order by t.createdDate desc, t.id.postId desc")
+    List<TimelineEntry> findFirstPage(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    /**
+     * Следующая страница домашней ленты пользователя (keyset по createdDate, postId).
+     */
+    @Query("select t from TimelineEntry t where t.id.ownerId = :ownerId " +
+            "and (t.createdDate < :createdDate or (t.createdDate = :createdDate and t.id.postId < :postId)) " +
+            "order by t.createdDate desc, t.id.postId desc")
+    List<TimelineEntry> findPageBefore(@Param("ownerId") Long ownerId,
+                                       @Param("createdDate") LocalDateTime createdDate,
+                                       @Param("postId") Long postId,
+                                       Pageable pageable);
+
+    /**
+     * Рассылает пост в ленты всех подписчиков автора одним INSERT ... SELECT,
+     * без загрузки списка подписчиков в память приложения.
+     *
+     * @return количество созданных записей
+     */
+    @Modifying
+    @Query(value = "insert into home_timeline (owner_id, post_id, author_id, created_date) " +
+            "select f.follower_id, :postId, :authorId, :createdDate from follows f " +
+            "where f.followee_id = :authorId", nativeQuery = true)
+    int fanOutToFollowers(@Param("postId") Long postId,
+                          @Param("authorId") Long authorId,
+                          @Param("createdDate") LocalDateTime createdDate);
+
+    /**
+     * Добавляет в ленту подписчика последние посты автора (при новой подписке).
+     *
+     * @return количество созданных записей
+     */
+    @Modifying
+    @Query(value = "insert into home_timeline (owner_id, post_id, author_id, created_date) " +
+            "select :ownerId, p.id, p.user_id, p.created_date from posts p " +
+            "where p.user_id = :authorId and not exists (" +
+            "  select 1 from home_timeline t where t.owner_id = :ownerId and t.post_id = p.id) " +
+            "order by p.created_date desc, p.id desc limit :limit", nativeQuery = true)
+    int backfill(@Param("ownerId") Long ownerId,
+                 @Param("authorId") Long authorId,
+                 @Param("limit") int limit);
+
+    /**
+     * Убирает из ленты подписчика все посты автора (при отписке).
+     */
+    @Modifying
+    @Query("delete from TimelineEntry t where t.id.ownerId = :ownerId and t.authorId = :authorId")
+    int deleteByOwnerAndAuthor(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId);
+
+    /**
+     * Убирает удаленный пост из всех лент.
+     */
+    @Modifying
+    @Query("delete from TimelineEntry t where t.id.postId = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+}
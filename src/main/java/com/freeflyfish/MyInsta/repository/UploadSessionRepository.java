@@ -0,0 +1,34 @@
+package com.freeflyfish.MyInsta.repository;
+
+import com.freeflyfish.MyInsta.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Сдвигает смещение сессии, только если оно не изменилось с момента чтения.
+     *
+     * @return 1 - смещение сдвинуто, 0 - сессию удалили или ее смещение уже другое
+     */
+    @Modifying
+    @Query("update UploadSession s set s.receivedBytes = :newOffset, s.updatedDate = :now " +
+            "where s.id = :id and s.receivedBytes = :expectedOffset")
+    int advanceOffset(@Param("id") String id,
+                      @Param("expectedOffset") long expectedOffset,
+                      @Param("newOffset") long newOffset,
+                      @Param("now") LocalDateTime now);
+
+    /**
+     * Идентификаторы сессий, в которые давно ничего не присылали.
+     */
+    @Query("select s.id from UploadSession s where s.updatedDate < :before")
+    List<String> findIdsUpdatedBefore(@Param("before") LocalDateTime before);
+}
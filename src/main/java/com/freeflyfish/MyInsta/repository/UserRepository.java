@@ -1,13 +1,44 @@
 package com.freeflyfish.MyInsta.repository;
 
 import com.freeflyfish.MyInsta.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
-}
\ No newline at end of file
+
+    /**
+     * Пачка пар [id, username] после указанного ID (для заполнения фильтра имен).
+     */
+    @Query("select u.id, u.username from User u where u.id > :afterId order by u.id")
+    List<Object[]> findIdsAndUsernamesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Текущее количество подписчиков (без загрузки всей сущности).
+     */
+    @Query("select u.followerCount from User u where u.id = :id")
+    Optional<Long> findFollowerCountById(@Param("id") Long id);
+
+    /**
+     * Атомарно изменяет счетчик подписчиков пользователя.
+     */
+    @Modifying
+    @Query("update User u set u.followerCount = u.followerCount + :delta where u.id = :id")
+    int addToFollowerCount(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * Атомарно изменяет счетчик подписок пользователя.
+     */
+    @Modifying
+    @Query("update User u set u.followingCount = u.followingCount + :delta where u.id = :id")
+    int addToFollowingCount(@Param("id") Long id, @Param("delta") long delta);
+}
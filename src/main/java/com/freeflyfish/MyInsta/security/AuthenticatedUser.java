@@ -0,0 +1,31 @@
+package com.freeflyfish.MyInsta.security;
+
+/**
+ * Пользователь, извлеченный из подписанного токена.
+ * Кладется в SecurityContext как principal и доступен в контроллерах через
+ * {@code @AuthenticationPrincipal}. Содержит только то, что записано в токене,
+ * поэтому для его получения не нужен запрос к БД.
+ */
+public class AuthenticatedUser {
+
+    private final Long id;
+    private final String username;
+
+    public AuthenticatedUser(Long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return username + " (" + id + ")";
+    }
+}
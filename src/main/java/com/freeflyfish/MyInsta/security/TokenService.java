@@ -0,0 +1,180 @@
+package com.freeflyfish.MyInsta.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Выпуск и проверка подписанных токенов сессии.
+ *
+ * Токен не хранится на сервере: в нем записаны ID пользователя, имя и срок действия,
+ * а подлинность подтверждает подпись HMAC-SHA256 секретом сервера. Поэтому проверка
+ * токена на каждом запросе - это один HMAC над парой десятков байт, без обращения
+ * к БД и без BCrypt (BCrypt выполняется только при входе).
+ *
+ * Формат: base64url("v1:{userId}:{expiresEpochSeconds}:{username}") + "." + base64url(hmac)
+ *
+ * Секрет задается свойством myinsta.auth.token-secret и должен быть одинаковым на всех
+ * экземплярах приложения. Если он не задан, генерируется случайный секрет - тогда
+ * после перезапуска все выданные токены становятся недействительными.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String VERSION = "v1";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+
+    // Mac не потокобезопасен, а создавать его на каждый запрос дорого.
+    // Пул, а не ThreadLocal: с виртуальными потоками у каждого запроса свой поток,
+    // и ThreadLocal создавал бы Mac заново на каждый запрос. Экземпляров в пуле не больше,
+    // чем было одновременных проверок
+    private final Queue<Mac> macPool = new ConcurrentLinkedQueue<>();
+
+    public TokenService(@Value("${myinsta.auth.token-secret:}") String secret,
+                        @Value("${myinsta.auth.token-ttl-hours:24}") long ttlHours) {
+        this.key = new SecretKeySpec(secretBytes(secret), HMAC_ALGORITHM);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.clock = Clock.systemUTC();
+        macPool.add(newMac()); // Проверяем ключ сразу, а не на первом запросе
+    }
+
+    /**
+     * Выпускает токен для пользователя.
+     *
+     * @param userId   ID пользователя
+     * @param username имя пользователя
+     * @return токен и момент, до которого он действителен
+     */
+    public IssuedToken issue(Long userId, String username) {
+        if (userId == null || username == null) {
+            throw new IllegalArgumentException("Для токена нужны ID и имя пользователя");
+        }
+        Instant expiresAt = clock.instant().plus(ttl);
+        String payload = VERSION + ":" + userId + ":" + expiresAt.getEpochSecond() + ":" + username;
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String token = encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload));
+        return new IssuedToken(token, expiresAt);
+    }
+
+    /**
+     * Проверяет токен.
+     *
+     * @param token токен из заголовка Authorization
+     * @return пользователь, если подпись верна и срок не истек, иначе пусто
+     */
+    public Optional<AuthenticatedUser> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+        String encodedPayload = token.substring(0, dot);
+        try {
+            // Подпись проверяется до разбора содержимого: чужие данные не разбираем вовсе
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return Optional.empty();
+            }
+
+            String[] parts = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split(":", 4);
+            if (parts.length != 4 || !VERSION.equals(parts[0])) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(parts[2]);
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return Optional.empty();
+            }
+            return Optional.of(new AuthenticatedUser(Long.parseLong(parts[1]), parts[3]));
+
+        } catch (IllegalArgumentException e) {
+            // Испорченный base64 или число
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        Mac mac = macPool.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            macPool.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 недоступен", e);
+        }
+    }
+
+    private static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isBlank()) {
+            log.warn("myinsta.auth.token-secret не задан: используется случайный секрет, " +
+                    "токены не переживут перезапуск и не подойдут другим экземплярам");
+            byte[] random = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(random);
+            return random;
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("myinsta.auth.token-secret должен быть не короче "
+                    + MIN_SECRET_BYTES + " байт");
+        }
+        return bytes;
+    }
+
+    /**
+     * Выпущенный токен.
+     */
+    public static class IssuedToken {
+        private final String token;
+        private final Instant expiresAt;
+
+        public IssuedToken(String token, Instant expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
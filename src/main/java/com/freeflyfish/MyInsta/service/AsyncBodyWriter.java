@@ -0,0 +1,452 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.util.TokenBucket;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Неблокирующая запись тела ответа (Servlet non-blocking I/O) с ограничением скорости.
+ *
+ * Поток запроса только запускает запись и освобождается. Дальше данные пишутся
+ * порциями, когда сокет готов их принять (onWritePossible), поэтому медленный клиент
+ * не держит поток Tomcat на все время скачивания. Если корзины токенов
+ * (своя для соединения и общая) пусты, запись откладывается на scheduler до их пополнения.
+ *
+ * Чтение файла (диск или удаленное хранилище) блокирующее, поэтому выполняется только
+ * в пуле ioExecutor: пока пишется одна порция, следующая читается во второй буфер.
+ * Потоки Tomcat и scheduler только пишут в сокет уже прочитанные данные.
+ *
+ * Тело - последовательность сегментов: заголовок (для частей multipart/byteranges)
+ * и участок файла, который читается через {@link RegionOpener}.
+ *
+ * По завершении ответа (и при обрыве соединения) сообщает, сколько байт файла записано.
+ */
+class AsyncBodyWriter implements WriteListener, AsyncListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncBodyWriter.class);
+
+    // Меньшими порциями под ограничением не пишем - ждем, пока накопится столько токенов
+    private static final int MIN_SHAPED_WRITE = 4 * 1024;
+
+    /**
+     * Открывает участок файла для чтения.
+     */
+    interface RegionOpener {
+        ReadableByteChannel open(long start, long count) throws IOException;
+    }
+
+    /**
+     * Сегмент тела: заголовок (может быть null) и участок файла (count может быть 0).
+     */
+    static class Segment {
+        private final byte[] prefix;
+        private final long start;
+        private final long count;
+
+        Segment(byte[] prefix, long start, long count) {
+            this.prefix = prefix;
+            this.start = start;
+            this.count = count;
+        }
+    }
+
+    private final List<Segment> segments;
+    private final RegionOpener opener;
+    private final TokenBucket connectionBucket;
+    private final TokenBucket globalBucket;
+    private final ScheduledExecutorService scheduler;
+    private final Executor ioExecutor;
+    private final LongConsumer onSent;
+
+    // Записываемая порция, следующая прочитанная порция и свободный буфер для чтения.
+    // Все три поля, как и флаги ниже, меняются только под монитором this
+    private ByteBuffer buffer;
+    private ByteBuffer filled;
+    private ByteBuffer spare;
+    private boolean reading;
+    private boolean ended;
+    private IOException readFailure;
+    private boolean waitingForData;
+    private boolean waitingForTokens;
+    // Сколько байт тела записано в ответ, вместе с заголовками частей
+    private long written;
+
+    private AsyncContext asyncContext;
+    private ServletOutputStream out;
+
+    private int segmentIndex = -1;
+    private byte[] prefix;
+    private int prefixOffset;
+    private long regionStart;
+    private long regionRemaining;
+    private ReadableByteChannel channel;
+
+    private volatile boolean finished;
+
+    /**
+     * @param connectionBucket ограничение для этого ответа или null
+     * @param globalBucket     общее ограничение или null
+     * @param onSent           получает по завершении ответа, сколько байт файла записано
+     */
+    AsyncBodyWriter(List<Segment> segments, RegionOpener opener, int chunkSize,
+                    TokenBucket connectionBucket, TokenBucket globalBucket,
+                    ScheduledExecutorService scheduler, Executor ioExecutor, LongConsumer onSent) {
+        this.segments = segments;
+        this.opener = opener;
+        this.connectionBucket = connectionBucket;
+        this.globalBucket = globalBucket;
+        this.scheduler = scheduler;
+        this.ioExecutor = ioExecutor;
+        this.onSent = onSent;
+        this.buffer = ByteBuffer.allocate(chunkSize);
+        this.buffer.flip();
+        this.spare = ByteBuffer.allocate(chunkSize);
+        nextSegment();
+    }
+
+    /**
+     * Читает первую порцию тела еще в потоке запроса: если файла нет, исключение
+     * (NoSuchFileException) получит вызывающий, пока ответ не начат.
+     */
+    synchronized void prime() throws IOException {
+        ended = !fill(buffer);
+    }
+
+    /**
+     * Переводит запрос в асинхронный режим и начинает запись.
+     */
+    void start(AsyncContext asyncContext, long timeoutMillis) throws IOException {
+        this.asyncContext = asyncContext;
+        asyncContext.setTimeout(timeoutMillis);
+        asyncContext.addListener(this);
+        this.out = asyncContext.getResponse().getOutputStream();
+        // Контейнер сам вызовет onWritePossible, когда поток будет готов к записи
+        out.setWriteListener(this);
+    }
+
+    @Override
+    public synchronized void onWritePossible() throws IOException {
+        if (finished) {
+            return;
+        }
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (filled == null) {
+                    if (readFailure != null) {
+                        throw readFailure;
+                    }
+                    if (ended) {
+                        // Завершаем, только когда отправлено все записанное: иначе хвост тела
+                        // из буфера ответа может уйти в сокет раньше данных, ждущих отправки
+                        if (out.isReady()) {
+                            finish();
+                        }
+                        return;
+                    }
+                    // Следующая порция еще читается - запись продолжит readNext()
+                    waitingForData = true;
+                    readAhead();
+                    return;
+                }
+                spare = buffer;
+                buffer = filled;
+                filled = null;
+            }
+            readAhead();
+
+            if (!out.isReady()) {
+                // Контейнер вызовет onWritePossible, когда сокет освободится
+                return;
+            }
+            int allowed = acquire(buffer.remaining());
+            if (allowed == 0) {
+                // isReady() вернул true, поэтому контейнер сам onWritePossible не вызовет
+                if (!waitingForTokens) {
+                    waitingForTokens = true;
+                    long delay = Math.max(TimeUnit.MILLISECONDS.toNanos(1), waitNanos(buffer.remaining()));
+                    scheduler.schedule(this::resumeAfterWait, delay, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            out.write(buffer.array(), buffer.position(), allowed);
+            buffer.position(buffer.position() + allowed);
+            written += allowed;
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // Обычно - клиент закрыл соединение
+        log.debug("Отдача файла прервана: {}", t.toString());
+        abort();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        finished = true;
+        closeChannel();
+        long sent;
+        synchronized (this) {
+            sent = fileBytesWithin(written);
+        }
+        onSent.accept(sent);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        log.debug("Отдача файла не уложилась в таймаут");
+        abort();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        onError(event.getThrowable());
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void resumeAfterWait() {
+        synchronized (this) {
+            waitingForTokens = false;
+        }
+        resume();
+    }
+
+    private void resume() {
+        try {
+            onWritePossible();
+        } catch (IOException | RuntimeException e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * Запускает чтение следующей порции в ioExecutor, если свободный буфер есть
+     * и чтение еще не идет. Вызывается под монитором.
+     */
+    private void readAhead() {
+        if (reading || filled != null || ended || readFailure != null || spare == null) {
+            return;
+        }
+        reading = true;
+        ByteBuffer target = spare;
+        spare = null;
+        try {
+            ioExecutor.execute(() -> readNext(target));
+        } catch (RejectedExecutionException e) {
+            reading = false;
+            spare = target;
+            readFailure = new IOException("Пул чтения файлов остановлен", e);
+        }
+    }
+
+    /**
+     * Читает порцию в ioExecutor (без монитора: чтение может быть долгим) и, если запись
+     * ждала эту порцию, возобновляет ее в scheduler.
+     */
+    private void readNext(ByteBuffer target) {
+        boolean hasData = false;
+        IOException failure = null;
+        try {
+            hasData = fill(target);
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException(e);
+        }
+
+        boolean resume;
+        synchronized (this) {
+            reading = false;
+            if (failure != null) {
+                readFailure = failure;
+            } else if (hasData) {
+                filled = target;
+            } else {
+                ended = true;
+                spare = target;
+            }
+            if (finished) {
+                // Ответ завершился, пока шло чтение
+                closeChannel();
+                return;
+            }
+            resume = waitingForData;
+            waitingForData = false;
+        }
+        if (resume) {
+            scheduler.execute(this::resume);
+        }
+    }
+
+    /**
+     * Сколько байт можно записать сейчас с учетом обоих ограничений.
+     */
+    private int acquire(int wanted) {
+        if (connectionBucket == null && globalBucket == null) {
+            return wanted;
+        }
+        int minimum = Math.min(wanted, MIN_SHAPED_WRITE);
+        long allowed = wanted;
+        if (connectionBucket != null) {
+            allowed = connectionBucket.take(allowed);
+        }
+        if (globalBucket != null && allowed > 0) {
+            long granted = globalBucket.take(allowed);
+            if (connectionBucket != null) {
+                connectionBucket.giveBack(allowed - granted);
+            }
+            allowed = granted;
+        }
+        if (allowed < minimum) {
+            giveBack(allowed);
+            return 0;
+        }
+        return (int) allowed;
+    }
+
+    private void giveBack(long amount) {
+        if (amount == 0) {
+            return;
+        }
+        if (connectionBucket != null) {
+            connectionBucket.giveBack(amount);
+        }
+        if (globalBucket != null) {
+            globalBucket.giveBack(amount);
+        }
+    }
+
+    private long waitNanos(int wanted) {
+        long amount = Math.min(wanted, MIN_SHAPED_WRITE);
+        long wait = 0;
+        if (connectionBucket != null) {
+            wait = connectionBucket.nanosUntilAvailable(amount);
+        }
+        if (globalBucket != null) {
+            wait = Math.max(wait, globalBucket.nanosUntilAvailable(amount));
+        }
+        return wait;
+    }
+
+    /**
+     * Заполняет буфер следующей порцией тела (блокирующее чтение). Одновременно
+     * выполняется не больше одного fill: состояние сегментов принадлежит читающему потоку.
+     *
+     * @return false, если тело закончилось
+     */
+    private boolean fill(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining() && segmentIndex < segments.size()) {
+            if (prefix != null) {
+                int length = Math.min(prefix.length - prefixOffset, buffer.remaining());
+                buffer.put(prefix, prefixOffset, length);
+                prefixOffset += length;
+                if (prefixOffset == prefix.length) {
+                    prefix = null;
+                }
+            } else if (regionRemaining > 0) {
+                if (channel == null) {
+                    channel = opener.open(regionStart, regionRemaining);
+                }
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + (int) Math.min(buffer.remaining(), regionRemaining));
+                int read = channel.read(buffer);
+                buffer.limit(limit);
+                if (read < 0) {
+                    throw new EOFException("Файл оказался короче ожидаемого");
+                }
+                regionRemaining -= read;
+            } else {
+                closeChannel();
+                nextSegment();
+            }
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Сколько байт участков файла приходится на начало тела длиной body (без заголовков частей).
+     */
+    private long fileBytesWithin(long body) {
+        long sent = 0;
+        for (Segment segment : segments) {
+            if (segment.prefix != null) {
+                body -= segment.prefix.length;
+            }
+            if (body <= 0) {
+                break;
+            }
+            sent += Math.min(body, segment.count);
+            body -= segment.count;
+        }
+        return sent;
+    }
+
+    private void nextSegment() {
+        segmentIndex++;
+        if (segmentIndex < segments.size()) {
+            Segment segment = segments.get(segmentIndex);
+            prefix = segment.prefix != null && segment.prefix.length > 0 ? segment.prefix : null;
+            prefixOffset = 0;
+            regionStart = segment.start;
+            regionRemaining = segment.count;
+        }
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        closeChannel();
+        asyncContext.complete();
+    }
+
+    private void abort() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        closeChannel();
+        if (asyncContext == null) {
+            // Асинхронный режим так и не был запущен
+            return;
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // Запрос уже завершен контейнером
+        }
+    }
+
+    private synchronized void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("Не удалось закрыть файл", e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.util.StripedCounterBuffer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Денормализованный счетчик комментариев поста (колонка posts.comment_count).
+ *
+ * Создание и удаление комментария не обновляют строку поста сразу: изменение
+ * попадает в StripedCounterBuffer, а раз в flush-interval все накопленные изменения
+ * записываются одним пакетным UPDATE. Поэтому комментарии к "вирусному" посту
+ * не выстраиваются в очередь за блокировкой одной строки.
+ */
+@Service
+public class CommentCountService {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentCountService.class);
+
+    private final PostRepository postRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean recountOnStartup;
+
+    private final StripedCounterBuffer buffer = new StripedCounterBuffer();
+
+    public CommentCountService(PostRepository postRepository, JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${myinsta.counters.recount-comments-on-startup:false}") boolean recountOnStartup) {
+        this.postRepository = postRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recountOnStartup = recountOnStartup;
+    }
+
+    public void increment(Long postId) {
+        buffer.add(postId, 1);
+    }
+
+    public void decrement(Long postId) {
+        buffer.add(postId, -1);
+    }
+
+    /**
+     * Количество комментариев поста: значение из posts.comment_count
+     * плюс изменения, еще не записанные в БД. Таблица comments не читается.
+     *
+     * @param postId идентификатор поста
+     * @return количество комментариев
+     * @throws RuntimeException если пост не найден
+     */
+    public long getCommentCount(Long postId) {
+        return Math.max(0, buffer.read(postId, () -> postRepository.findCommentCountById(postId)
+                .orElseThrow(() -> new RuntimeException("Пост с ID " + postId + " не найден"))));
+    }
+
+    /**
+     * Записывает накопленные изменения счетчиков в БД одним пакетом.
+     * Строки обновляются в порядке возрастания ID, чтобы параллельные пакеты не блокировали друг друга.
+     */
+    @Scheduled(fixedDelayString = "${myinsta.counters.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            buffer.flush((drained, beforeCommit) -> {
+                Map<Long, Long> deltas = new TreeMap<>(drained);
+                List<Object[]> batch = new ArrayList<>(deltas.size());
+                deltas.forEach((postId, delta) -> batch.add(new Object[]{delta, postId}));
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate("update posts set comment_count = comment_count + ? where id = ?", batch);
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void beforeCommit(boolean readOnly) {
+                            beforeCommit.run();
+                        }
+                    });
+                });
+            });
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать счетчики комментариев, повторим позже", e);
+        }
+    }
+
+    /**
+     * При остановке приложения записываем все, что осталось в буфере.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Пересчитывает comment_count для всех постов по таблице comments.
+     * Нужен один раз после появления колонки на базе с существующими комментариями
+     * (myinsta.counters.recount-comments-on-startup=true).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recountIfRequested() {
+        if (!recountOnStartup) {
+            return;
+        }
+        int updated = jdbcTemplate.update(
+                "update posts set comment_count = (select count(*) from comments c where c.post_id = posts.id)");
+        log.info("Пересчитаны счетчики комментариев для {} постов", updated);
+    }
+}
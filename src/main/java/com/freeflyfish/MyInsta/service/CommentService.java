@@ -4,18 +4,42 @@ import com.freeflyfish.MyInsta.entity.Comment;
 import com.freeflyfish.MyInsta.entity.Post;
 import com.freeflyfish.MyInsta.entity.User;
 import com.freeflyfish.MyInsta.repository.CommentRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class CommentService {
 
     private final CommentRepository commentRepository;
+    private final CommentCountService commentCountService;
+    private final EntityManager entityManager;
 
-    public CommentService(CommentRepository commentRepository) {
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Размер страницы потоковой выдачи
+    private static final int STREAM_PAGE_SIZE = 100;
+
+    public CommentService(CommentRepository commentRepository, CommentCountService commentCountService,
+                          EntityManager entityManager, PlatformTransactionManager transactionManager) {
         this.commentRepository = commentRepository;
+        this.commentCountService = commentCountService;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -27,7 +51,9 @@ public class CommentService {
         comment.setUser(user);
         comment.setPost(post);
 
-        return commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(comment);
+        commentCountService.increment(post.getId());
+        return savedComment;
     }
 
     /**
@@ -46,9 +72,78 @@ public class CommentService {
     }
 
     /**
-     * Удаление комментария
+     * Все комментарии пользователя страницами (новые первыми) для потоковой выдачи.
+     * Как и {@link PostService#forEachPostPageByUser}, каждая страница читается и
+     * преобразуется в короткой транзакции, а consumer вызывается после нее, когда
+     * соединение с БД уже возвращено в пул.
+     */
+    public <T> void forEachCommentPageByUser(Long userId, Function<List<Comment>, List<T>> convert,
+                                             Consumer<List<T>> consumer) {
+        Pageable pageable = PageRequest.of(0, STREAM_PAGE_SIZE);
+        FeedCursor before = null;
+        while (true) {
+            FeedCursor cursor = before;
+            List<T> converted = new ArrayList<>();
+            List<Comment> comments = readOnlyTransaction.execute(status -> {
+                List<Comment> page = cursor == null
+                        ? commentRepository.findByUserIdFirstPage(userId, pageable)
+                        : commentRepository.findByUserIdPageBefore(userId, cursor.getCreatedDate(), cursor.getId(), pageable);
+                converted.addAll(convert.apply(page));
+                entityManager.clear();
+                return page;
+            });
+            if (comments.isEmpty()) {
+                return;
+            }
+            consumer.accept(converted);
+            if (comments.size() < STREAM_PAGE_SIZE) {
+                return;
+            }
+            Comment last = comments.get(comments.size() - 1);
+            before = new FeedCursor(last.getCreatedDate(), last.getId());
+        }
+    }
+
+    /**
+     * ID автора комментария (пусто, если комментария нет)
+     */
+    public Optional<Long> findAuthorId(Long commentId) {
+        return commentRepository.findUserIdById(commentId);
+    }
+
+    /**
+     * Удаление комментария.
+     * Счетчик уменьшается только той транзакцией, которая действительно удалила строку,
+     * и только после ее фиксации: повторное или одновременное удаление его не трогает.
+     *
+     * @throws RuntimeException если комментария нет (в том числе он удален параллельно)
      */
+    @Transactional
     public void deleteComment(Long commentId) {
-        commentRepository.deleteById(commentId);
+        Optional<Long> postId = commentRepository.findPostIdById(commentId);
+        if (postId.isEmpty() || commentRepository.deleteCommentById(commentId) == 0) {
+            throw new RuntimeException("Комментарий с ID " + commentId + " не найден");
+        }
+        runAfterCommit(() -> commentCountService.decrement(postId.get()));
+    }
+
+    /**
+     * Получение количества комментариев поста из денормализованного счетчика
+     */
+    public long getCommentCount(Long postId) {
+        return commentCountService.getCommentCount(postId);
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,315 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaRendition;
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.repository.MediaFileRepository;
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Генерация уменьшенных копий фотографий (150/320/640/1080px по ширине).
+ *
+ * Копии создаются асинхронно после сохранения поста, в пуле потоков размером
+ * с количество ядер: масштабирование - чисто вычислительная работа, больше потоков не ускорит ее.
+ * Очередь ограничена; если она переполнена, копии для файла не создаются -
+ * клиент в этом случае просто получает оригинал.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    // Защита от "бомб" - изображений с огромным разрешением при маленьком размере файла
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+
+    private final MediaFileRepository mediaFileRepository;
+    private final PostDTOCache postDTOCache;
+    private final TransactionTemplate transactionTemplate;
+    private final MediaStorage mediaStorage;
+    private final Path tempDir;
+    private final int[] widths;
+    private final ThreadPoolExecutor executor;
+
+    public ImageDerivativeService(MediaFileRepository mediaFileRepository,
+                                  PostDTOCache postDTOCache,
+                                  TransactionTemplate transactionTemplate,
+                                  MediaStorage mediaStorage,
+                                  @Value("${myinsta.storage.temp-dir:uploads/tmp}") String tempDir,
+                                  @Value("${myinsta.media.rendition-widths:150,320,640,1080}") int[] widths,
+                                  @Value("${myinsta.media.rendition-queue-size:1000}") int queueSize) {
+        this.mediaFileRepository = mediaFileRepository;
+        this.postDTOCache = postDTOCache;
+        this.transactionTemplate = transactionTemplate;
+        this.mediaStorage = mediaStorage;
+        this.tempDir = Paths.get(tempDir);
+        this.widths = Arrays.stream(widths).sorted().toArray();
+
+        // Масштабирование нагружает процессор, а не ждет ввода-вывода, поэтому пул остается
+        // из обычных потоков по числу ядер и при включенных виртуальных потоках
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> log.warn("Очередь генерации копий изображений переполнена, задача пропущена"));
+    }
+
+    /**
+     * Ставит в очередь генерацию копий для сохраненного медиафайла.
+     * Если вызвано внутри транзакции, задача стартует только после ее фиксации,
+     * чтобы рабочий поток гарантированно увидел строку медиафайла в БД.
+     *
+     * @param mediaFile сохраненный медиафайл (с ID)
+     */
+    public void scheduleRenditions(MediaFile mediaFile) {
+        if (mediaFile.getMediaType() != MediaType.PHOTO || renditionFormat(mediaFile.getFilePath()) == null) {
+            return;
+        }
+
+        Long mediaFileId = mediaFile.getId();
+        Long postId = mediaFile.getPost() != null ? mediaFile.getPost().getId() : null;
+        String filePath = mediaFile.getFilePath();
+        Runnable task = () -> generateRenditions(mediaFileId, postId, filePath);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    executor.execute(task);
+                }
+            });
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Создает копии на диске и записывает их в медиафайл.
+     */
+    private void generateRenditions(Long mediaFileId, Long postId, String filePath) {
+        String format = renditionFormat(filePath);
+
+        List<MediaRendition> renditions = new ArrayList<>();
+        Path downloaded = null;
+        try {
+            // Декодеру нужен файл с произвольным доступом; из удаленного хранилища оригинал скачивается
+            Path source = mediaStorage.localPath(filePath);
+            if (source == null) {
+                downloaded = download(filePath);
+                if (downloaded == null) {
+                    return;
+                }
+                source = downloaded;
+            }
+            renditions = renderAll(filePath, source, format);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось создать уменьшенные копии для медиафайла {}", mediaFileId, e);
+            return;
+        } finally {
+            deleteQuietly(downloaded);
+        }
+
+        if (renditions.isEmpty()) {
+            return;
+        }
+
+        List<MediaRendition> result = renditions;
+        transactionTemplate.executeWithoutResult(status ->
+                mediaFileRepository.findById(mediaFileId).ifPresent(mediaFile -> {
+                    mediaFile.setRenditions(result);
+                    mediaFileRepository.save(mediaFile);
+                }));
+        if (postId != null) {
+            postDTOCache.invalidate(postId);
+        }
+    }
+
+    /**
+     * Создает недостающие копии оригинала и возвращает описание всех копий.
+     */
+    private List<MediaRendition> renderAll(String filePath, Path source, String format) throws IOException {
+        List<MediaRendition> renditions = new ArrayList<>();
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return renditions; // Формат не поддерживается ImageIO - остаемся с оригиналом
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Размеры читаются из заголовка, без декодирования пикселей
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > MAX_SOURCE_PIXELS) {
+                    log.warn("Изображение {} слишком большое для создания копий: {}x{}", filePath, sourceWidth, sourceHeight);
+                    return renditions;
+                }
+
+                BufferedImage original = null;
+                for (int width : widths) {
+                    if (width >= sourceWidth) {
+                        break; // Увеличивать изображение смысла нет
+                    }
+                    int height = Math.max(1, (int) Math.round((double) sourceHeight * width / sourceWidth));
+                    String renditionPath = renditionPath(filePath, width, format);
+
+                    // Одинаковое содержимое хранится один раз, поэтому копии могли
+                    // уже быть созданы для другого медиафайла - декодировать оригинал не нужно
+                    if (!mediaStorage.exists(renditionPath)) {
+                        if (original == null) {
+                            original = reader.read(0);
+                        }
+                        store(scale(original, width, height, "png".equals(format)), format, renditionPath);
+                    }
+                    renditions.add(new MediaRendition(width, height, renditionPath));
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+        return renditions;
+    }
+
+    /**
+     * Скачивает оригинал из удаленного хранилища во временный файл.
+     *
+     * @return временный файл или null, если оригинала уже нет
+     */
+    private Path download(String filePath) throws IOException {
+        MediaStorage.StoredObject object = mediaStorage.stat(filePath);
+        if (object == null) {
+            return null;
+        }
+        Files.createDirectories(tempDir);
+        Path temp = tempDir.resolve(UUID.randomUUID() + ".download");
+        try (InputStream input = mediaStorage.openRange(filePath, 0, object.getSize())) {
+            Files.copy(input, temp);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Пишет копию во временный файл и передает его в хранилище. Хранилище публикует файл
+     * целиком (перенос или PUT), поэтому параллельная генерация той же копии или ее отдача
+     * клиенту не увидят недописанный файл.
+     */
+    private void store(BufferedImage image, String format, String key) throws IOException {
+        Files.createDirectories(tempDir);
+        Path temp = tempDir.resolve(UUID.randomUUID() + "." + format);
+        try {
+            ImageIO.write(image, format, temp.toFile());
+            mediaStorage.store(key, temp, "png".equals(format) ? "image/png" : "image/jpeg");
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private void deleteQuietly(Path temp) {
+        if (temp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл {}", temp, e);
+        }
+    }
+
+    /**
+     * Масштабирует изображение последовательными уменьшениями вдвое,
+     * чтобы билинейная интерполяция не давала "лесенку" при сильном уменьшении.
+     */
+    private BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight, boolean keepAlpha) {
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    /**
+     * Формат копий по расширению оригинала: PNG сохраняет прозрачность, остальное - в JPEG.
+     * GIF не уменьшаем, чтобы не потерять анимацию.
+     *
+     * @return "jpg", "png" или null, если копии для такого файла не создаются
+     */
+    private String renditionFormat(String filePath) {
+        String extension = filePath.substring(filePath.lastIndexOf(".") + 1).toLowerCase();
+        switch (extension) {
+            case "jpg":
+            case "jpeg":
+            case "bmp":
+                return "jpg";
+            case "png":
+                return "png";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Ключ копии рядом с оригиналом: "photos/abc.jpg" -> "photos/abc_w320.jpg".
+     */
+    private String renditionPath(String filePath, int width, String format) {
+        String base = filePath.substring(0, filePath.lastIndexOf("."));
+        return base + "_w" + width + "." + format;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,147 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.util.StripedCounterBuffer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Денормализованный счетчик лайков поста (колонка posts.like_count).
+ *
+ * Лайк - самая частая запись в приложении, а у "вирусного" поста их тысячи в секунду.
+ * Поэтому лайк не обновляет строку поста: изменение попадает в StripedCounterBuffer,
+ * и раз в flush-interval все накопленные изменения записываются одним пакетным UPDATE -
+ * одна запись в строку поста за интервал вместо одной на каждый лайк.
+ *
+ * Сам факт лайка (строка post_likes) записывается сразу, откладывается только счетчик.
+ * Изменения, не записанные до аварийной остановки (kill -9, падение JVM), теряются;
+ * после такого сбоя счетчики восстанавливаются пересчетом по post_likes при старте
+ * (myinsta.counters.recount-likes-on-startup=true).
+ */
+@Service
+public class LikeCountService {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeCountService.class);
+
+    private final PostRepository postRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean recountOnStartup;
+
+    private final StripedCounterBuffer buffer = new StripedCounterBuffer();
+
+    public LikeCountService(PostRepository postRepository, JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${myinsta.counters.recount-likes-on-startup:false}") boolean recountOnStartup) {
+        this.postRepository = postRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recountOnStartup = recountOnStartup;
+    }
+
+    public void increment(Long postId) {
+        buffer.add(postId, 1);
+    }
+
+    public void decrement(Long postId) {
+        buffer.add(postId, -1);
+    }
+
+    /**
+     * Количество лайков нескольких постов (для страницы ответа): значения posts.like_count
+     * одним запросом плюс изменения, еще не записанные в БД. Значение из БД и изменения
+     * читаются согласованно, поэтому пакет, записываемый во время чтения, не теряется
+     * и не учитывается дважды.
+     *
+     * @param postIds идентификаторы постов
+     * @return количество лайков по ID; удаленные посты - 0
+     */
+    public Map<Long, Long> getLikeCounts(Collection<Long> postIds) {
+        Map<Long, Long> counts = buffer.readAll(postIds, () -> {
+            Map<Long, Long> stored = new HashMap<>();
+            for (Object[] row : postRepository.findLikeCountsByIds(postIds)) {
+                stored.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+            return stored;
+        });
+        counts.replaceAll((postId, count) -> Math.max(0, count));
+        return counts;
+    }
+
+    /**
+     * Количество лайков поста: значение из posts.like_count плюс изменения, еще не записанные в БД.
+     *
+     * @param postId идентификатор поста
+     * @return количество лайков
+     * @throws RuntimeException если пост не найден
+     */
+    public long getLikeCount(Long postId) {
+        return Math.max(0, buffer.read(postId, () -> postRepository.findLikeCountById(postId)
+                .orElseThrow(() -> new RuntimeException("Пост с ID " + postId + " не найден"))));
+    }
+
+    /**
+     * Записывает накопленные изменения счетчиков в БД одним пакетом.
+     * Строки обновляются в порядке возрастания ID, чтобы параллельные пакеты не блокировали друг друга.
+     */
+    @Scheduled(fixedDelayString = "${myinsta.counters.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            buffer.flush((drained, beforeCommit) -> {
+                Map<Long, Long> deltas = new TreeMap<>(drained);
+                List<Object[]> batch = new ArrayList<>(deltas.size());
+                deltas.forEach((postId, delta) -> batch.add(new Object[]{delta, postId}));
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate("update posts set like_count = like_count + ? where id = ?", batch);
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void beforeCommit(boolean readOnly) {
+                            beforeCommit.run();
+                        }
+                    });
+                });
+            });
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать счетчики лайков, повторим позже", e);
+        }
+    }
+
+    /**
+     * При остановке приложения записываем все, что осталось в буфере.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Пересчитывает like_count для всех постов по таблице post_likes - после аварийной
+     * остановки, потерявшей незаписанные изменения (myinsta.counters.recount-likes-on-startup=true).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recountIfRequested() {
+        if (!recountOnStartup) {
+            return;
+        }
+        int updated = jdbcTemplate.update(
+                "update posts set like_count = (select count(*) from post_likes l where l.post_id = posts.id)");
+        log.info("Пересчитаны счетчики лайков для {} постов", updated);
+    }
+}
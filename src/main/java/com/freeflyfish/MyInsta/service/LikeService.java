@@ -0,0 +1,128 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.repository.PostLikeRepository;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Лайки постов.
+ *
+ * Лайк идемпотентен: повторный лайк и снятие несуществующего лайка ничего не меняют.
+ * Строка post_likes пишется сразу, одним запросом в своей короткой транзакции,
+ * а счетчик поста меняется через {@link LikeCountService} после коммита и только если
+ * лайк действительно добавился или удалился.
+ */
+@Service
+public class LikeService {
+
+    private final PostLikeRepository postLikeRepository;
+    private final PostRepository postRepository;
+    private final LikeCountService likeCountService;
+    private final TransactionTemplate transactionTemplate;
+
+    public LikeService(PostLikeRepository postLikeRepository, PostRepository postRepository,
+                       LikeCountService likeCountService, TransactionTemplate transactionTemplate) {
+        this.postLikeRepository = postLikeRepository;
+        this.postRepository = postRepository;
+        this.likeCountService = likeCountService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Ставит лайк.
+     *
+     * @param postId идентификатор поста
+     * @param userId кто лайкает
+     * @return true, если лайк добавлен; false, если он уже был
+     * @throws RuntimeException если пост не найден
+     */
+    public boolean like(Long postId, Long userId) {
+        if (!postRepository.existsById(postId)) {
+            throw new RuntimeException("Пост с ID " + postId + " не найден");
+        }
+        // Повторная вставка того же лайка (в том числе параллельная) не ошибка - on conflict do nothing
+        Integer inserted = transactionTemplate.execute(status ->
+                postLikeRepository.insertIfAbsent(postId, userId, LocalDateTime.now()));
+        if (inserted == null || inserted == 0) {
+            return false;
+        }
+        likeCountService.increment(postId);
+        return true;
+    }
+
+    /**
+     * Снимает лайк.
+     *
+     * @param postId идентификатор поста
+     * @param userId кто снимает лайк
+     * @return true, если лайк удален; false, если его не было
+     */
+    public boolean unlike(Long postId, Long userId) {
+        Integer deleted = transactionTemplate.execute(status -> postLikeRepository.deleteLike(postId, userId));
+        if (deleted == null || deleted == 0) {
+            return false;
+        }
+        likeCountService.decrement(postId);
+        return true;
+    }
+
+    public long getLikeCount(Long postId) {
+        return likeCountService.getLikeCount(postId);
+    }
+
+    /**
+     * Удаляет лайки удаленного поста. Вызывается в транзакции удаления поста.
+     */
+    @Transactional
+    public void removePost(Long postId) {
+        postLikeRepository.deleteByPostId(postId);
+    }
+
+    /**
+     * Дополняет посты актуальным количеством лайков (posts.like_count плюс еще не записанные
+     * изменения счетчика) и признаком "лайкнул ли я". Каждое читается одним запросом на весь
+     * список, признак - только для вошедшего пользователя.
+     * DTO изменяются на месте, поэтому сюда нельзя передавать экземпляры из PostDTOCache.
+     *
+     * @param posts       посты ответа
+     * @param currentUser пользователь из токена или null для анонимного запроса
+     * @return те же посты
+     */
+    public List<PostDTO> applyLikes(List<PostDTO> posts, AuthenticatedUser currentUser) {
+        if (posts.isEmpty()) {
+            return posts;
+        }
+        List<Long> postIds = posts.stream().map(PostDTO::getId).collect(Collectors.toList());
+        Set<Long> liked = new HashSet<>();
+        if (currentUser != null) {
+            liked.addAll(postLikeRepository.findLikedPostIds(currentUser.getId(), postIds));
+        }
+        // like_count, загруженный вместе с постом (или взятый из PostDTOCache), мог устареть
+        // к моменту чтения буфера - перечитываем его согласованно с незаписанными изменениями
+        Map<Long, Long> likeCounts = likeCountService.getLikeCounts(postIds);
+        for (PostDTO post : posts) {
+            post.setLikeCount(likeCounts.getOrDefault(post.getId(), 0L));
+            post.setLikedByMe(liked.contains(post.getId()));
+        }
+        return posts;
+    }
+
+    /**
+     * То же для одного поста.
+     */
+    public PostDTO applyLikes(PostDTO post, AuthenticatedUser currentUser) {
+        applyLikes(List.of(post), currentUser);
+        return post;
+    }
+}
@@ -0,0 +1,408 @@
+package com.freeflyfish.MyInsta.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import com.freeflyfish.MyInsta.util.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Отдача медиафайлов клиенту с поддержкой HTTP Range (RFC 9110).
+ *
+ * - без заголовка Range отдается весь файл (200);
+ * - один диапазон - 206 Partial Content с Content-Range;
+ * - несколько диапазонов - 206 с телом multipart/byteranges;
+ * - If-Range: диапазон учитывается, только если файл не изменился;
+ * - If-None-Match / If-Modified-Since: 304 Not Modified без чтения файла.
+ *
+ * Крупные тела отдаются через sendfile Tomcat (файл передается ядром напрямую в сокет,
+ * а поток обработки запроса освобождается сразу), небольшие копируются в поток ответа
+ * обычным буферизованным чтением: поток ответа сервлета - не канал сокета, и передача
+ * "без копирования" в него невозможна.
+ *
+ * Крупные тела, которые нельзя отдать через sendfile (файл в удаленном хранилище, коннектор
+ * без sendfile, например с TLS), и все ответы при заданном ограничении скорости
+ * (myinsta.files.rate-limit.*) пишутся неблокирующим вводом-выводом сервлета (AsyncBodyWriter):
+ * поток запроса освобождается сразу, и медленные клиенты, качающие видео, не занимают
+ * пул потоков Tomcat, нужный запросам API.
+ */
+@Service
+public class MediaStreamingService {
+
+    // Атрибуты запроса, через которые Tomcat принимает задание на sendfile
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // Файлы по одному URL никогда не меняются - кэшируем на год без повторной проверки
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // Буфер копирования тела, когда sendfile не используется
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Меньшие тела дешевле отдать обычной записью, чем через sendfile (порог как у Tomcat)
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    // Тело пишется неблокирующей записью: сколько отправлено, сообщит AsyncBodyWriter по ее завершении
+    private static final long SENT_ON_COMPLETION = -1;
+
+    private final MediaStorage mediaStorage;
+    private final long perConnectionRate;
+    private final TokenBucket globalBucket;
+    private final int writeChunkSize;
+    private final long asyncTimeoutMillis;
+
+    // Возобновляет отложенную запись, когда в корзинах накопятся токены или дочитана порция.
+    // Сам ничего не читает - только пишет в сокет
+    private final ScheduledExecutorService throttleScheduler;
+
+    // Блокирующее чтение порций для неблокирующей записи (диск или удаленное хранилище)
+    private final ThreadPoolTaskExecutor readExecutor;
+
+    public MediaStreamingService(MediaStorage mediaStorage,
+                                 @Value("${myinsta.files.rate-limit.per-connection:0}") DataSize perConnectionRate,
+                                 @Value("${myinsta.files.rate-limit.global:0}") DataSize globalRate,
+                                 @Value("${myinsta.files.write-chunk-size:64KB}") DataSize writeChunkSize,
+                                 @Value("${myinsta.files.async-timeout-minutes:30}") long asyncTimeoutMinutes,
+                                 @Value("${myinsta.files.read-threads:16}") int readThreads) {
+        this.mediaStorage = mediaStorage;
+        this.writeChunkSize = (int) writeChunkSize.toBytes();
+        this.perConnectionRate = perConnectionRate.toBytes();
+        // Общая корзина вмещает секунду трафика: после затишья допустим короткий всплеск
+        this.globalBucket = globalRate.toBytes() > 0
+                ? new TokenBucket(globalRate.toBytes(), Math.max(globalRate.toBytes(), this.writeChunkSize))
+                : null;
+        this.asyncTimeoutMillis = TimeUnit.MINUTES.toMillis(asyncTimeoutMinutes);
+        this.throttleScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "media-throttle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.readExecutor = new ThreadPoolTaskExecutor();
+        this.readExecutor.setCorePoolSize(readThreads);
+        this.readExecutor.setMaxPoolSize(readThreads);
+        this.readExecutor.setThreadNamePrefix("media-reader-");
+        this.readExecutor.setDaemon(true);
+        this.readExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        throttleScheduler.shutdownNow();
+        readExecutor.shutdown();
+    }
+
+    /**
+     * Отдает файл с учетом условных заголовков (If-None-Match, If-Modified-Since), Range и If-Range.
+     *
+     * Загруженные файлы не изменяются, поэтому ответ кэшируется клиентом и прокси "навсегда"
+     * (Cache-Control: immutable), а повторная проверка завершается 304 без открытия файла.
+     *
+     * @param key ключ файла в хранилище
+     * @param contentType MIME-тип файла
+     * @param validator ETag, время изменения и размер файла
+     * @param request HTTP-запрос
+     * @param response HTTP-ответ
+     * @param onSent получает, сколько байт файла передано в теле ответа (0 для 304, 416 и HEAD),
+     *               когда ответ отдан: сразу при записи в потоке запроса и sendfile, по завершении
+     *               неблокирующей записи - уже после выхода из метода. Если метод бросил
+     *               исключение, не вызывается
+     * @throws IOException если файл не удалось прочитать или клиент оборвал соединение
+     */
+    public void serve(String key, String contentType, MediaValidatorCache.MediaValidator validator,
+                      HttpServletRequest request, HttpServletResponse response, LongConsumer onSent)
+            throws IOException {
+        long sent = respond(key, contentType, validator, request, response, onSent);
+        if (sent != SENT_ON_COMPLETION) {
+            onSent.accept(sent);
+        }
+    }
+
+    /**
+     * @return сколько байт файла передается в теле ответа или SENT_ON_COMPLETION
+     */
+    private long respond(String key, String contentType, MediaValidatorCache.MediaValidator validator,
+                         HttpServletRequest request, HttpServletResponse response, LongConsumer onSent)
+            throws IOException {
+        String etag = validator.getEtag();
+        long length = validator.getLength();
+        long lastModified = validator.getLastModified();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        // 304 Not Modified (или 412 для If-Match), если у клиента актуальная копия
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return 0;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "inline; filename=\"" + key.substring(key.lastIndexOf('/') + 1) + "\"");
+
+        List<HttpRange> ranges = parseRanges(request, etag, lastModified);
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            return writeRegion(key, 0, length, request, response, onSent);
+        }
+
+        if (!isSatisfiable(ranges, length)) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return 0;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            return writeRegion(key, start, end - start + 1, request, response, onSent);
+        }
+
+        return writeMultipartRanges(key, contentType, length, ranges, request, response, onSent);
+    }
+
+    /**
+     * Разбирает заголовок Range с учетом If-Range.
+     * Некорректный заголовок игнорируется (отдается весь файл), как требует RFC.
+     */
+    private List<HttpRange> parseRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !"GET".equals(request.getMethod())) {
+            return List.of();
+        }
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(ifRange, etag, lastModified)) {
+            return List.of();
+        }
+
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * If-Range совпадает, если передан тот же строгий ETag или та же дата последнего изменения.
+     */
+    private boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return !value.startsWith("W/") && value.equals(etag);
+        }
+        try {
+            long date = parseHttpDate(value);
+            // Даты в HTTP имеют точность до секунды
+            return date >= 0 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private long parseHttpDate(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.IF_RANGE, value);
+        return headers.getFirstDate(HttpHeaders.IF_RANGE);
+    }
+
+    /**
+     * Запрос удовлетворим, если каждый диапазон начинается внутри файла.
+     * Суммарный объем диапазонов ограничен размером файла - защита от запросов
+     * с множеством перекрывающихся диапазонов.
+     */
+    private boolean isSatisfiable(List<HttpRange> ranges, long length) {
+        long total = 0;
+        for (HttpRange range : ranges) {
+            try {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                if (start >= length || start > end) {
+                    return false;
+                }
+                total += end - start + 1;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return length > 0 && total <= length;
+    }
+
+    /**
+     * Отдает несколько диапазонов в формате multipart/byteranges.
+     *
+     * @return суммарный размер диапазонов без заголовков частей или SENT_ON_COMPLETION
+     */
+    private long writeMultipartRanges(String key, String contentType, long length, List<HttpRange> ranges,
+                                      HttpServletRequest request, HttpServletResponse response,
+                                      LongConsumer onSent) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return 0;
+        }
+
+        long total = 0;
+        for (HttpRange range : ranges) {
+            total += range.getRangeEnd(length) - range.getRangeStart(length) + 1;
+        }
+
+        // sendfile не передает несколько участков одним ответом - крупные пишутся неблокирующей записью
+        if (request.isAsyncSupported() && (isShaped() || total >= SENDFILE_THRESHOLD)) {
+            List<AsyncBodyWriter.Segment> segments = new ArrayList<>();
+            for (HttpRange range : ranges) {
+                long start = range.getRangeStart(length);
+                long end = range.getRangeEnd(length);
+                segments.add(new AsyncBodyWriter.Segment(
+                        partHeader(boundary, contentType, start, end, length), start, end - start + 1));
+            }
+            segments.add(new AsyncBodyWriter.Segment(closingBoundary(boundary), 0, 0));
+            writeAsync(key, segments, request, onSent);
+            return SENT_ON_COMPLETION;
+        }
+
+        long sent = 0;
+        ServletOutputStream out = response.getOutputStream();
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            out.write(partHeader(boundary, contentType, start, end, length));
+            copyRange(key, start, end - start + 1, out);
+            sent += end - start + 1;
+        }
+        out.write(closingBoundary(boundary));
+        return sent;
+    }
+
+    private byte[] partHeader(String boundary, String contentType, long start, long end, long length) {
+        String header = "\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n";
+        return header.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private byte[] closingBoundary(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Отдает непрерывный участок файла: через sendfile, если файл лежит на локальном диске,
+     * контейнер поддерживает sendfile, участок достаточно большой и скорость не ограничена.
+     * При ограничении скорости и для остальных крупных участков - неблокирующей записью:
+     * блокирующее копирование заняло бы поток запроса на все время скачивания медленным
+     * клиентом. Небольшие участки копируются в ответ.
+     *
+     * @return сколько байт передается в теле ответа или SENT_ON_COMPLETION
+     */
+    private long writeRegion(String key, long start, long count, HttpServletRequest request,
+                             HttpServletResponse response, LongConsumer onSent) throws IOException {
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return 0;
+        }
+
+        Path file = mediaStorage.localPath(key);
+        boolean large = count >= SENDFILE_THRESHOLD;
+        if (!isShaped() && file != null && large
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            return count;
+        }
+
+        if (request.isAsyncSupported() && (isShaped() || large)) {
+            writeAsync(key, List.of(new AsyncBodyWriter.Segment(null, start, count)), request, onSent);
+            return SENT_ON_COMPLETION;
+        }
+
+        copyRange(key, start, count, response.getOutputStream());
+        return count;
+    }
+
+    private boolean isShaped() {
+        return perConnectionRate > 0 || globalBucket != null;
+    }
+
+    /**
+     * Запускает неблокирующую запись тела и сразу возвращает поток запроса контейнеру.
+     * Первая порция читается здесь же, поэтому отсутствующий файл по-прежнему дает
+     * NoSuchFileException вызывающему, пока ответ еще не начат.
+     */
+    private void writeAsync(String key, List<AsyncBodyWriter.Segment> segments,
+                            HttpServletRequest request, LongConsumer onSent) throws IOException {
+        Path file = mediaStorage.localPath(key);
+        AsyncBodyWriter.RegionOpener opener = file != null
+                ? (start, count) -> FileChannel.open(file, StandardOpenOption.READ).position(start)
+                : (start, count) -> Channels.newChannel(mediaStorage.openRange(key, start, count));
+        // Корзина соединения вмещает секунду трафика, но не меньше одной порции записи
+        TokenBucket connectionBucket = perConnectionRate > 0
+                ? new TokenBucket(perConnectionRate, Math.max(perConnectionRate, writeChunkSize))
+                : null;
+
+        AsyncBodyWriter writer = new AsyncBodyWriter(segments, opener, writeChunkSize,
+                connectionBucket, globalBucket, throttleScheduler, readExecutor, onSent);
+        writer.prime();
+        try {
+            writer.start(request.startAsync(), asyncTimeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            writer.onError(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Копирует участок файла в поток ответа через буфер. Используется для небольших тел
+     * (и если контейнер не поддерживает асинхронную обработку запроса).
+     */
+    private void copyRange(String key, long start, long count, OutputStream out) throws IOException {
+        Path file = mediaStorage.localPath(key);
+        try (InputStream input = file != null
+                ? Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ).position(start))
+                : mediaStorage.openRange(key, start, count)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long remaining = count;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Хранилище вернуло неполный участок файла " + key);
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.repository.MediaFileRepository;
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import com.freeflyfish.MyInsta.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Кэш валидаторов (ETag, Last-Modified, размер) отдаваемых медиафайлов.
+ *
+ * Загруженные файлы не изменяются, поэтому валидатор вычисляется один раз:
+ * ETag - это SHA-256 содержимого, который для файлов хранилища уже записан в имени файла
+ * (для старых загрузок и уменьшенных копий - хэш из media_files или размер и время изменения).
+ * Повторные запросы, в том числе условные (If-None-Match), обслуживаются
+ * без обращения к БД и к хранилищу.
+ */
+@Component
+public class MediaValidatorCache {
+
+    // Примерный размер записи в куче: ключ, ETag и сам объект
+    private static final long ENTRY_BYTES = 256;
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final MediaFileRepository mediaFileRepository;
+    private final MediaStorage mediaStorage;
+    private final BoundedCache<String, MediaValidator> cache;
+
+    public MediaValidatorCache(MediaFileRepository mediaFileRepository,
+                               MediaStorage mediaStorage,
+                               @Value("${myinsta.cache.media-validators.max-entries:100000}") long maxEntries) {
+        this.mediaFileRepository = mediaFileRepository;
+        this.mediaStorage = mediaStorage;
+        this.cache = new BoundedCache<>(maxEntries, maxEntries * ENTRY_BYTES, validator -> ENTRY_BYTES);
+    }
+
+    /**
+     * Возвращает валидатор файла.
+     *
+     * @param key ключ файла в хранилище, например "photos/abc123.jpg"
+     * @return валидатор или null, если файла нет
+     * @throws IOException если не удалось получить сведения о файле
+     */
+    public MediaValidator get(String key) throws IOException {
+        MediaValidator cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = cache.stamp();
+        MediaStorage.StoredObject object = mediaStorage.stat(key);
+        if (object == null) {
+            return null;
+        }
+
+        long length = object.getSize();
+        long lastModified = object.getLastModified();
+
+        MediaValidator validator = new MediaValidator(etag(key, length, lastModified), lastModified, length);
+        cache.put(key, validator, stamp);
+        return validator;
+    }
+
+    /**
+     * Строгий ETag: имя файла в хранилище и есть SHA-256 содержимого, поэтому
+     * для него БД не нужна. Для старых загрузок хэш ищется в media_files,
+     * а если его нет - используются размер и время изменения.
+     */
+    private String etag(String key, long length, long lastModified) {
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot >= 0 ? fileName.substring(0, dot) : fileName;
+        if (SHA256_HEX.matcher(stem).matches()) {
+            return "\"" + stem + "\"";
+        }
+
+        // Старые записи хранят путь с префиксом "uploads/"
+        List<String> hashes = mediaFileRepository.findContentHashesByFilePathIn(List.of(key, "uploads/" + key));
+        return hashes.isEmpty()
+                ? "\"" + length + "-" + lastModified + "\""
+                : "\"" + hashes.get(0) + "\"";
+    }
+
+    /**
+     * Удаляет валидатор из кэша (например, если файл удален с диска).
+     */
+    public void invalidate(String key) {
+        cache.invalidate(MediaStorage.normalizeKey(key));
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Неизменяемый набор валидаторов файла.
+     */
+    public static class MediaValidator {
+
+        private final String etag; // Строгий ETag в кавычках
+        private final long lastModified; // Время изменения файла, мс
+        private final long length; // Размер файла в байтах
+
+        public MediaValidator(String etag, long lastModified, long length) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
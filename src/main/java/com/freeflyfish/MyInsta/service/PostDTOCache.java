@@ -0,0 +1,94 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.dto.MediaFileDTO;
+import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+/**
+ * Кэш собранных PostDTO в памяти приложения.
+ * Посты после создания практически не меняются, поэтому повторные запросы
+ * GET /api/posts/{id} не должны каждый раз читать пост, автора и медиафайлы из БД.
+ *
+ * Кэш ограничен количеством записей и оценкой занимаемой памяти.
+ * Запись удаляется при удалении поста и при любом изменении его медиафайлов.
+ */
+@Component
+public class PostDTOCache {
+
+    // Приблизительные размеры объектов в куче (заголовок объекта, ссылки, поля)
+    private static final long POST_DTO_OVERHEAD = 96;
+    private static final long MEDIA_DTO_OVERHEAD = 64;
+    private static final long STRING_OVERHEAD = 40;
+
+    private final BoundedCache<Long, PostDTO> cache;
+
+    public PostDTOCache(@Value("${myinsta.cache.posts.max-entries:10000}") long maxEntries,
+                        @Value("${myinsta.cache.posts.max-bytes:67108864}") long maxBytes) {
+        this.cache = new BoundedCache<>(maxEntries, maxBytes, PostDTOCache::estimateBytes);
+    }
+
+    public PostDTO get(Long postId) {
+        return cache.get(postId);
+    }
+
+    /**
+     * Метка, которую нужно получить до загрузки поста из БД (см. BoundedCache.put).
+     */
+    public long stamp() {
+        return cache.stamp();
+    }
+
+    public void put(Long postId, PostDTO postDTO, long stamp) {
+        cache.put(postId, postDTO, stamp);
+    }
+
+    /**
+     * Удаляет пост из кэша (при удалении поста или изменении его медиафайлов).
+     *
+     * Внутри транзакции запись удаляется после ее фиксации: иначе загрузка, начавшаяся
+     * между инвалидацией и фиксацией, прочитала бы еще старое состояние поста и положила
+     * его в кэш уже без помех.
+     */
+    public void invalidate(Long postId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(postId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(postId);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Оценивает количество байт, которое PostDTO занимает в куче.
+     */
+    static long estimateBytes(PostDTO dto) {
+        long bytes = POST_DTO_OVERHEAD
+                + stringBytes(dto.getTitle())
+                + stringBytes(dto.getCaption())
+                + stringBytes(dto.getAuthorUsername());
+        if (dto.getMediaFiles() != null) {
+            for (MediaFileDTO mediaFile : dto.getMediaFiles()) {
+                bytes += MEDIA_DTO_OVERHEAD + stringBytes(mediaFile.getFileUrl());
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + 2L * value.length();
+    }
+}
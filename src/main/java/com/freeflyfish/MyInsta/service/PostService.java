@@ -1,17 +1,32 @@
 package com.freeflyfish.MyInsta.service;
 
+import com.freeflyfish.MyInsta.dto.PostDTO;
 import com.freeflyfish.MyInsta.entity.MediaFile;
 import com.freeflyfish.MyInsta.entity.MediaType;
 import com.freeflyfish.MyInsta.entity.Post;
 import com.freeflyfish.MyInsta.entity.User;
 import com.freeflyfish.MyInsta.repository.MediaFileRepository;
 import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.service.MediaFileService.StagedMediaFiles;
+import com.freeflyfish.MyInsta.util.DTOConverter;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class PostService {
@@ -19,18 +34,49 @@ public class PostService {
     private final PostRepository postRepository;
     private final MediaFileService mediaFileService;
     private final MediaFileRepository mediaFileRepository;
+    private final TimelineService timelineService;
+    private final PostDTOCache postDTOCache;
+    private final DTOConverter dtoConverter;
+    private final ImageDerivativeService imageDerivativeService;
+    private final TagService tagService;
+    private final LikeService likeService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
 
     // Максимальное количество медиафайлов в одном посте
     private static final int MAX_MEDIA_FILES_PER_POST = 20;
 
+    // Размер страницы ленты по умолчанию и максимальный
+    private static final int DEFAULT_FEED_PAGE_SIZE = 20;
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
+    // Размер страницы потоковой выдачи
+    private static final int STREAM_PAGE_SIZE = 100;
+
     /**
      * Конструктор для внедрения зависимостей.
      * PostService теперь зависит от MediaFileService для работы с медиафайлами.
      */
-    public PostService(PostRepository postRepository, MediaFileService mediaFileService, MediaFileRepository mediaFileRepository) {
+    public PostService(PostRepository postRepository, MediaFileService mediaFileService,
+                       MediaFileRepository mediaFileRepository, TimelineService timelineService,
+                       PostDTOCache postDTOCache, DTOConverter dtoConverter,
+                       ImageDerivativeService imageDerivativeService, TagService tagService,
+                       LikeService likeService, EntityManager entityManager,
+                       TransactionTemplate transactionTemplate) {
         this.postRepository = postRepository;
         this.mediaFileService = mediaFileService;
         this.mediaFileRepository=mediaFileRepository;
+        this.timelineService = timelineService;
+        this.postDTOCache = postDTOCache;
+        this.dtoConverter = dtoConverter;
+        this.imageDerivativeService = imageDerivativeService;
+        this.tagService = tagService;
+        this.likeService = likeService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -55,6 +101,30 @@ public class PostService {
             throw new RuntimeException("Пост должен содержать хотя бы один медиафайл");
         }
 
+        // Запись файлов во временную папку и SHA-256 - до транзакции, без соединения с БД
+        try (StagedMediaFiles staged = mediaFileService.stageMediaFiles(mediaFiles)) {
+            if (staged.isEmpty()) {
+                throw new RuntimeException("Пост должен содержать хотя бы один медиафайл");
+            }
+            try {
+                return transactionTemplate.execute(status -> {
+                    try {
+                        return savePost(user, title, caption, staged);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Транзакционная часть {@link #createPost}: пост, записи media_blobs и медиафайлы.
+     * Если транзакция откатится, новые файлы удаляются из хранилища.
+     */
+    private Post savePost(User user, String title, String caption, StagedMediaFiles staged) throws IOException {
         // Сначала создаем и сохраняем пост
         Post post = new Post();
         post.setTitle(title);
@@ -62,46 +132,64 @@ public class PostService {
         post.setUser(user);
 
         Post savedPost = postRepository.save(post);  // Сохраняем пост чтобы получить ID
-        System.out.println("Пост сохранен с ID: " + savedPost.getId());
 
-        // Затем обрабатываем и добавляем каждый медиафайл
-        for (int i = 0; i < mediaFiles.length; i++) {
-            MultipartFile mediaFile = mediaFiles[i];
+        List<MediaFile> newMediaFiles = mediaFileService.attachStagedFiles(staged);
 
-            // Пропускаем пустые файлы
-            if (mediaFile == null || mediaFile.isEmpty()) {
-                continue;
-            }
-
-            // Определяем тип медиа (фото/видео) на основе расширения файла
-            MediaType mediaType = mediaFileService.determineMediaType(mediaFile.getOriginalFilename());
+        // Каждый MediaFile вставляется один раз, уже со связью с постом, одним пакетом
+        for (MediaFile mediaFile : newMediaFiles) {
+            mediaFile.setPost(savedPost);
+        }
+        List<MediaFile> savedMediaFiles = mediaFileRepository.saveAll(newMediaFiles);
+        savedPost.getMediaFiles().addAll(savedMediaFiles);
 
-            // Сохраняем медиафайл на диск и получаем объект MediaFile
-            MediaFile savedMediaFile = mediaFileService.saveMediaFile(mediaFile, mediaType);
+        // Уменьшенные копии фото создаются в фоне после фиксации транзакции
+        for (MediaFile mediaFile : savedMediaFiles) {
+            imageDerivativeService.scheduleRenditions(mediaFile);
+        }
 
-            // ВАЖНО: Устанавливаем связь с постом
-            savedMediaFile.setPost(savedPost);  // Используем сохраненный пост с ID
-            savedMediaFile.setPosition(i);
+        // Пост мог попасть в кэш до того, как к нему привязались все медиафайлы
+        postDTOCache.invalidate(savedPost.getId());
 
-            // Сохраняем MediaFile в БД
-            MediaFile finalMediaFile = mediaFileRepository.save(savedMediaFile);
-            System.out.println("MediaFile сохранен с ID: " + finalMediaFile.getId());
+        // Рассылаем пост в домашние ленты подписчиков
+        timelineService.fanOutPost(savedPost);
 
-            // Добавляем в коллекцию поста
-            savedPost.getMediaFiles().add(finalMediaFile);
-        }
+        // Хэштеги и упоминания из описания
+        tagService.indexPost(savedPost);
 
         return savedPost;
     }
 
     /**
-     * Получение всех постов для ленты.
-     * Посты возвращаются отсортированными по дате создания (новые первыми).
+     * Получение страницы ленты с курсорной (keyset) пагинацией.
+     * Посты отсортированы по (createdDate DESC, id DESC), поэтому стоимость
+     * запроса не зависит от глубины прокрутки.
+     *
+     * Возвращается на один пост больше, чем limit: по наличию "лишнего"
+     * поста вызывающий код понимает, есть ли следующая страница.
      *
-     * @return список всех постов
+     * @param before курсор последнего отданного поста или null для первой страницы
+     * @param limit размер страницы (уже нормализованный через normalizeFeedLimit)
+     * @return до limit + 1 постов
      */
-    public List<Post> getAllPosts() {
-        return postRepository.findAllByOrderByCreatedDateDesc();
+    public List<Post> getFeedPage(FeedCursor before, int limit) {
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        if (before == null) {
+            return postRepository.findFeedFirstPage(pageable);
+        }
+        return postRepository.findFeedPageBefore(before.getCreatedDate(), before.getId(), pageable);
+    }
+
+    /**
+     * Приводит запрошенный размер страницы к допустимому диапазону.
+     *
+     * @param limit запрошенный размер страницы (может быть null)
+     * @return размер страницы от 1 до MAX_FEED_PAGE_SIZE
+     */
+    public int normalizeFeedLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_FEED_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(limit, MAX_FEED_PAGE_SIZE));
     }
 
     /**
@@ -114,6 +202,101 @@ public class PostService {
         return postRepository.findByUserIdOrderByCreatedDateDesc(user.getId());
     }
 
+    /**
+     * Все посты пользователя страницами (новые первыми) для потоковой выдачи.
+     *
+     * Каждая страница (keyset по createdDate, id) читается и преобразуется в короткой
+     * транзакции только для чтения, а consumer вызывается уже после нее: пока ответ
+     * пишется медленному клиенту, соединение с БД возвращено в пул. В памяти одновременно
+     * находится одна страница. Медиафайлы страницы догружаются одним запросом
+     * (hibernate.default_batch_fetch_size).
+     *
+     * @param userId   идентификатор автора
+     * @param convert  преобразование страницы постов (внутри транзакции, например в DTO)
+     * @param consumer обработчик очередной преобразованной страницы (вне транзакции)
+     */
+    public <T> void forEachPostPageByUser(Long userId, Function<List<Post>, List<T>> convert,
+                                          Consumer<List<T>> consumer) {
+        List<Long> userIds = List.of(userId);
+        Pageable pageable = PageRequest.of(0, STREAM_PAGE_SIZE);
+        FeedCursor before = null;
+        while (true) {
+            FeedCursor cursor = before;
+            List<T> converted = new ArrayList<>();
+            List<Post> posts = readOnlyTransaction.execute(status -> {
+                List<Post> page = cursor == null
+                        ? postRepository.findByUserIdsFirstPage(userIds, pageable)
+                        : postRepository.findByUserIdsPageBefore(userIds, cursor.getCreatedDate(), cursor.getId(), pageable);
+                converted.addAll(convert.apply(page));
+                entityManager.clear();
+                return page;
+            });
+            if (posts.isEmpty()) {
+                return;
+            }
+            consumer.accept(converted);
+            if (posts.size() < STREAM_PAGE_SIZE) {
+                return;
+            }
+            Post last = posts.get(posts.size() - 1);
+            before = new FeedCursor(last.getCreatedDate(), last.getId());
+        }
+    }
+
+    /**
+     * Прикрепляет файл, собранный докачиваемой загрузкой: создает с ним новый пост
+     * или добавляет его последним медиафайлом в существующий пост автора.
+     *
+     * @param user             автор загрузки
+     * @param postId           пост, в который добавить файл; null - создать новый пост
+     * @param title            заголовок нового поста
+     * @param caption          описание нового поста
+     * @param file             собранный файл
+     * @param originalFileName имя файла у клиента
+     * @param declaredType     тип, ожидаемый по имени файла
+     * @return пост с новым медиафайлом
+     * @throws IOException      если не удалось сохранить файл
+     * @throws RuntimeException если пост чужой, в нем нет места или файл не прошел проверку
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Post attachUploadedFile(User user, Long postId, String title, String caption,
+                                   Path file, String originalFileName, MediaType declaredType) throws IOException {
+        Post post;
+        int position;
+        if (postId == null) {
+            post = new Post();
+            post.setTitle(title);
+            post.setCaption(caption);
+            post.setUser(user);
+            post = postRepository.save(post);
+            position = 0;
+        } else {
+            post = getPostById(postId);
+            if (!post.getUser().getId().equals(user.getId())) {
+                throw new RuntimeException("Добавлять файлы можно только в свой пост");
+            }
+            long count = mediaFileRepository.countByPostId(postId);
+            if (count >= MAX_MEDIA_FILES_PER_POST) {
+                throw new RuntimeException("Превышено максимальное количество медиафайлов. Максимум: " + MAX_MEDIA_FILES_PER_POST);
+            }
+            position = (int) count;
+        }
+
+        MediaFile mediaFile = mediaFileService.storeAssembledFile(file, originalFileName, declaredType);
+        mediaFile.setPosition(position);
+        mediaFile.setPost(post);
+        MediaFile savedMediaFile = mediaFileRepository.save(mediaFile);
+        post.getMediaFiles().add(savedMediaFile);
+
+        imageDerivativeService.scheduleRenditions(savedMediaFile);
+        postDTOCache.invalidate(post.getId());
+        if (postId == null) {
+            timelineService.fanOutPost(post);
+            tagService.indexPost(post);
+        }
+        return post;
+    }
+
     /**
      * Получение поста по его идентификатору.
      *
@@ -125,18 +308,74 @@ public class PostService {
                 .orElseThrow(() -> new RuntimeException("Пост с ID " + id + " не найден"));
     }
 
+    /**
+     * ID автора поста.
+     *
+     * @param postId идентификатор поста
+     * @return ID автора или пусто, если поста нет
+     */
+    public Optional<Long> findAuthorId(Long postId) {
+        return postRepository.findUserIdById(postId);
+    }
+
+    /**
+     * Получение собранного PostDTO по идентификатору поста.
+     * Сначала смотрим в кэш; при промахе читаем пост с автором и медиафайлами и кладем DTO в кэш.
+     *
+     * @param id идентификатор поста
+     * @return DTO поста
+     * @throws RuntimeException если пост не найден
+     */
+    @Transactional(readOnly = true)
+    public PostDTO getPostDTOById(Long id) {
+        PostDTO cached = postDTOCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = postDTOCache.stamp();
+        PostDTO postDTO = dtoConverter.convertToPostDTO(getPostById(id));
+        postDTOCache.put(id, postDTO, stamp);
+        return postDTO;
+    }
+
+    /**
+     * Удаляет пост из кэша DTO. Вызывается при любом изменении медиафайлов поста.
+     *
+     * @param postId идентификатор поста
+     */
+    public void evictCachedPost(Long postId) {
+        postDTOCache.invalidate(postId);
+    }
+
+    /**
+     * Статистика кэша PostDTO.
+     *
+     * @return количество записей, занятый объем, попадания, промахи и вытеснения
+     */
+    public Map<String, Object> getPostCacheStats() {
+        return postDTOCache.stats();
+    }
+
     /**
      * Удаление поста по идентификатору.
-     * При каскадном удалении также удаляются все связанные медиафайлы и комментарии.
+     * При каскадном удалении также удаляются все связанные медиафайлы и комментарии,
+     * а содержимое файлов, на которое больше не ссылается ни один пост, удаляется с диска.
      *
      * @param postId идентификатор поста для удаления
      */
+    @Transactional
     public void deletePost(Long postId) {
         // Проверяем существует ли пост перед удалением
         if (!postRepository.existsById(postId)) {
             throw new RuntimeException("Пост с ID " + postId + " не найден");
         }
+        timelineService.removePost(postId);
+        tagService.removePost(postId);
+        likeService.removePost(postId);
+        mediaFileService.releaseMediaFiles(mediaFileRepository.findByPostIdOrderByPositionAsc(postId));
         postRepository.deleteById(postId);
+        postDTOCache.invalidate(postId);
     }
 
     /**
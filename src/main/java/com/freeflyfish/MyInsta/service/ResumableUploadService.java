@@ -0,0 +1,336 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.UploadSession;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.UploadSessionRepository;
+import com.freeflyfish.MyInsta.upload.UploadInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Докачиваемая загрузка больших файлов (прежде всего видео).
+ *
+ * Протокол: клиент создает сессию, объявляя имя и размер файла; сервер сразу создает
+ * файл этого размера. Затем клиент присылает части тела запроса с указанием смещения -
+ * каждая часть пишется в файл позиционной записью, сбрасывается на диск, и только
+ * после этого в БД сдвигается смещение сессии. Если связь оборвалась посреди части,
+ * сохраняется все, что успело прийти. Узнав смещение, клиент продолжает с него - в том
+ * числе после перезапуска сервера. Когда файл получен целиком, сессия завершается:
+ * файл проверяется и становится медиафайлом нового или существующего поста.
+ *
+ * Тело части читается потоком и в памяти целиком не держится.
+ * Файлы сессий лежат на локальном диске, поэтому все части одной загрузки
+ * должны приходить на один экземпляр приложения.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    private static final int CHUNK_BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final MediaFileService mediaFileService;
+    private final PostService postService;
+    private final UploadInspector uploadInspector;
+    private final TransactionTemplate transactionTemplate;
+
+    // Папка с файлами сессий. Должна быть на том же диске, что и хранилище,
+    // чтобы готовый файл переносился на постоянное место без копирования
+    private final Path sessionDir;
+    private final Duration sessionTtl;
+
+    // Сессии, в которые сейчас пишется часть или которые завершаются.
+    // Одновременная запись двух частей в одну сессию не допускается
+    private final Set<String> busySessions = ConcurrentHashMap.newKeySet();
+
+    public ResumableUploadService(UploadSessionRepository uploadSessionRepository,
+                                  MediaFileService mediaFileService,
+                                  PostService postService,
+                                  UploadInspector uploadInspector,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${myinsta.upload.session-dir:uploads/tmp/sessions}") String sessionDir,
+                                  @Value("${myinsta.upload.session-ttl-hours:24}") long sessionTtlHours) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.mediaFileService = mediaFileService;
+        this.postService = postService;
+        this.uploadInspector = uploadInspector;
+        this.transactionTemplate = transactionTemplate;
+        this.sessionDir = Paths.get(sessionDir);
+        this.sessionTtl = Duration.ofHours(sessionTtlHours);
+    }
+
+    /**
+     * Создает сессию загрузки и файл объявленного размера.
+     *
+     * @param user      автор
+     * @param fileName  имя файла у клиента (по расширению определяется тип)
+     * @param totalSize размер файла в байтах
+     * @return новая сессия
+     * @throws RuntimeException если тип файла не поддерживается, размер недопустим или нет места
+     * @throws IOException      если не удалось создать файл
+     */
+    public UploadSession createSession(User user, String fileName, long totalSize) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new RuntimeException("Не указано имя файла");
+        }
+        MediaType mediaType = mediaFileService.determineMediaType(fileName);
+        if (totalSize <= 0 || totalSize > uploadInspector.getMaxResumableBytes()) {
+            throw new RuntimeException("Недопустимый размер файла: " + totalSize +
+                    ". Максимум: " + uploadInspector.getMaxResumableBytes() + " байт");
+        }
+
+        Files.createDirectories(sessionDir);
+        if (Files.getFileStore(sessionDir).getUsableSpace() < totalSize) {
+            throw new RuntimeException("Недостаточно места для загрузки файла");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(user.getId());
+        session.setFileName(fileName);
+        session.setMediaType(mediaType);
+        session.setTotalSize(totalSize);
+        session.setReceivedBytes(0);
+        session.setCreatedDate(LocalDateTime.now());
+        session.setUpdatedDate(session.getCreatedDate());
+
+        // Файл сразу получает полный размер, части потом пишутся на свои места
+        Path file = sessionFile(session.getId());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(totalSize);
+        }
+        try {
+            return uploadSessionRepository.save(session);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @param id идентификатор сессии
+     * @return сессия, если она есть
+     */
+    public Optional<UploadSession> findSession(String id) {
+        return uploadSessionRepository.findById(id);
+    }
+
+    /**
+     * Записывает очередную часть файла.
+     *
+     * @param id     идентификатор сессии
+     * @param offset смещение части; должно совпадать с уже полученным количеством байт
+     * @param body   тело части
+     * @return новое смещение (сколько байт файла получено)
+     * @throws OffsetConflictException если смещение не совпадает или в сессию уже пишется часть
+     * @throws RuntimeException        если сессии нет или часть выходит за размер файла
+     * @throws IOException             если не удалось записать часть или связь оборвалась
+     *                                 (полученные до обрыва байты при этом сохраняются)
+     */
+    public long appendChunk(String id, long offset, InputStream body) throws IOException {
+        UploadSession session = requireSession(id);
+        if (offset != session.getReceivedBytes()) {
+            throw new OffsetConflictException("Смещение части не совпадает с полученным", session.getReceivedBytes());
+        }
+        if (!busySessions.add(id)) {
+            throw new OffsetConflictException("В эту загрузку уже пишется другая часть", session.getReceivedBytes());
+        }
+
+        try {
+            Path file = requireSessionFile(session);
+            long remaining = session.getTotalSize() - offset;
+            long written = 0;
+            IOException readFailure = null;
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[CHUNK_BUFFER_SIZE];
+                while (true) {
+                    int n;
+                    try {
+                        n = body.read(buffer);
+                    } catch (IOException e) {
+                        // Клиент отключился: сохраняем то, что успело прийти
+                        readFailure = e;
+                        break;
+                    }
+                    if (n == -1) {
+                        break;
+                    }
+                    if (n > remaining - written) {
+                        throw new RuntimeException("Часть выходит за объявленный размер файла " + session.getTotalSize());
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                    while (chunk.hasRemaining()) {
+                        written += channel.write(chunk, offset + written);
+                    }
+                }
+                // Смещение в БД не должно опережать то, что реально лежит на диске
+                channel.force(false);
+            }
+
+            long newOffset = offset + written;
+            if (written > 0) {
+                Integer updated = transactionTemplate.execute(status ->
+                        uploadSessionRepository.advanceOffset(id, offset, newOffset, LocalDateTime.now()));
+                if (updated == null || updated == 0) {
+                    throw new RuntimeException("Сессия загрузки " + id + " отменена");
+                }
+            }
+            if (readFailure != null) {
+                throw readFailure;
+            }
+            return newOffset;
+        } finally {
+            busySessions.remove(id);
+        }
+    }
+
+    /**
+     * Завершает загрузку: проверяет полученный файл и прикрепляет его к посту.
+     * Сессия удаляется в той же транзакции.
+     *
+     * @param id      идентификатор сессии
+     * @param user    автор (владелец сессии)
+     * @param postId  пост, в который добавить файл; null - создать новый пост
+     * @param title   заголовок нового поста
+     * @param caption описание нового поста
+     * @return пост с новым медиафайлом
+     * @throws RuntimeException если файл получен не полностью или не прошел проверку
+     * @throws IOException      если не удалось сохранить файл
+     */
+    public Post completeSession(String id, User user, Long postId, String title, String caption) throws IOException {
+        UploadSession session = requireSession(id);
+        if (!session.getUserId().equals(user.getId())) {
+            throw new RuntimeException("Сессия загрузки " + id + " принадлежит другому пользователю");
+        }
+        if (session.getReceivedBytes() != session.getTotalSize()) {
+            throw new RuntimeException("Загрузка не завершена: получено " + session.getReceivedBytes() +
+                    " из " + session.getTotalSize() + " байт");
+        }
+        if (!busySessions.add(id)) {
+            throw new RuntimeException("Загрузка уже завершается");
+        }
+
+        try {
+            Path file = requireSessionFile(session);
+
+            Post post;
+            try {
+                post = transactionTemplate.execute(status -> {
+                    try {
+                        Post result = postService.attachUploadedFile(user, postId, title, caption,
+                                file, session.getFileName(), session.getMediaType());
+                        uploadSessionRepository.deleteById(id);
+                        return result;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Новое содержимое перенесено в хранилище; если такое уже было, файл остался здесь
+            Files.deleteIfExists(file);
+            return post;
+        } finally {
+            busySessions.remove(id);
+        }
+    }
+
+    /**
+     * Отменяет загрузку и удаляет полученные данные.
+     *
+     * @param id идентификатор сессии
+     * @return false, если сессии не было
+     */
+    public boolean cancelSession(String id) throws IOException {
+        if (!uploadSessionRepository.existsById(id)) {
+            return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> uploadSessionRepository.deleteById(id));
+        Files.deleteIfExists(sessionFile(id));
+        return true;
+    }
+
+    /**
+     * Удаляет сессии, в которые давно ничего не присылали, вместе с их файлами.
+     */
+    @Scheduled(fixedDelayString = "${myinsta.upload.session-cleanup-interval-ms:3600000}")
+    public void cleanupStaleSessions() {
+        LocalDateTime before = LocalDateTime.now().minus(sessionTtl);
+        for (String id : uploadSessionRepository.findIdsUpdatedBefore(before)) {
+            if (busySessions.contains(id)) {
+                continue;
+            }
+            try {
+                cancelSession(id);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Не удалось удалить брошенную сессию загрузки {}", id, e);
+            }
+        }
+    }
+
+    private UploadSession requireSession(String id) {
+        return uploadSessionRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Сессия загрузки " + id + " не найдена"));
+    }
+
+    /**
+     * Файл сессии мог пропасть (например, удален вручную или не пережил неудачное завершение) -
+     * тогда продолжать нечего, и сессия удаляется.
+     */
+    private Path requireSessionFile(UploadSession session) throws IOException {
+        Path file = sessionFile(session.getId());
+        if (!Files.exists(file)) {
+            cancelSession(session.getId());
+            throw new RuntimeException("Данные загрузки потеряны, начните загрузку заново");
+        }
+        return file;
+    }
+
+    private Path sessionFile(String id) {
+        return sessionDir.resolve(id + ".upload");
+    }
+
+    /**
+     * Часть прислана не с того смещения. Клиенту возвращается текущее смещение,
+     * чтобы он продолжил с него.
+     */
+    public static class OffsetConflictException extends RuntimeException {
+        private final long currentOffset;
+
+        public OffsetConflictException(String message, long currentOffset) {
+            super(message);
+            this.currentOffset = currentOffset;
+        }
+
+        public long getCurrentOffset() {
+            return currentOffset;
+        }
+    }
+}
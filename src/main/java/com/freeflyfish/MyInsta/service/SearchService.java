@@ -0,0 +1,238 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Полнотекстовый поиск постов по заголовку, описанию и комментариям.
+ *
+ * В PostgreSQL поиск идет по инвертированному индексу: у таблиц posts и comments
+ * есть генерируемые колонки search_vector (tsvector) с GIN-индексами. Колонки
+ * вычисляются самой БД при каждой вставке и изменении строки, поэтому индекс всегда
+ * соответствует данным без дополнительного кода на запись. Колонки и индексы создаются
+ * при старте приложения, если их еще нет (ddl-auto о генерируемых колонках не знает).
+ *
+ * Совпадения в заголовке весят больше совпадений в описании, совпадения в комментариях -
+ * вдвое меньше совпадений в самом посте. Ранжируются не более max-candidates самых новых
+ * совпадений из постов и столько же из комментариев: для частых слов стоимость запроса
+ * не растет вместе с таблицей.
+ *
+ * На других БД (H2 в тестах и при разработке) используется простой поиск по подстроке.
+ */
+@Service
+public class SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_QUERY_LENGTH = 200;
+    private static final int MAX_FALLBACK_TERMS = 5;
+
+    // Вес совпадения в комментарии относительно совпадения в посте
+    private static final double COMMENT_RANK_WEIGHT = 0.5;
+
+    private static final String POSTGRES_SEARCH_QUERY =
+            "with q as (select websearch_to_tsquery(cast(? as regconfig), ?) as query), " +
+            "post_hits as (" +
+            "    select p.id as post_id, ts_rank(p.search_vector, q.query) as rank " +
+            "    from posts p, q where p.search_vector @@ q.query " +
+            "    order by p.id desc limit ?), " +
+            "comment_hits as (" +
+            "    select c.post_id, max(ts_rank(c.search_vector, q.query)) * ? as rank " +
+            "    from (select c.post_id, c.search_vector from comments c, q " +
+            "          where c.search_vector @@ q.query and c.post_id is not null " +
+            "          order by c.id desc limit ?) c, q " +
+            "    group by c.post_id) " +
+            "select post_id from (select post_id, rank from post_hits " +
+            "                     union all select post_id, rank from comment_hits) hits " +
+            "group by post_id order by sum(rank) desc, post_id desc limit ? offset ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostRepository postRepository;
+    private final String textSearchConfig;
+    private final int maxCandidates;
+
+    // Включается после того, как в PostgreSQL созданы колонки и оба индекса готовы (indisvalid)
+    private volatile boolean fullTextEnabled;
+
+    public SearchService(JdbcTemplate jdbcTemplate, PostRepository postRepository,
+                         @Value("${myinsta.search.text-config:russian}") String textSearchConfig,
+                         @Value("${myinsta.search.max-candidates:1000}") int maxCandidates) {
+        // Имя конфигурации подставляется в DDL, поэтому допускаются только простые идентификаторы
+        if (!textSearchConfig.matches("[a-z_]+")) {
+            throw new IllegalArgumentException("Недопустимая конфигурация полнотекстового поиска: " + textSearchConfig);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.postRepository = postRepository;
+        this.textSearchConfig = textSearchConfig;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Создает генерируемые колонки search_vector и GIN-индексы, если БД - PostgreSQL.
+     * На уже подготовленной БД ничего не делает. Добавление колонки к большой таблице
+     * переписывает ее целиком, поэтому на рабочей базе его лучше выполнить заранее.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchIndexes() {
+        if (!isPostgres()) {
+            log.info("Полнотекстовый индекс не создан: БД не PostgreSQL, поиск работает по подстроке");
+            return;
+        }
+        try {
+            jdbcTemplate.execute("alter table posts add column if not exists search_vector tsvector " +
+                    "generated always as (" +
+                    "setweight(to_tsvector('" + textSearchConfig + "', coalesce(title, '')), 'A') || " +
+                    "setweight(to_tsvector('" + textSearchConfig + "', coalesce(caption, '')), 'B')) stored");
+            jdbcTemplate.execute("alter table comments add column if not exists search_vector tsvector " +
+                    "generated always as (to_tsvector('" + textSearchConfig + "', coalesce(message, ''))) stored");
+            createGinIndex("idx_posts_search_vector", "posts");
+            createGinIndex("idx_comments_search_vector", "comments");
+            // Поиск без готового индекса читал бы таблицы целиком
+            fullTextEnabled = isIndexValid("idx_posts_search_vector") && isIndexValid("idx_comments_search_vector");
+            if (!fullTextEnabled) {
+                log.error("Полнотекстовый индекс не готов (indisvalid = false), поиск работает по подстроке");
+            }
+        } catch (DataAccessException e) {
+            log.error("Не удалось создать полнотекстовый индекс, поиск работает по подстроке", e);
+        }
+    }
+
+    /**
+     * Создает GIN-индекс по search_vector без блокировки записи в таблицу (concurrently).
+     * Прерванный create index concurrently оставляет индекс в состоянии INVALID, и
+     * "if not exists" его бы не пересоздал, поэтому такой индекс сначала удаляется.
+     */
+    private void createGinIndex(String indexName, String table) {
+        if (Boolean.FALSE.equals(indexValidity(indexName))) {
+            log.warn("Индекс {} остался недостроенным (INVALID), пересоздаем", indexName);
+            jdbcTemplate.execute("drop index concurrently if exists " + indexName);
+        }
+        jdbcTemplate.execute("create index concurrently if not exists " + indexName +
+                " on " + table + " using gin (search_vector)");
+    }
+
+    private boolean isIndexValid(String indexName) {
+        return Boolean.TRUE.equals(indexValidity(indexName));
+    }
+
+    /**
+     * @return pg_index.indisvalid или null, если индекса нет
+     */
+    private Boolean indexValidity(String indexName) {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "select i.indisvalid from pg_index i where i.indexrelid = to_regclass(?)", Boolean.class, indexName);
+        return valid.isEmpty() ? null : valid.get(0);
+    }
+
+    /**
+     * Ищет посты по запросу.
+     * В PostgreSQL запрос понимает синтаксис веб-поиска: "точная фраза", -исключить, or.
+     *
+     * @param query поисковый запрос
+     * @param page  номер страницы (с 0)
+     * @param size  размер страницы
+     * @return до size + 1 постов в порядке релевантности; лишний пост означает,
+     *         что есть следующая страница
+     * @throws RuntimeException если запрос пустой или слишком длинный
+     */
+    @Transactional(readOnly = true)
+    public List<Post> search(String query, int page, int size) {
+        String normalized = query == null ? "" : query.trim();
+        if (normalized.isEmpty()) {
+            throw new RuntimeException("Поисковый запрос не может быть пустым");
+        }
+        if (normalized.length() > MAX_QUERY_LENGTH) {
+            throw new RuntimeException("Поисковый запрос слишком длинный. Максимум: " + MAX_QUERY_LENGTH + " символов");
+        }
+        if (page < 0) {
+            throw new RuntimeException("Номер страницы не может быть отрицательным");
+        }
+
+        long offset = (long) page * size;
+        List<Long> ids = fullTextEnabled
+                ? jdbcTemplate.queryForList(POSTGRES_SEARCH_QUERY, Long.class,
+                        textSearchConfig, normalized, maxCandidates,
+                        COMMENT_RANK_WEIGHT, maxCandidates, size + 1, offset)
+                : searchBySubstring(normalized, size + 1, offset);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Посты с авторами одним запросом, затем в порядке релевантности
+        Map<Long, Post> postsById = postRepository.findAllWithUserByIdIn(ids).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Post post = postsById.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Приводит размер страницы к допустимому диапазону.
+     *
+     * @param size запрошенный размер (может быть null)
+     * @return размер страницы от 1 до 50
+     */
+    public int normalizePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Поиск для БД без полнотекстового индекса: каждое слово запроса должно встречаться
+     * в заголовке, описании или комментарии поста. Результаты - от новых к старым.
+     */
+    private List<Long> searchBySubstring(String query, int limit, long offset) {
+        List<String> terms = Arrays.stream(query.toLowerCase(Locale.ROOT).split("\\s+"))
+                .filter(term -> !term.isEmpty())
+                .limit(MAX_FALLBACK_TERMS)
+                .collect(Collectors.toList());
+
+        StringBuilder sql = new StringBuilder("select p.id from posts p where 1 = 1");
+        List<Object> args = new ArrayList<>();
+        for (String term : terms) {
+            sql.append(" and (lower(p.title) like ? escape '\\' or lower(p.caption) like ? escape '\\'" +
+                    " or exists (select 1 from comments c where c.post_id = p.id and lower(c.message) like ? escape '\\'))");
+            String pattern = "%" + term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            args.add(pattern);
+            args.add(pattern);
+            args.add(pattern);
+        }
+        sql.append(" order by p.id desc limit ? offset ?");
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    private boolean isPostgres() {
+        Boolean postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        return Boolean.TRUE.equals(postgres);
+    }
+}
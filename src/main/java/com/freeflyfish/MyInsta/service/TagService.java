@@ -0,0 +1,174 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.dto.TrendingTagDTO;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.PostTag;
+import com.freeflyfish.MyInsta.entity.PostTagId;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.repository.PostTagRepository;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import com.freeflyfish.MyInsta.util.SlidingWindowCounter;
+import com.freeflyfish.MyInsta.util.TagParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Хэштеги и упоминания в описаниях постов.
+ *
+ * Метки извлекаются при создании поста и сохраняются в post_tags, откуда посты
+ * с меткой читаются по индексу с keyset-пагинацией. Хэштеги новых постов также
+ * учитываются в {@link SlidingWindowCounter} - популярные хэштеги за последнее окно
+ * берутся из памяти, без агрегирующих запросов к таблице меток.
+ * После перезапуска окно восстанавливается из меток постов, созданных за время окна.
+ */
+@Service
+public class TagService {
+
+    private static final int MAX_TRENDING = 50;
+
+    private final PostTagRepository postTagRepository;
+    private final PostRepository postRepository;
+    private final Duration trendingWindow;
+    private final SlidingWindowCounter trendingCounter;
+
+    public TagService(PostTagRepository postTagRepository, PostRepository postRepository,
+                      @Value("${myinsta.trending.window-minutes:60}") long windowMinutes,
+                      @Value("${myinsta.trending.buckets:60}") int buckets) {
+        this.postTagRepository = postTagRepository;
+        this.postRepository = postRepository;
+        this.trendingWindow = Duration.ofMinutes(windowMinutes);
+        this.trendingCounter = new SlidingWindowCounter(trendingWindow.toMillis(), buckets, System::currentTimeMillis);
+    }
+
+    /**
+     * Сохраняет метки из описания только что созданного поста.
+     * В счетчик популярных хэштегов пост попадает после фиксации транзакции.
+     *
+     * @param post сохраненный пост
+     */
+    @Transactional
+    public void indexPost(Post post) {
+        Set<String> tags = TagParser.extract(post.getCaption());
+        if (tags.isEmpty()) {
+            return;
+        }
+        List<PostTag> postTags = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            PostTag postTag = new PostTag();
+            postTag.setId(new PostTagId(tag, post.getId()));
+            postTag.setCreatedDate(post.getCreatedDate());
+            postTags.add(postTag);
+        }
+        postTagRepository.saveAll(postTags);
+        runAfterCommit(() -> countHashtags(postTags, 1));
+    }
+
+    /**
+     * Удаляет метки удаленного поста и вычитает его хэштеги из окна популярных.
+     *
+     * @param postId идентификатор поста
+     */
+    @Transactional
+    public void removePost(Long postId) {
+        List<PostTag> postTags = postTagRepository.findByIdPostId(postId);
+        if (postTags.isEmpty()) {
+            return;
+        }
+        postTagRepository.deleteByPostId(postId);
+        runAfterCommit(() -> countHashtags(postTags, -1));
+    }
+
+    /**
+     * Страница постов с меткой.
+     *
+     * @param tag    нормализованная метка ("#закат" или "@alice")
+     * @param before курсор последнего отданного поста или null
+     * @param limit  размер страницы
+     * @return до limit + 1 постов в порядке ленты
+     */
+    @Transactional(readOnly = true)
+    public List<Post> getPostsByTag(String tag, FeedCursor before, int limit) {
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Long> ids = before == null
+                ? postTagRepository.findFirstPage(tag, pageable)
+                : postTagRepository.findPageBefore(tag, before.getCreatedDate(), before.getId(), pageable);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Post> postsById = postRepository.findAllWithUserByIdIn(ids).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Post post = postsById.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Самые популярные хэштеги за последнее окно времени.
+     *
+     * @param limit сколько хэштегов вернуть (не больше 50)
+     * @return хэштеги по убыванию количества постов
+     */
+    public List<TrendingTagDTO> getTrending(int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_TRENDING));
+        return trendingCounter.top(size).stream()
+                .map(entry -> new TrendingTagDTO(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Восстанавливает окно популярных хэштегов после запуска приложения.
+     * Читаются только метки постов за время окна (по индексу created_date).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void restoreTrendingWindow() {
+        LocalDateTime since = LocalDateTime.now().minus(trendingWindow);
+        countHashtags(postTagRepository.findHashtagsCreatedSince(since), 1);
+    }
+
+    private void countHashtags(List<PostTag> postTags, long delta) {
+        for (PostTag postTag : postTags) {
+            String tag = postTag.getId().getTag();
+            if (tag.startsWith("#")) {
+                long timestamp = postTag.getCreatedDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                trendingCounter.add(tag, timestamp, delta);
+            }
+        }
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
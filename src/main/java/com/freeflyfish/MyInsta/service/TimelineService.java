@@ -0,0 +1,230 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.TimelineEntry;
+import com.freeflyfish.MyInsta.entity.TimelineEntryId;
+import com.freeflyfish.MyInsta.repository.FollowRepository;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.repository.TimelineEntryRepository;
+import com.freeflyfish.MyInsta.repository.UserRepository;
+import com.freeflyfish.MyInsta.util.FeedCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис подписок и домашних лент.
+ *
+ * Лента строится гибридно:
+ * - посты обычных авторов рассылаются в ленты подписчиков при публикации (fan-out on write);
+ * - посты авторов с большим числом подписчиков (больше celebrityThreshold) не рассылаются,
+ *   а подмешиваются при чтении ленты - иначе один пост порождал бы миллионы вставок.
+ */
+@Service
+public class TimelineService {
+
+    // Сколько последних постов автора добавить в ленту при новой подписке
+    private static final int BACKFILL_POSTS_ON_FOLLOW = 50;
+
+    private final FollowRepository followRepository;
+    private final TimelineEntryRepository timelineEntryRepository;
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final long celebrityThreshold;
+
+    public TimelineService(FollowRepository followRepository,
+                           TimelineEntryRepository timelineEntryRepository,
+                           PostRepository postRepository,
+                           UserRepository userRepository,
+                           UserService userService,
+                           @Value("${myinsta.timeline.celebrity-threshold:10000}") long celebrityThreshold) {
+        this.followRepository = followRepository;
+        this.timelineEntryRepository = timelineEntryRepository;
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.celebrityThreshold = celebrityThreshold;
+    }
+
+    /**
+     * Подписка пользователя на автора. Повторная подписка ничего не меняет.
+     *
+     * @param followerId кто подписывается
+     * @param followeeId на кого подписывается
+     * @return true если подписка создана, false если уже существовала
+     */
+    @Transactional
+    public boolean follow(Long followerId, Long followeeId) {
+        if (followerId.equals(followeeId)) {
+            throw new RuntimeException("Нельзя подписаться на самого себя");
+        }
+        if (!userService.existsById(followeeId)) {
+            throw new RuntimeException("Пользователь с ID " + followeeId + " не найден");
+        }
+
+        // Счетчики меняет только та подписка, которая действительно вставила строку
+        if (followRepository.insertIfAbsent(followerId, followeeId, LocalDateTime.now()) == 0) {
+            return false;
+        }
+
+        addToFollowCounts(followerId, followeeId, 1);
+
+        // Посты популярных авторов подмешиваются при чтении, копировать их не нужно
+        if (!isCelebrity(followeeId)) {
+            timelineEntryRepository.backfill(followerId, followeeId, BACKFILL_POSTS_ON_FOLLOW);
+        }
+        return true;
+    }
+
+    /**
+     * Отписка пользователя от автора. Посты автора убираются из ленты подписчика.
+     *
+     * @return true если подписка была удалена, false если ее не было
+     */
+    @Transactional
+    public boolean unfollow(Long followerId, Long followeeId) {
+        // Из одновременных отписок строку удаляет только одна - остальные счетчики не трогают
+        if (followRepository.deleteFollow(followerId, followeeId) == 0) {
+            return false;
+        }
+
+        addToFollowCounts(followerId, followeeId, -1);
+        timelineEntryRepository.deleteByOwnerAndAuthor(followerId, followeeId);
+        return true;
+    }
+
+    /**
+     * Меняет счетчики подписок обоих пользователей. Строки обновляются в порядке возрастания ID:
+     * иначе встречные подписки (A на B и B на A одновременно) блокируют строки в разном
+     * порядке и одна из транзакций откатывается из-за взаимной блокировки.
+     */
+    private void addToFollowCounts(Long followerId, Long followeeId, long delta) {
+        if (followerId < followeeId) {
+            userRepository.addToFollowingCount(followerId, delta);
+            userRepository.addToFollowerCount(followeeId, delta);
+        } else {
+            userRepository.addToFollowerCount(followeeId, delta);
+            userRepository.addToFollowingCount(followerId, delta);
+        }
+    }
+
+    /**
+     * Рассылает только что созданный пост в домашние ленты.
+     * Пост всегда попадает в ленту самого автора; подписчикам - только если автор не "популярный".
+     *
+     * @param post сохраненный пост
+     */
+    @Transactional
+    public void fanOutPost(Post post) {
+        Long authorId = post.getUser().getId();
+
+        TimelineEntry ownEntry = new TimelineEntry();
+        ownEntry.setId(new TimelineEntryId(authorId, post.getId()));
+        ownEntry.setAuthorId(authorId);
+        ownEntry.setCreatedDate(post.getCreatedDate());
+        timelineEntryRepository.save(ownEntry);
+
+        if (!isCelebrity(authorId)) {
+            timelineEntryRepository.fanOutToFollowers(post.getId(), authorId, post.getCreatedDate());
+        }
+    }
+
+    /**
+     * Убирает удаленный пост из всех домашних лент.
+     */
+    @Transactional
+    public void removePost(Long postId) {
+        timelineEntryRepository.deleteByPostId(postId);
+    }
+
+    /**
+     * Страница домашней ленты пользователя.
+     * Материализованная лента читается одним запросом по индексу; посты популярных авторов,
+     * на которых подписан пользователь, читаются вторым запросом и сливаются по (createdDate, id).
+     *
+     * @param userId владелец ленты
+     * @param before курсор последнего отданного поста или null
+     * @param limit размер страницы
+     * @return до limit + 1 постов в порядке ленты
+     */
+    @Transactional(readOnly = true)
+    public List<Post> getHomeTimeline(Long userId, FeedCursor before, int limit) {
+        Pageable pageable = PageRequest.of(0, limit + 1);
+
+        List<TimelineEntry> entries = before == null
+                ? timelineEntryRepository.findFirstPage(userId, pageable)
+                : timelineEntryRepository.findPageBefore(userId, before.getCreatedDate(), before.getId(), pageable);
+
+        List<Long> celebrityIds = followRepository.findFolloweeIdsWithFollowersAtLeast(userId, celebrityThreshold);
+        List<Post> celebrityPosts = List.of();
+        if (!celebrityIds.isEmpty()) {
+            celebrityPosts = before == null
+                    ? postRepository.findByUserIdsFirstPage(celebrityIds, pageable)
+                    : postRepository.findByUserIdsPageBefore(celebrityIds, before.getCreatedDate(), before.getId(), pageable);
+        }
+
+        // Сливаем два отсортированных источника; дубликаты возможны, если автор стал
+        // популярным уже после рассылки части своих постов
+        Map<Long, TimelineEntry> merged = new LinkedHashMap<>();
+        for (TimelineEntry entry : entries) {
+            merged.put(entry.getId().getPostId(), entry);
+        }
+        for (Post post : celebrityPosts) {
+            TimelineEntry entry = new TimelineEntry();
+            entry.setId(new TimelineEntryId(userId, post.getId()));
+            entry.setAuthorId(post.getUser().getId());
+            entry.setCreatedDate(post.getCreatedDate());
+            merged.putIfAbsent(post.getId(), entry);
+        }
+
+        Comparator<TimelineEntry> feedOrder = Comparator
+                .comparing(TimelineEntry::getCreatedDate)
+                .thenComparing((TimelineEntry entry) -> entry.getId().getPostId())
+                .reversed();
+        List<Long> pageIds = merged.values().stream()
+                .sorted(feedOrder)
+                .limit(limit + 1L)
+                .map(entry -> entry.getId().getPostId())
+                .collect(Collectors.toList());
+        if (pageIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Посты популярных авторов уже загружены, остальные догружаем одним запросом
+        Map<Long, Post> postsById = celebrityPosts.stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Long> missingIds = pageIds.stream()
+                .filter(id -> !postsById.containsKey(id))
+                .collect(Collectors.toList());
+        if (!missingIds.isEmpty()) {
+            for (Post post : postRepository.findAllWithUserByIdIn(missingIds)) {
+                postsById.put(post.getId(), post);
+            }
+        }
+
+        List<Post> page = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            Post post = postsById.get(id);
+            if (post != null) {
+                page.add(post);
+            }
+        }
+        return page;
+    }
+
+    private boolean isCelebrity(Long userId) {
+        return userRepository.findFollowerCountById(userId).orElse(0L) >= celebrityThreshold;
+    }
+}
@@ -0,0 +1,93 @@
+package com.freeflyfish.MyInsta.service;
+
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Кэш пользователей в памяти приложения, с доступом по ID и по имени.
+ * Нужен, чтобы вход и чтение постов/комментариев пользователя не читали users каждый раз.
+ *
+ * Хранятся снимки только неизменяемых полей (ID, имя, хеш пароля, дата создания).
+ * Счетчики подписок в снимок не входят - они меняются атомарными UPDATE
+ * и читаются из БД. Наружу всегда отдается копия, так что изменить
+ * закэшированный снимок нельзя.
+ */
+@Component
+public class UserCache {
+
+    // Приблизительные размеры объектов в куче (заголовок объекта, ссылки, поля)
+    private static final long USER_OVERHEAD = 112;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long ID_ENTRY_BYTES = 96;
+
+    private final BoundedCache<Long, User> usersById;
+    private final BoundedCache<String, Long> idsByUsername;
+
+    public UserCache(@Value("${myinsta.cache.users.max-entries:100000}") long maxEntries,
+                     @Value("${myinsta.cache.users.max-bytes:33554432}") long maxBytes) {
+        this.usersById = new BoundedCache<>(maxEntries, maxBytes, UserCache::estimateBytes);
+        this.idsByUsername = new BoundedCache<>(maxEntries, maxEntries * ID_ENTRY_BYTES, id -> ID_ENTRY_BYTES);
+    }
+
+    /**
+     * @return копия пользователя или null, если его нет в кэше
+     */
+    public User getById(Long id) {
+        return copyOf(usersById.get(id));
+    }
+
+    /**
+     * @return копия пользователя или null, если его нет в кэше
+     */
+    public User getByUsername(String username) {
+        Long id = idsByUsername.get(username);
+        return id == null ? null : getById(id);
+    }
+
+    /**
+     * Метка, которую нужно получить до загрузки пользователя из БД (см. BoundedCache.put).
+     */
+    public long stamp() {
+        return usersById.stamp();
+    }
+
+    public void put(User user, long stamp) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        usersById.put(user.getId(), copyOf(user), stamp);
+        idsByUsername.put(user.getUsername(), user.getId(), idsByUsername.stamp());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("byId", usersById.stats());
+        stats.put("byUsername", idsByUsername.stats());
+        return stats;
+    }
+
+    private static User copyOf(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setCreatedDate(user.getCreatedDate());
+        return copy;
+    }
+
+    private static long estimateBytes(User user) {
+        return USER_OVERHEAD + stringBytes(user.getUsername()) + stringBytes(user.getPassword());
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + 2L * value.length();
+    }
+}
@@ -2,24 +2,61 @@ package com.freeflyfish.MyInsta.service;
 
 import com.freeflyfish.MyInsta.entity.User;
 import com.freeflyfish.MyInsta.repository.UserRepository;
+import com.freeflyfish.MyInsta.security.AuthenticatedUser;
+import com.freeflyfish.MyInsta.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Пользователи.
+ *
+ * Чтение пользователей идет через {@link UserCache}, а занятость имени сначала проверяется
+ * фильтром Блума по всем занятым именам: если фильтр отвечает "нет", имя точно свободно
+ * и БД не спрашивается. Фильтр заполняется при старте приложения и пополняется при
+ * регистрации; пока он не заполнен, проверки идут в БД. Пользователи, записанные в users
+ * в обход {@link #createUser} (или другим экземпляром приложения), попадут в фильтр лишь
+ * после перезапуска, поэтому фильтру доверяет только проверка занятости имени - вход
+ * ищет пользователя в кэше и БД.
+ */
 @Service
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
+    // Сколько имен читается из БД за один запрос при заполнении фильтра
+    private static final int FILTER_LOAD_BATCH = 10_000;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
+
+    private final BloomFilter usernameFilter;
+    private final long usernameFilterCapacity;
+    private volatile boolean usernameFilterReady;
 
     /**
      * Внедрение зависимостей через конструктор - это современный и рекомендуемый подход
      * Spring автоматически найдет соответствующие бины и передаст их в конструктор
      */
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, UserCache userCache,
+                       @Value("${myinsta.users.username-filter.expected-users:1000000}") long expectedUsers,
+                       @Value("${myinsta.users.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.usernameFilter = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.usernameFilterCapacity = expectedUsers;
     }
 
     /**
@@ -28,7 +65,7 @@ public class UserService {
      */
     public User createUser(String username, String password) {
         // Проверяем, не существует ли уже пользователь с таким username
-        if (userRepository.existsByUsername(username)) {
+        if (isUsernameTaken(username)) {
             throw new RuntimeException("Пользователь с таким именем уже существует");
         }
 
@@ -37,34 +74,115 @@ public class UserService {
         // Шифруем пароль для безопасности
         user.setPassword(passwordEncoder.encode(password));
 
-        return userRepository.save(user);
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            // Имя заняли одновременно с нами - решает уникальный индекс, а не предварительная проверка
+            throw new RuntimeException("Пользователь с таким именем уже существует");
+        }
+
+        usernameFilter.put(saved.getUsername());
+        userCache.put(saved, userCache.stamp());
+        return saved;
+    }
+
+    /**
+     * Занято ли имя пользователя.
+     * Для свободного имени обычно отвечает фильтр Блума, без обращения к БД.
+     */
+    public boolean isUsernameTaken(String username) {
+        if (username == null) {
+            return false;
+        }
+        if (usernameFilterReady && !usernameFilter.mightContain(username)) {
+            return false;
+        }
+        return userCache.getByUsername(username) != null || userRepository.existsByUsername(username);
     }
 
     /**
      * Поиск пользователя по username
-     * Используется для аутентификации
+     * Используется для аутентификации, поэтому фильтру Блума здесь не доверяем:
+     * пользователь, созданный другим экземпляром приложения, в нашем фильтре отсутствует
      */
     public Optional<User> findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        if (username == null) {
+            return Optional.empty();
+        }
+        User cached = userCache.getByUsername(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long stamp = userCache.stamp();
+        Optional<User> result = userRepository.findByUsername(username);
+        result.ifPresent(user -> userCache.put(user, stamp));
+        return result;
+    }
+
+    /**
+     * Пользователь из токена запроса в виде сущности для записи (автор поста, комментария).
+     * БД не читается: токен подписан сервером, а для связи с постом или комментарием
+     * Hibernate нужен только ID. Заполнены только ID и имя.
+     */
+    public User getAuthenticatedUser(AuthenticatedUser principal) {
+        User user = new User();
+        user.setId(principal.getId());
+        user.setUsername(principal.getUsername());
+        return user;
     }
 
     /**
      * Получение пользователя по ID
      */
     public Optional<User> findById(Long id) {
-        System.out.println("=== UserService.findById вызван ===");
-        System.out.println("Ищем пользователя с ID: " + id);
+        User cached = userCache.getById(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
 
+        long stamp = userCache.stamp();
         Optional<User> result = userRepository.findById(id);
-        System.out.println("Результат поиска: " + (result.isPresent() ? "НАЙДЕН" : "НЕ НАЙДЕН"));
+        result.ifPresent(user -> userCache.put(user, stamp));
+        return result;
+    }
 
-        if (result.isPresent()) {
-            System.out.println("Найден пользователь: " + result.get().getUsername());
-        } else {
-            System.out.println("Пользователь с ID " + id + " не найден в базе данных");
-        }
+    /**
+     * Существует ли пользователь с таким ID
+     */
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
 
-        return result;
+    public Map<String, Object> getCacheStats() {
+        return userCache.stats();
     }
 
-}
\ No newline at end of file
+    /**
+     * Заполняет фильтр занятых имен при старте приложения.
+     * Имена читаются пачками по ID (keyset), без загрузки всей таблицы в память.
+     * Регистрации во время заполнения попадают в тот же фильтр, поэтому не теряются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadUsernameFilter() {
+        long loaded = 0;
+        long afterId = Long.MIN_VALUE;
+        List<Object[]> batch;
+        do {
+            batch = userRepository.findIdsAndUsernamesAfter(afterId, PageRequest.of(0, FILTER_LOAD_BATCH));
+            for (Object[] row : batch) {
+                afterId = (Long) row[0];
+                usernameFilter.put((String) row[1]);
+            }
+            loaded += batch.size();
+        } while (batch.size() == FILTER_LOAD_BATCH);
+
+        usernameFilterReady = true;
+        if (loaded > usernameFilterCapacity) {
+            log.warn("Пользователей ({}) больше, чем рассчитан фильтр имен ({}): увеличьте " +
+                    "myinsta.users.username-filter.expected-users", loaded, usernameFilterCapacity);
+        }
+        log.info("Фильтр занятых имен заполнен: {} имен", loaded);
+    }
+}
@@ -0,0 +1,143 @@
+package com.freeflyfish.MyInsta.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Хранилище на локальном диске.
+ *
+ * Миллионы файлов в одной папке плохо переносит любая файловая система,
+ * поэтому файлы раскладываются по двум уровням подпапок, выбранных по хэшу имени:
+ * ключ "photos/abc.jpg" хранится в {root}/photos/3f/a2/abc.jpg (65 536 папок на тип медиа).
+ *
+ * Файлы, загруженные до шардирования, лежат в {root}/{ключ}; они по-прежнему читаются и удаляются.
+ */
+@Component
+@ConditionalOnProperty(name = "myinsta.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalShardedMediaStorage implements MediaStorage {
+
+    private final Path root;
+
+    public LocalShardedMediaStorage(@Value("${myinsta.storage.local.root:uploads}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+        // Перенос в пределах одного диска атомарен: читатели не увидят недописанный файл
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        Path file = localPath(key);
+        if (file == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new StoredObject(attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        Path file = localPath(key);
+        if (file == null) {
+            throw new NoSuchFileException(key);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    /**
+     * Путь к файлу: шардированный, а если его нет, но есть файл в старой плоской раскладке - старый.
+     */
+    @Override
+    public Path localPath(String key) {
+        String normalized = MediaStorage.normalizeKey(key);
+        if (normalized == null) {
+            return null;
+        }
+        Path sharded = shardedPath(normalized);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path legacy = resolveInRoot(normalized);
+        return legacy != null && Files.exists(legacy) ? legacy : sharded;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        String normalized = MediaStorage.normalizeKey(key);
+        if (normalized == null) {
+            return;
+        }
+        Files.deleteIfExists(shardedPath(normalized));
+        Path legacy = resolveInRoot(normalized);
+        if (legacy != null) {
+            Files.deleteIfExists(legacy);
+        }
+    }
+
+    /**
+     * "photos/abc.jpg" -> {root}/photos/3f/a2/abc.jpg, где 3fa2 - начало SHA-256 имени файла.
+     */
+    private Path shardedPath(String key) {
+        String normalized = MediaStorage.normalizeKey(key);
+        if (normalized == null) {
+            throw new IllegalArgumentException("Некорректный ключ хранилища: " + key);
+        }
+        int slash = normalized.lastIndexOf('/');
+        String directory = slash >= 0 ? normalized.substring(0, slash + 1) : "";
+        String fileName = normalized.substring(slash + 1);
+
+        String shard = HexFormat.of().formatHex(sha256(fileName), 0, 2);
+        Path path = resolveInRoot(directory + shard.substring(0, 2) + "/" + shard.substring(2, 4) + "/" + fileName);
+        if (path == null) {
+            throw new IllegalArgumentException("Некорректный ключ хранилища: " + key);
+        }
+        return path;
+    }
+
+    /**
+     * Путь внутри корня хранилища или null, если он выходит за его пределы.
+     */
+    private Path resolveInRoot(String relativePath) {
+        Path path = root.resolve(relativePath).normalize();
+        return path.startsWith(root) ? path : null;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.freeflyfish.MyInsta.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Хранилище содержимого медиафайлов.
+ *
+ * Файлы адресуются ключами вида "photos/2cf24d...9824.jpg"; ключ хранится в media_files.file_path
+ * и media_blobs.file_path, а по URL /api/files/{ключ} файл отдается клиенту.
+ * Реализация выбирается настройкой myinsta.storage.type:
+ * - local (по умолчанию) - {@link LocalShardedMediaStorage}, локальный диск с шардированием по папкам;
+ * - s3 - {@link S3MediaStorage}, S3-совместимое объектное хранилище.
+ *
+ * Содержимое по ключу после записи не изменяется.
+ */
+public interface MediaStorage {
+
+    /**
+     * Помещает в хранилище записанный локально файл. Исходный файл при этом
+     * переносится или удаляется - вызывающему он больше не нужен.
+     *
+     * @param key ключ
+     * @param source локальный файл с содержимым
+     * @param contentType MIME-тип содержимого
+     * @throws IOException если файл не удалось сохранить
+     */
+    void store(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * Размер и время изменения содержимого.
+     *
+     * @return сведения о содержимом или null, если его нет
+     */
+    StoredObject stat(String key) throws IOException;
+
+    default boolean exists(String key) throws IOException {
+        return stat(key) != null;
+    }
+
+    /**
+     * Открывает участок содержимого для чтения.
+     *
+     * @param key ключ
+     * @param offset смещение первого байта
+     * @param length количество байт
+     * @throws java.nio.file.NoSuchFileException если содержимого нет
+     */
+    InputStream openRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * Путь к содержимому на локальном диске, если хранилище локальное.
+     * Тогда файл можно отдать через sendfile, не копируя данные через приложение.
+     *
+     * @return путь или null, если содержимое хранится не на локальном диске
+     */
+    Path localPath(String key);
+
+    /**
+     * Удаляет содержимое. Отсутствие содержимого ошибкой не считается.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Приводит путь из БД или URL к ключу хранилища: старые записи хранят путь
+     * с префиксом "uploads/", который больше не является частью ключа.
+     *
+     * @return ключ или null, если путь пустой или пытается выйти за пределы хранилища
+     */
+    static String normalizeKey(String path) {
+        if (path == null) {
+            return null;
+        }
+        String key = path.replace('\\', '/');
+        if (key.startsWith("uploads/")) {
+            key = key.substring("uploads/".length());
+        }
+        if (key.isEmpty() || key.startsWith("/")) {
+            return null;
+        }
+        for (String segment : key.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Размер и время изменения содержимого.
+     */
+    class StoredObject {
+
+        private final long size; // Размер в байтах
+        private final long lastModified; // Время изменения, мс
+
+        public StoredObject(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.freeflyfish.MyInsta.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+
+/**
+ * Хранилище в S3-совместимом объектном хранилище (AWS S3, MinIO, Ceph RGW и т.п.).
+ *
+ * Работает через HTTP-клиент JDK с подписью запросов AWS Signature V4, без SDK.
+ * Используется адресация бакета в пути (endpoint/bucket/key), которую поддерживают
+ * все S3-совместимые хранилища. Тело при загрузке не подписывается (UNSIGNED-PAYLOAD),
+ * поэтому endpoint должен быть HTTPS везде, кроме локальной разработки.
+ *
+ * Настройки: myinsta.storage.s3.endpoint, region, bucket, access-key, secret-key
+ * и необязательный prefix для ключей.
+ */
+@Component
+@ConditionalOnProperty(name = "myinsta.storage.type", havingValue = "s3")
+public class S3MediaStorage implements MediaStorage {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String EMPTY_PAYLOAD_HASH =
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter AMZ_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final String prefix;
+    private final HttpClient httpClient;
+
+    public S3MediaStorage(@Value("${myinsta.storage.s3.endpoint}") String endpoint,
+                          @Value("${myinsta.storage.s3.region:us-east-1}") String region,
+                          @Value("${myinsta.storage.s3.bucket}") String bucket,
+                          @Value("${myinsta.storage.s3.access-key}") String accessKey,
+                          @Value("${myinsta.storage.s3.secret-key}") String secretKey,
+                          @Value("${myinsta.storage.s3.prefix:}") String prefix) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.prefix = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Override
+    public void store(String key, Path source, String contentType) throws IOException {
+        HttpRequest.Builder request = signedRequest("PUT", key, UNSIGNED_PAYLOAD)
+                .header("Content-Type", contentType)
+                .PUT(HttpRequest.BodyPublishers.ofFile(source));
+        HttpResponse<String> response = send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 PUT " + key + " завершился кодом " + response.statusCode() + ": " + response.body());
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public StoredObject stat(String key) throws IOException {
+        HttpRequest request = signedRequest("HEAD", key, EMPTY_PAYLOAD_HASH)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 HEAD " + key + " завершился кодом " + response.statusCode());
+        }
+
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new StoredObject(size, lastModified);
+    }
+
+    @Override
+    public InputStream openRange(String key, long offset, long length) throws IOException {
+        HttpRequest request = signedRequest("GET", key, EMPTY_PAYLOAD_HASH)
+                .header("Range", "bytes=" + offset + "-" + (offset + length - 1))
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            throw new NoSuchFileException(key);
+        }
+        if (response.statusCode() != 206 && response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("S3 GET " + key + " завершился кодом " + response.statusCode());
+        }
+        InputStream body = response.body();
+        if (response.statusCode() == 200 && offset > 0) {
+            // Хранилище проигнорировало Range - пропускаем начало сами
+            body.skipNBytes(offset);
+        }
+        return new BoundedInputStream(body, length);
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpRequest request = signedRequest("DELETE", key, EMPTY_PAYLOAD_HASH)
+                .DELETE()
+                .build();
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404) {
+            throw new IOException("S3 DELETE " + key + " завершился кодом " + response.statusCode());
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запрос к S3 прерван", e);
+        }
+    }
+
+    /**
+     * Готовит запрос к объекту с заголовками подписи AWS Signature V4.
+     */
+    private HttpRequest.Builder signedRequest(String method, String key, String payloadHash) {
+        String normalized = MediaStorage.normalizeKey(key);
+        if (normalized == null) {
+            throw new IllegalArgumentException("Некорректный ключ хранилища: " + key);
+        }
+        String canonicalUri = endpoint.getRawPath() + "/" + encodePath(bucket) + "/" + encodePath(prefix + normalized);
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + canonicalUri);
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String scope = AMZ_DAY.format(now) + "/" + region + "/s3/aws4_request";
+
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+                + canonicalUri + "\n"
+                + "\n"
+                + "host:" + uri.getRawAuthority() + "\n"
+                + "x-amz-content-sha256:" + payloadHash + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signedHeaders + "\n"
+                + payloadHash;
+
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                + HexFormat.of().formatHex(sha256(canonicalRequest));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), AMZ_DAY.format(now));
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", payloadHash)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+    }
+
+    /**
+     * Кодирует путь по правилам S3 (RFC 3986), не трогая разделители "/".
+     */
+    private static String encodePath(String path) {
+        String[] segments = path.split("/", -1);
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                encoded.append('/');
+            }
+            encoded.append(URLEncoder.encode(segments[i], StandardCharsets.UTF_8)
+                    .replace("+", "%20")
+                    .replace("*", "%2A")
+                    .replace("%7E", "~"));
+        }
+        return encoded.toString();
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 недоступен", e);
+        }
+    }
+}
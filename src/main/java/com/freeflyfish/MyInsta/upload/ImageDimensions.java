@@ -0,0 +1,111 @@
+package com.freeflyfish.MyInsta.upload;
+
+/**
+ * Чтение размеров изображения из заголовка файла без декодирования пикселей.
+ */
+final class ImageDimensions {
+
+    private ImageDimensions() {
+    }
+
+    /**
+     * @param format формат файла
+     * @param header начало файла
+     * @param length сколько байт в header заполнено
+     * @return {ширина, высота} или null, если размеры не найдены в переданном начале файла
+     *         (или формат - видео)
+     */
+    static int[] read(MediaFormat format, byte[] header, int length) {
+        switch (format) {
+            case PNG:
+                // Чанк IHDR всегда первый: ширина и высота - big-endian int по смещению 16 и 20
+                return length >= 24 ? of(intBE(header, 16), intBE(header, 20)) : null;
+            case GIF:
+                return length >= 10 ? of(shortLE(header, 6), shortLE(header, 8)) : null;
+            case BMP:
+                // Высота отрицательная у изображений, записанных сверху вниз
+                return length >= 26 ? of(intLE(header, 18), Math.abs(intLE(header, 22))) : null;
+            case WEBP:
+                return readWebp(header, length);
+            case JPEG:
+                return readJpeg(header, length);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Ищет маркер SOF (начало кадра), перескакивая остальные сегменты (EXIF, таблицы и т.п.).
+     */
+    private static int[] readJpeg(byte[] data, int length) {
+        int i = 2;
+        while (i + 9 < length) {
+            if ((data[i] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = data[i + 1] & 0xFF;
+            if (marker == 0xFF) {
+                i++; // Байт-заполнитель
+                continue;
+            }
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                return of(shortBE(data, i + 7), shortBE(data, i + 5));
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null; // Конец файла или начало данных без SOF
+            }
+            i += 2 + shortBE(data, i + 2);
+        }
+        return null;
+    }
+
+    private static int[] readWebp(byte[] data, int length) {
+        if (length < 30) {
+            return null;
+        }
+        String chunk = new String(data, 12, 4, java.nio.charset.StandardCharsets.US_ASCII);
+        switch (chunk) {
+            case "VP8 ":
+                return of(shortLE(data, 26) & 0x3FFF, shortLE(data, 28) & 0x3FFF);
+            case "VP8L": {
+                int b0 = data[21] & 0xFF;
+                int b1 = data[22] & 0xFF;
+                int b2 = data[23] & 0xFF;
+                int b3 = data[24] & 0xFF;
+                int width = 1 + (b0 | ((b1 & 0x3F) << 8));
+                int height = 1 + ((b1 >> 6) | (b2 << 2) | ((b3 & 0x0F) << 10));
+                return of(width, height);
+            }
+            case "VP8X":
+                return of(1 + int24LE(data, 24), 1 + int24LE(data, 27));
+            default:
+                return null;
+        }
+    }
+
+    private static int[] of(int width, int height) {
+        return width > 0 && height > 0 ? new int[]{width, height} : null;
+    }
+
+    private static int shortBE(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int shortLE(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int int24LE(byte[] data, int offset) {
+        return shortLE(data, offset) | ((data[offset + 2] & 0xFF) << 16);
+    }
+
+    private static int intBE(byte[] data, int offset) {
+        return (shortBE(data, offset) << 16) | shortBE(data, offset + 2);
+    }
+
+    private static int intLE(byte[] data, int offset) {
+        return shortLE(data, offset) | (shortLE(data, offset + 2) << 16);
+    }
+}
@@ -0,0 +1,116 @@
+package com.freeflyfish.MyInsta.upload;
+
+import com.freeflyfish.MyInsta.entity.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Поддерживаемые форматы медиафайлов и их сигнатуры ("магические байты").
+ * Формат определяется по содержимому файла, а не по имени, которое присылает клиент.
+ */
+public enum MediaFormat {
+
+    JPEG("jpg", MediaType.PHOTO, "image/jpeg"),
+    PNG("png", MediaType.PHOTO, "image/png"),
+    GIF("gif", MediaType.PHOTO, "image/gif"),
+    BMP("bmp", MediaType.PHOTO, "image/bmp"),
+    WEBP("webp", MediaType.PHOTO, "image/webp"),
+    MP4("mp4", MediaType.VIDEO, "video/mp4"),
+    MOV("mov", MediaType.VIDEO, "video/quicktime"),
+    AVI("avi", MediaType.VIDEO, "video/x-msvideo"),
+    WMV("wmv", MediaType.VIDEO, "video/x-ms-wmv"),
+    FLV("flv", MediaType.VIDEO, "video/x-flv"),
+    WEBM("webm", MediaType.VIDEO, "video/webm");
+
+    // Сколько первых байт нужно, чтобы распознать любой из форматов
+    public static final int SIGNATURE_BYTES = 16;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] ASF_SIGNATURE = {0x30, 0x26, (byte) 0xB2, 0x75, (byte) 0x8E, 0x66, (byte) 0xCF, 0x11};
+    private static final byte[] EBML_SIGNATURE = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3};
+
+    private final String extension;
+    private final MediaType mediaType;
+    private final String contentType;
+
+    MediaFormat(String extension, MediaType mediaType, String contentType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Определяет формат по первым байтам файла.
+     *
+     * @param header первые байты файла
+     * @param length сколько байт в header заполнено (не меньше SIGNATURE_BYTES, если файл не короче)
+     * @return формат или null, если сигнатура не распознана
+     */
+    public static MediaFormat detect(byte[] header, int length) {
+        if (startsWith(header, length, 0, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF})) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 0, PNG_SIGNATURE)) {
+            return PNG;
+        }
+        if (startsWith(header, length, 0, ascii("GIF87a")) || startsWith(header, length, 0, ascii("GIF89a"))) {
+            return GIF;
+        }
+        if (startsWith(header, length, 0, ascii("BM")) && length >= 14) {
+            return BMP;
+        }
+        if (startsWith(header, length, 0, ascii("RIFF"))) {
+            if (startsWith(header, length, 8, ascii("WEBP"))) {
+                return WEBP;
+            }
+            if (startsWith(header, length, 8, ascii("AVI "))) {
+                return AVI;
+            }
+            return null;
+        }
+        if (startsWith(header, length, 4, ascii("ftyp"))) {
+            return startsWith(header, length, 8, ascii("qt  ")) ? MOV : MP4;
+        }
+        if (startsWith(header, length, 0, ASF_SIGNATURE)) {
+            return WMV;
+        }
+        if (startsWith(header, length, 0, ascii("FLV")) && length > 3 && header[3] == 0x01) {
+            return FLV;
+        }
+        if (startsWith(header, length, 0, EBML_SIGNATURE)) {
+            return WEBM;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int length, int offset, byte[] prefix) {
+        if (length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Каноническое расширение без точки, например "jpg".
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
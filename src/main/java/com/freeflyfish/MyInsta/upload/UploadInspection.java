@@ -0,0 +1,42 @@
+package com.freeflyfish.MyInsta.upload;
+
+/**
+ * Результат проверки загруженного файла: настоящий формат, размер, SHA-256 и,
+ * для изображений, размеры в пикселях (null, если их не удалось прочитать из заголовка).
+ */
+public class UploadInspection {
+
+    private final MediaFormat format;
+    private final long size;
+    private final String contentHash;
+    private final Integer width;
+    private final Integer height;
+
+    public UploadInspection(MediaFormat format, long size, String contentHash, Integer width, Integer height) {
+        this.format = format;
+        this.size = size;
+        this.contentHash = contentHash;
+        this.width = width;
+        this.height = height;
+    }
+
+    public MediaFormat getFormat() {
+        return format;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,206 @@
+package com.freeflyfish.MyInsta.upload;
+
+import com.freeflyfish.MyInsta.entity.MediaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Проверка загружаемых файлов за один проход по содержимому.
+ *
+ * Пока файл копируется, по первым байтам определяется настоящий формат,
+ * считается размер и SHA-256, а из заголовка изображения читаются его размеры.
+ * Файл отклоняется, как только станет ясно, что он не подходит: неизвестная сигнатура
+ * видна уже в первых 16 байтах, превышение лимита - на том байте, где он превышен,
+ * слишком большое изображение - после чтения заголовка. Остаток такого файла не читается.
+ */
+@Component
+public class UploadInspector {
+
+    // Сколько начальных байт держим в памяти для чтения размеров. У JPEG маркер SOF
+    // идет после EXIF (с миниатюрой), поэтому окно берется с запасом
+    private static final int HEADER_WINDOW = 128 * 1024;
+
+    private final long maxPhotoBytes;
+    private final long maxVideoBytes;
+    private final long maxResumableVideoBytes;
+    private final long maxPixels;
+
+    public UploadInspector(@Value("${myinsta.upload.max-photo-size:20MB}") DataSize maxPhotoSize,
+                           @Value("${myinsta.upload.max-video-size:20MB}") DataSize maxVideoSize,
+                           @Value("${myinsta.upload.max-resumable-size:2GB}") DataSize maxResumableSize,
+                           @Value("${myinsta.upload.max-pixels:50000000}") long maxPixels) {
+        this.maxPhotoBytes = maxPhotoSize.toBytes();
+        this.maxVideoBytes = maxVideoSize.toBytes();
+        this.maxResumableVideoBytes = maxResumableSize.toBytes();
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Максимальный размер файла, который можно загрузить по частям.
+     */
+    public long getMaxResumableBytes() {
+        return Math.max(maxPhotoBytes, maxResumableVideoBytes);
+    }
+
+    /**
+     * Копирует содержимое в target, проверяя его в том же проходе.
+     * Если файл отклонен или запись упала, частично записанный target удаляется.
+     *
+     * @param source содержимое загруженного файла (закрывается)
+     * @param target куда записать файл; не должен существовать
+     * @return результат проверки
+     * @throws RuntimeException если файл не прошел проверку
+     * @throws IOException      если не удалось прочитать или записать файл
+     */
+    public UploadInspection copy(InputStream source, Path target) throws IOException {
+        try (InspectingInputStream input = new InspectingInputStream(source, maxVideoBytes)) {
+            Files.copy(input, target);
+            return input.finish();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет файл, собранный из частей при докачиваемой загрузке, прочитав его один раз.
+     * Для видео действует лимит докачиваемой загрузки, а не лимит одного запроса.
+     *
+     * @param file файл на диске
+     * @return результат проверки
+     * @throws RuntimeException если файл не прошел проверку
+     * @throws IOException      если не удалось прочитать файл
+     */
+    public UploadInspection inspect(Path file) throws IOException {
+        try (InspectingInputStream input = new InspectingInputStream(Files.newInputStream(file), maxResumableVideoBytes)) {
+            input.transferTo(OutputStream.nullOutputStream());
+            return input.finish();
+        }
+    }
+
+    /**
+     * Поток, который проверяет содержимое по мере чтения.
+     */
+    private class InspectingInputStream extends FilterInputStream {
+
+        private final MessageDigest digest = newSha256();
+        private final byte[] header = new byte[HEADER_WINDOW];
+        private int headerLength;
+        private long size;
+        private MediaFormat format;
+        private int[] dimensions;
+        private boolean headerInspected;
+        private final long videoLimit;
+
+        private InspectingInputStream(InputStream in, long videoLimit) {
+            super(in);
+            this.videoLimit = videoLimit;
+        }
+
+        private long limitFor(MediaFormat format) {
+            if (format == null) {
+                return Math.max(maxPhotoBytes, videoLimit);
+            }
+            return format.getMediaType() == MediaType.PHOTO ? maxPhotoBytes : videoLimit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                accept(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            // Пропуск байт сломал бы подсчет хэша
+            return 0;
+        }
+
+        private void accept(byte[] buffer, int offset, int n) {
+            size += n;
+            if (size > limitFor(format)) {
+                throw new RuntimeException("Файл слишком большой: максимум " + limitFor(format) + " байт");
+            }
+            digest.update(buffer, offset, n);
+
+            if (headerLength < header.length) {
+                int copied = Math.min(n, header.length - headerLength);
+                System.arraycopy(buffer, offset, header, headerLength, copied);
+                headerLength += copied;
+            }
+            if (format == null && headerLength >= MediaFormat.SIGNATURE_BYTES) {
+                detectFormat();
+            }
+            if (!headerInspected && headerLength == header.length) {
+                inspectHeader();
+            }
+        }
+
+        private void detectFormat() {
+            format = MediaFormat.detect(header, headerLength);
+            if (format == null) {
+                throw new RuntimeException("Содержимое файла не похоже ни на один поддерживаемый формат");
+            }
+            if (size > limitFor(format)) {
+                throw new RuntimeException("Файл слишком большой: максимум " + limitFor(format) + " байт");
+            }
+        }
+
+        private void inspectHeader() {
+            headerInspected = true;
+            dimensions = ImageDimensions.read(format, header, headerLength);
+            // Изображение, закончившееся раньше окна без размеров в заголовке, - обрезанный или битый файл.
+            // В длинном файле размеры могут оказаться дальше окна (JPEG с большими метаданными)
+            if (dimensions == null && format.getMediaType() == MediaType.PHOTO && headerLength < header.length) {
+                throw new RuntimeException("Не удалось прочитать заголовок изображения: файл поврежден");
+            }
+            if (dimensions != null && (long) dimensions[0] * dimensions[1] > maxPixels) {
+                throw new RuntimeException("Изображение слишком большое: " + dimensions[0] + "x" + dimensions[1]);
+            }
+        }
+
+        private UploadInspection finish() {
+            if (size == 0) {
+                throw new RuntimeException("Файл пустой");
+            }
+            if (format == null) {
+                detectFormat();
+            }
+            if (!headerInspected) {
+                inspectHeader();
+            }
+            return new UploadInspection(format, size, HexFormat.of().formatHex(digest.digest()),
+                    dimensions != null ? dimensions[0] : null,
+                    dimensions != null ? dimensions[1] : null);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для строк.
+ *
+ * Отвечает на вопрос "могла ли строка быть добавлена": ответ "нет" всегда точный,
+ * ответ "да" ошибочен с вероятностью, заданной при создании (пока количество
+ * добавленных строк не превышает расчетное). Удалять строки нельзя.
+ *
+ * Биты хранятся в AtomicLongArray, поэтому добавление и проверка не требуют блокировок.
+ * k позиций бита вычисляются двойным хешированием: h1 + i * h2.
+ */
+public class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions расчетное количество строк
+     * @param falsePositiveRate допустимая доля ложных "да" (например, 0.01)
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Расчетное количество элементов должно быть положительным");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний должна быть между 0 и 1");
+        }
+        // Оптимальные размеры: m = -n ln p / (ln 2)^2, k = m / n * ln 2
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(Math.max(1, words));
+        this.bitCount = 64L * bits.length();
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Добавляет строку.
+     */
+    public void put(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ FNV_PRIME) | 1; // Нечетный шаг обходит все позиции
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * @return false - строка точно не добавлялась; true - возможно, добавлялась
+     */
+    public boolean mightContain(String value) {
+        long h1 = hash(value);
+        long h2 = mix(h1 ^ FNV_PRIME) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a по байтам UTF-8 с финальным перемешиванием, чтобы биты хеша были равномерны
+    private static long hash(String value) {
+        long h = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    // Финализатор MurmurHash3 (fmix64)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
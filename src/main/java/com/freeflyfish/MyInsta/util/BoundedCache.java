@@ -0,0 +1,192 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Потокобезопасный LRU-кэш, ограниченный одновременно количеством записей
+ * и суммарным "весом" (оценкой занимаемой памяти в байтах).
+ *
+ * Ведет статистику попаданий, промахов и вытеснений, чтобы кэш можно было подобрать по размеру.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class BoundedCache<K, V> {
+
+    private final long maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+
+    // LinkedHashMap в режиме accessOrder хранит записи от самой старой к самой свежей
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long totalWeight;
+
+    // Число полос, по которым ключи раскладываются для учета инвалидаций
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    // Счетчик инвалидаций: загрузка, начавшаяся до инвалидации ее ключа, не должна класть старые данные.
+    // Для каждой полосы ключей хранится номер последней инвалидации, поэтому инвалидация одного ключа
+    // отбрасывает только загрузки ключей той же полосы, а не все параллельные загрузки
+    private final AtomicLong invalidations = new AtomicLong();
+    private final long[] invalidatedAt = new long[INVALIDATION_STRIPES];
+    private long clearedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries максимальное количество записей
+     * @param maxWeight максимальный суммарный вес записей
+     * @param weigher функция оценки веса одного значения
+     */
+    public BoundedCache(long maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Возвращает значение из кэша или null, если его нет.
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Метка для последующего put: берется до загрузки значения из источника.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Кладет значение в кэш, если с момента получения метки этот ключ (или ключ из той же полосы)
+     * не инвалидировался и кэш не очищался. Так загрузка, которая "обогнала" удаление или изменение,
+     * не вернет в кэш устаревшие данные.
+     *
+     * @param key ключ
+     * @param value значение
+     * @param stamp метка, полученная через stamp() до загрузки значения
+     */
+    public void put(K key, V value, long stamp) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeight) {
+            return; // Слишком большое значение вытеснило бы весь кэш
+        }
+
+        lock.lock();
+        try {
+            if (invalidatedAt[stripe(key)] > stamp || clearedAt > stamp) {
+                return;
+            }
+            Entry<V> previous = entries.put(key, new Entry<>(value, weight));
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            totalWeight += weight;
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет запись из кэша.
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            invalidatedAt[stripe(key)] = invalidations.incrementAndGet();
+            Entry<V> removed = entries.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Полностью очищает кэш.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            clearedAt = invalidations.incrementAndGet();
+            entries.clear();
+            totalWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Снимок статистики кэша.
+     *
+     * @return количество записей, суммарный вес, попадания, промахи, вытеснения и лимиты
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("entries", entries.size());
+            stats.put("weightBytes", totalWeight);
+        } finally {
+            lock.unlock();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxWeightBytes", maxWeight);
+        return stats;
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && iterator.hasNext()) {
+            Entry<V> eldest = iterator.next();
+            iterator.remove();
+            totalWeight -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+
+        private Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.freeflyfish.MyInsta.util;
 
 import com.freeflyfish.MyInsta.dto.CommentDTO;
 import com.freeflyfish.MyInsta.dto.MediaFileDTO;
+import com.freeflyfish.MyInsta.dto.MediaRenditionDTO;
 import com.freeflyfish.MyInsta.dto.PostDTO;
+import com.freeflyfish.MyInsta.dto.PostPageDTO;
 import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaRendition;
 import com.freeflyfish.MyInsta.entity.Post;
 import org.springframework.stereotype.Component;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -38,6 +42,17 @@ public class DTOConverter {
 
         dto.setMediaType(mediaFile.getMediaType());
         dto.setPosition(mediaFile.getPosition());
+        dto.setWidth(mediaFile.getWidth());
+        dto.setHeight(mediaFile.getHeight());
+
+        // Уменьшенные копии фото (от меньшей к большей)
+        if (mediaFile.getRenditions() != null) {
+            dto.setRenditions(mediaFile.getRenditions().stream()
+                    .sorted(Comparator.comparing(MediaRendition::getWidth))
+                    .map(rendition -> new MediaRenditionDTO(rendition.getWidth(), rendition.getHeight(),
+                            "/api/files/" + rendition.getFilePath()))
+                    .collect(Collectors.toList()));
+        }
         return dto;
     }
 
@@ -66,6 +81,8 @@ public class DTOConverter {
         dto.setTitle(post.getTitle());
         dto.setCaption(post.getCaption());
         dto.setCreatedDate(post.getCreatedDate());
+        // Сохраненное в БД значение; еще не записанные лайки добавляет LikeService.applyLikes
+        dto.setLikeCount(post.getLikeCount());
 
         // Добавляем информацию об авторе
         if (post.getUser() != null) {
@@ -94,6 +111,28 @@ public class DTOConverter {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Преобразует страницу ленты в PostPageDTO.
+     * Если постов больше, чем limit (репозиторий возвращает limit + 1),
+     * лишний пост отбрасывается, а курсор строится по последнему отданному.
+     *
+     * @param posts посты страницы (до limit + 1 штук)
+     * @param limit размер страницы
+     * @return DTO страницы с курсором следующей страницы
+     */
+    public PostPageDTO convertToPostPageDTO(List<Post> posts, int limit) {
+        boolean hasMore = posts.size() > limit;
+        List<Post> pagePosts = hasMore ? posts.subList(0, limit) : posts;
+
+        String nextCursor = null;
+        if (hasMore) {
+            Post last = pagePosts.get(pagePosts.size() - 1);
+            nextCursor = new FeedCursor(last.getCreatedDate(), last.getId()).encode();
+        }
+
+        return new PostPageDTO(convertToPostDTOList(pagePosts), nextCursor);
+    }
+
     // Добавляем эти методы в существующий класс DTOConverter:
 
     /**
@@ -0,0 +1,66 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор для keyset-пагинации ленты.
+ * Хранит позицию последнего отданного элемента: пару (createdDate, id).
+ *
+ * Клиенту курсор передается как непрозрачная строка (base64url),
+ * поэтому формат внутри можно менять без изменения API.
+ */
+public final class FeedCursor {
+
+    private final LocalDateTime createdDate;
+    private final Long id;
+
+    public FeedCursor(LocalDateTime createdDate, Long id) {
+        this.createdDate = createdDate;
+        this.id = id;
+    }
+
+    /**
+     * Кодирует курсор в строку для передачи клиенту.
+     */
+    public String encode() {
+        String raw = createdDate.toString() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор, полученный от клиента.
+     *
+     * @param token строка курсора
+     * @return курсор или null, если токен не передан
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public static FeedCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("separator not found");
+            }
+            return new FeedCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + token);
+        }
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,49 @@
+package com.freeflyfish.MyInsta.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Запись объектов в формате NDJSON (application/x-ndjson): каждый объект - одна строка JSON.
+ *
+ * Нужен потоковым ответам, которые пишутся пачками по мере чтения из БД, а не собираются
+ * целиком в памяти. Пачка сбрасывается в ответ одним flush, а не после каждого объекта.
+ * Методы бросают UncheckedIOException, чтобы их можно было вызывать из Consumer.
+ */
+public class NdjsonWriter {
+
+    private final ObjectWriter objectWriter;
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        // Поток ответа закрывает контейнер, а строки разделяются переводом строки, а не пробелом
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Пишет объекты по одному на строку и отправляет их клиенту.
+     *
+     * @throws UncheckedIOException если клиент оборвал соединение
+     */
+    public void writeBatch(Collection<?> values) {
+        try {
+            for (Object value : values) {
+                objectWriter.writeValue(generator, value);
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Счетчики событий по ключам (например, использований хэштега) за скользящее окно времени.
+ *
+ * Окно разбито на корзины фиксированной длины, уложенные в кольцо. Событие увеличивает
+ * счетчик ключа в корзине своего времени и общую сумму ключа за окно - O(1).
+ * Когда время переходит в новую корзину, самая старая корзина вычитается из сумм
+ * и очищается, так что суммы всегда относятся к последнему окну без пересчета.
+ * Поэтому выборка самых частых ключей не требует GROUP BY по всей истории.
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final LongSupplier clock;
+
+    // Корзина i хранит счетчики для временных слотов, номер которых по модулю bucketCount равен i
+    private final List<Map<String, Long>> buckets;
+    private final Map<String, Long> totals = new HashMap<>();
+
+    // Номер текущего слота (время / длина корзины)
+    private long currentSlot;
+
+    /**
+     * @param windowMillis длина окна в миллисекундах
+     * @param bucketCount  количество корзин (точность окна = windowMillis / bucketCount)
+     * @param clock        источник текущего времени в миллисекундах
+     */
+    public SlidingWindowCounter(long windowMillis, int bucketCount, LongSupplier clock) {
+        if (bucketCount <= 0 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Окно должно содержать хотя бы одну миллисекунду на корзину");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.clock = clock;
+        this.buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new HashMap<>());
+        }
+        this.currentSlot = clock.getAsLong() / bucketMillis;
+    }
+
+    /**
+     * Учитывает событие, случившееся в момент timestampMillis.
+     * События старше окна игнорируются, события "из будущего" попадают в текущую корзину.
+     *
+     * @param key             ключ
+     * @param timestampMillis время события
+     * @param delta           изменение (отрицательное - отмена ранее учтенного события)
+     */
+    public synchronized void add(String key, long timestampMillis, long delta) {
+        advance();
+        long slot = Math.min(timestampMillis / bucketMillis, currentSlot);
+        if (slot <= currentSlot - bucketCount) {
+            return;
+        }
+        Map<String, Long> bucket = buckets.get((int) Math.floorMod(slot, (long) bucketCount));
+        addTo(bucket, key, delta);
+        addTo(totals, key, delta);
+    }
+
+    /**
+     * Самые частые ключи за окно.
+     *
+     * @param limit сколько ключей вернуть
+     * @return пары (ключ, количество) по убыванию количества
+     */
+    public synchronized List<Map.Entry<String, Long>> top(int limit) {
+        advance();
+        Comparator<Map.Entry<String, Long>> byCount = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+
+        // Куча из limit элементов: O(n log limit) по количеству ключей в окне
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(byCount);
+        for (Map.Entry<String, Long> entry : totals.entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            heap.offer(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<>(heap);
+        result.sort(byCount.reversed());
+        return result;
+    }
+
+    /**
+     * Сдвигает окно к текущему времени, вычитая из сумм вышедшие из окна корзины.
+     */
+    private void advance() {
+        long slot = clock.getAsLong() / bucketMillis;
+        if (slot <= currentSlot) {
+            return;
+        }
+        long steps = Math.min(slot - currentSlot, bucketCount);
+        for (long i = 1; i <= steps; i++) {
+            Map<String, Long> expired = buckets.get((int) Math.floorMod(currentSlot + i, (long) bucketCount));
+            for (Map.Entry<String, Long> entry : expired.entrySet()) {
+                addTo(totals, entry.getKey(), -entry.getValue());
+            }
+            expired.clear();
+        }
+        currentSlot = slot;
+    }
+
+    private static void addTo(Map<String, Long> counts, String key, long delta) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+}
@@ -0,0 +1,218 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Буфер изменений счетчиков (например, количества комментариев поста) в памяти.
+ *
+ * Каждый счетчик хранится в LongAdder, который внутри разбит на ячейки (stripes),
+ * поэтому тысячи одновременных инкрементов одного "горячего" поста не конкурируют
+ * за одну ячейку памяти - и тем более за одну строку в базе данных.
+ * Накопленные изменения периодически записываются в БД пачкой через flush().
+ *
+ * Значение счетчика - сохраненное в БД плюс изменения из буфера. Чтобы не учесть пакет
+ * дважды и не потерять его, читатель сверяет номер фиксации (commitSeq) до и после чтения:
+ * он нечетный, пока пакет фиксируется в БД, и увеличивается после того, как пакет убран
+ * из буфера. Если фиксация пересеклась с чтением, значение перечитывается. Ни одна
+ * блокировка не удерживается на время обращения к БД.
+ */
+public class StripedCounterBuffer {
+
+    /**
+     * Запись пакета изменений в БД.
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        /**
+         * @param deltas       ненулевые изменения по идентификаторам
+         * @param beforeCommit нужно вызвать непосредственно перед фиксацией транзакции
+         *                     (например, из TransactionSynchronization.beforeCommit)
+         */
+        void write(Map<Long, Long> deltas, Runnable beforeCommit);
+    }
+
+    // Писатели (add) берут read lock, подмена карт и чтение буфера - write/read lock
+    // только на время операций в памяти. Так изменение всегда находится ровно в одной из карт
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // Изменения, забранные flush(), но еще не подтвержденные записью в БД
+    private Map<Long, LongAdder> inFlight = Map.of();
+
+    // Четный - пакет не фиксируется; нечетный - идет фиксация, читатели ждут commitDone
+    private volatile long commitSeq;
+    private volatile CompletableFuture<Void> commitDone = CompletableFuture.completedFuture(null);
+
+    // Одновременные flush() (по расписанию, вручную, при остановке) выполняются по очереди.
+    // Читатели эту блокировку не берут
+    private final Lock flushMutex = new ReentrantLock();
+
+    /**
+     * Добавляет изменение к счетчику.
+     *
+     * @param id идентификатор счетчика (например, ID поста)
+     * @param delta изменение (может быть отрицательным)
+     */
+    public void add(Long id, long delta) {
+        swapLock.readLock().lock();
+        try {
+            pending.computeIfAbsent(id, key -> new LongAdder()).add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Значение счетчика: сохраненное в БД плюс изменения, еще не записанные в БД.
+     *
+     * @param id     идентификатор счетчика
+     * @param stored чтение значения из БД
+     * @return сумма
+     */
+    public long read(Long id, LongSupplier stored) {
+        return readAll(List.of(id), () -> Map.of(id, stored.getAsLong())).get(id);
+    }
+
+    /**
+     * То же для нескольких счетчиков, сохраненные значения которых читаются одним запросом.
+     *
+     * @param ids    идентификаторы счетчиков
+     * @param stored чтение значений из БД; отсутствующие в результате считаются равными 0
+     * @return значения по идентификаторам
+     */
+    public Map<Long, Long> readAll(Collection<Long> ids, Supplier<Map<Long, Long>> stored) {
+        while (true) {
+            long seq = commitSeq;
+            if ((seq & 1) != 0) {
+                // Пакет фиксируется: значение в БД может уже включать его, а может еще нет
+                commitDone.join();
+                continue;
+            }
+
+            Map<Long, Long> values = new HashMap<>(stored.get());
+            swapLock.readLock().lock();
+            try {
+                for (Long id : ids) {
+                    values.merge(id, sum(pending, id) + sum(inFlight, id), Long::sum);
+                }
+            } finally {
+                swapLock.readLock().unlock();
+            }
+
+            if (commitSeq == seq) {
+                return values;
+            }
+            // За время чтения пакет был зафиксирован - перечитываем
+        }
+    }
+
+    /**
+     * Забирает накопленные ненулевые изменения и передает их writer для записи в БД.
+     * Если writer бросил исключение, изменения возвращаются в буфер, а исключение пробрасывается.
+     * Одновременные вызовы выполняются по очереди.
+     *
+     * @param writer запись изменений (по идентификаторам) в БД; не вызывается, если изменений нет
+     */
+    public void flush(Writer writer) {
+        flushMutex.lock();
+        try {
+            Map<Long, Long> deltas = drain();
+            if (deltas.isEmpty()) {
+                // В inFlight только нулевые суммы - читателям перечитывать нечего
+                swapLock.writeLock().lock();
+                try {
+                    inFlight = Map.of();
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+                return;
+            }
+            boolean[] committing = new boolean[1];
+            try {
+                writer.write(deltas, () -> {
+                    if (!committing[0]) {
+                        committing[0] = true;
+                        beginCommit();
+                    }
+                });
+            } catch (RuntimeException e) {
+                finish(committing[0], true);
+                throw e;
+            }
+            finish(committing[0], false);
+        } finally {
+            flushMutex.unlock();
+        }
+    }
+
+    /**
+     * Переносит накопленные изменения в inFlight (до подтверждения они продолжают учитываться).
+     */
+    private Map<Long, Long> drain() {
+        Map<Long, LongAdder> drained;
+        swapLock.writeLock().lock();
+        try {
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+            inFlight = drained;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        Map<Long, Long> deltas = new HashMap<>();
+        drained.forEach((id, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        });
+        return deltas;
+    }
+
+    private void beginCommit() {
+        commitDone = new CompletableFuture<>();
+        commitSeq++;
+    }
+
+    /**
+     * Убирает пакет из буфера (или возвращает его в pending, если запись не удалась)
+     * и завершает фиксацию для ожидающих читателей.
+     */
+    private void finish(boolean committing, boolean failed) {
+        swapLock.writeLock().lock();
+        try {
+            if (failed) {
+                inFlight.forEach((id, adder) -> pending.computeIfAbsent(id, key -> new LongAdder()).add(adder.sum()));
+            }
+            inFlight = Map.of();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (!committing) {
+            // writer не вызвал beforeCommit: пакет мог попасть в БД незаметно для читателей,
+            // поэтому все начатые чтения перечитываются
+            commitSeq += 2;
+            return;
+        }
+        commitSeq++;
+        commitDone.complete(null);
+    }
+
+    private static long sum(Map<Long, LongAdder> map, Long id) {
+        LongAdder adder = map.get(id);
+        return adder == null ? 0 : adder.sum();
+    }
+}
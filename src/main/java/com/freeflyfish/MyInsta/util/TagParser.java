@@ -0,0 +1,74 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор хэштегов (#закат) и упоминаний (@alice) в тексте описания поста.
+ */
+public final class TagParser {
+
+    // Максимальное количество меток в одном посте, остальные игнорируются
+    public static final int MAX_TAGS_PER_POST = 30;
+
+    // Хэштег начинается не внутри слова (не "a#b") и состоит из букв, цифр и "_"
+    private static final Pattern HASHTAG = Pattern.compile("(?<![\\p{L}\\p{N}_&#])#([\\p{L}\\p{N}_]{1,100})");
+
+    // Упоминание начинается не внутри слова или e-mail (не "mail@host")
+    private static final Pattern MENTION = Pattern.compile("(?<![\\p{L}\\p{N}_.@])@([\\p{L}\\p{N}_.]{1,50})");
+
+    private TagParser() {
+    }
+
+    /**
+     * Извлекает метки из текста в порядке появления, без повторов.
+     * Метки приводятся к нижнему регистру; хэштеги из одних цифр (#1) не считаются.
+     *
+     * @param text текст описания (может быть null)
+     * @return метки вида "#закат" и "@alice"
+     */
+    public static Set<String> extract(String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return tags;
+        }
+        Matcher hashtags = HASHTAG.matcher(text);
+        while (hashtags.find() && tags.size() < MAX_TAGS_PER_POST) {
+            String name = hashtags.group(1);
+            if (!name.chars().allMatch(Character::isDigit)) {
+                tags.add("#" + name.toLowerCase(Locale.ROOT));
+            }
+        }
+        Matcher mentions = MENTION.matcher(text);
+        while (mentions.find() && tags.size() < MAX_TAGS_PER_POST) {
+            // Точка в конце - знак препинания, а не часть имени
+            String name = mentions.group(1).replaceAll("\\.+$", "");
+            if (!name.isEmpty()) {
+                tags.add("@" + name.toLowerCase(Locale.ROOT));
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Приводит метку из URL к виду, в котором она хранится:
+     * "Закат" и "#Закат" - хэштег "#закат", "@Alice" - упоминание "@alice".
+     *
+     * @param tag метка из запроса
+     * @return нормализованная метка или null, если она пустая
+     */
+    public static String normalize(String tag) {
+        if (tag == null) {
+            return null;
+        }
+        String trimmed = tag.trim().toLowerCase(Locale.ROOT);
+        if (trimmed.startsWith("@")) {
+            return trimmed.length() > 1 ? trimmed : null;
+        }
+        String name = trimmed.startsWith("#") ? trimmed.substring(1) : trimmed;
+        return name.isEmpty() ? null : "#" + name;
+    }
+}
@@ -0,0 +1,72 @@
+package com.freeflyfish.MyInsta.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничитель скорости "корзина токенов" (токен - один байт).
+ *
+ * Токены пополняются со скоростью ratePerSecond, но не больше capacity: после простоя
+ * можно сразу отправить до capacity байт, дальше - не быстрее заданной скорости.
+ * Корзина начинает работу заполненной.
+ */
+public class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double ratePerNano;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(long ratePerSecond, long capacity) {
+        this(ratePerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(long ratePerSecond, long capacity, LongSupplier nanoClock) {
+        if (ratePerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Скорость и емкость корзины должны быть положительными");
+        }
+        this.ratePerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.capacity = capacity;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Забирает до max токенов из накопленных.
+     *
+     * @return сколько удалось забрать (от 0 до max)
+     */
+    public synchronized long take(long max) {
+        refill();
+        long taken = (long) Math.min(max, Math.floor(tokens));
+        tokens -= taken;
+        return taken;
+    }
+
+    /**
+     * Возвращает токены, забранные, но не использованные.
+     */
+    public synchronized void giveBack(long amount) {
+        tokens = Math.min(capacity, tokens + amount);
+    }
+
+    /**
+     * Через сколько наносекунд накопится amount токенов (0 - уже накоплено).
+     * amount больше емкости не накопится никогда, поэтому ожидание считается до полной корзины.
+     */
+    public synchronized long nanosUntilAvailable(long amount) {
+        refill();
+        double missing = Math.min(amount, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / ratePerNano);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,117 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор идентификаторов, упорядоченных по времени (в духе TSID/Snowflake).
+ *
+ * Структура ID: 41 бит - миллисекунды от 2024-01-01 (до 2093 года), 5 бит - номер узла,
+ * 7 бит - счетчик внутри миллисекунды (до 128 ID в мс на узел). Всего 53 бита: ID меньше
+ * 2^53 и без потерь читается как число в JavaScript (Number.MAX_SAFE_INTEGER), поэтому
+ * в JSON его можно отдавать числом.
+ * ID, созданные позже, всегда больше, поэтому их можно использовать как ключ сортировки,
+ * а вставки в индекс идут "в конец", как и с последовательностью.
+ *
+ * Генерация без блокировок: состояние - одно AtomicLong с последним выданным ID,
+ * обновляемое через compareAndSet.
+ *
+ * Номер узла должен быть уникальным для каждого экземпляра приложения, иначе два экземпляра
+ * выдадут одинаковые ID в одной миллисекунде. Он задается при старте (myinsta.tsid.node,
+ * см. TsidConfig) через {@link #useNode}.
+ */
+public final class Tsid {
+
+    private static final Logger log = LoggerFactory.getLogger(Tsid.class);
+
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCH_MILLIS = 1704067200000L;
+
+    private static final int NODE_BITS = 5;
+    private static final int SEQUENCE_BITS = 7;
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+
+    // -1 - номер узла еще не задан
+    private static volatile long node = -1;
+    private static final AtomicLong LAST_ID = new AtomicLong();
+
+    private Tsid() {
+    }
+
+    /**
+     * Выдает следующий ID.
+     * Если счетчик в текущей миллисекунде исчерпан или часы ушли назад,
+     * генератор "занимает" следующую миллисекунду, сохраняя монотонность.
+     */
+    public static long next() {
+        long node = node();
+        while (true) {
+            long last = LAST_ID.get();
+            long lastTime = last >>> TIME_SHIFT;
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+
+            long next;
+            if (now > lastTime) {
+                next = (now << TIME_SHIFT) | (node << SEQUENCE_BITS);
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = ((lastTime + 1) << TIME_SHIFT) | (node << SEQUENCE_BITS);
+            }
+
+            if (LAST_ID.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Задает номер узла. Вызывается при старте, до выдачи первого ID.
+     *
+     * @param value номер узла от 0 до 31
+     * @throws IllegalArgumentException если номер вне диапазона
+     * @throws IllegalStateException    если ID уже выдавались с другим номером узла
+     */
+    public static synchronized void useNode(int value) {
+        if (value < 0 || value > NODE_MASK) {
+            throw new IllegalArgumentException("Номер узла должен быть от 0 до " + NODE_MASK + ": " + value);
+        }
+        if (node >= 0 && node != value && LAST_ID.get() != 0) {
+            throw new IllegalStateException("ID уже выдавались с номером узла " + node);
+        }
+        node = value;
+    }
+
+    /**
+     * Номер узла, которым помечаются ID (если не задан - см. {@link #fallbackNode}).
+     */
+    public static long node() {
+        long value = node;
+        return value >= 0 ? value : fallbackNode();
+    }
+
+    /**
+     * Номер узла, если он не задан явно: хэш имени хоста. У двух экземпляров он совпадает
+     * с вероятностью 1/32, поэтому годится только для единственного экземпляра.
+     */
+    private static synchronized long fallbackNode() {
+        if (node >= 0) {
+            return node;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "";
+        }
+        node = host.hashCode() & NODE_MASK;
+        log.warn("Номер узла для ID не задан (myinsta.tsid.node), взят хэш имени хоста: {}. "
+                + "При нескольких экземплярах приложения возможны дубликаты первичных ключей", node);
+        return node;
+    }
+}
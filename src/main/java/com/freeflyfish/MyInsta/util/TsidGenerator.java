@@ -0,0 +1,15 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Генератор Hibernate для полей, помеченных {@link TsidId}.
+ */
+public class TsidGenerator implements IdentifierGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return Tsid.next();
+    }
+}
@@ -0,0 +1,18 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает поле @Id, значение которого генерируется приложением через {@link Tsid}.
+ * В отличие от IDENTITY, ID известен до INSERT, поэтому Hibernate может отправлять вставки пакетами.
+ */
+@IdGeneratorType(TsidGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TsidId {
+}
@@ -0,0 +1,79 @@
+package com.freeflyfish.MyInsta;
+
+import com.freeflyfish.MyInsta.entity.Comment;
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.CommentRepository;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.repository.UserRepository;
+import com.freeflyfish.MyInsta.security.TokenService;
+import org.springframework.boot.test.context.TestComponent;
+
+/**
+ * Общие тестовые данные: пользователи, посты, комментарии и токены.
+ * Подключается к тесту через @Import(TestFixtures.class).
+ */
+@TestComponent
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final TokenService tokenService;
+
+    public TestFixtures(UserRepository userRepository, PostRepository postRepository,
+                        CommentRepository commentRepository, TokenService tokenService) {
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.tokenService = tokenService;
+    }
+
+    public User newUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        return userRepository.save(user);
+    }
+
+    /**
+     * Значение заголовка Authorization для пользователя.
+     */
+    public String bearer(User user) {
+        return "Bearer " + tokenService.issue(user.getId(), user.getUsername()).getToken();
+    }
+
+    public Post newPost(User author) {
+        return postRepository.save(post(author, "Пост", "Описание"));
+    }
+
+    /**
+     * Пост с одной фотографией (путь к файлу зависит от заголовка и описания).
+     */
+    public Post newPhotoPost(User author, String title, String caption) {
+        Post post = post(author, title, caption);
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setFilePath("photos/" + (title + caption).hashCode() + ".jpg");
+        mediaFile.setMediaType(MediaType.PHOTO);
+        post.addMediaFile(mediaFile);
+        return postRepository.save(post);
+    }
+
+    public Comment newComment(User author, Post post, String message) {
+        Comment comment = new Comment();
+        comment.setMessage(message);
+        comment.setUser(author);
+        comment.setPost(post);
+        return commentRepository.save(comment);
+    }
+
+    private static Post post(User author, String title, String caption) {
+        Post post = new Post();
+        post.setTitle(title);
+        post.setCaption(caption);
+        post.setUser(author);
+        return post;
+    }
+}
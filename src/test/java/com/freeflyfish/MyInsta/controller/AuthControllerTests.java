@@ -0,0 +1,123 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет вход по токену: вход выдает токен, изменения без токена или с поддельным
+ * токеном отклоняются, автор берется из токена, а чужое удалить нельзя.
+ * Занятое имя нельзя зарегистрировать повторно. Вход не зависит от фильтра Блума по именам.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class AuthControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void loginIssuesTokenThatIdentifiesTheAuthor() throws Exception {
+        register("token-author", "secret-password");
+        String token = login("token-author", "secret-password");
+        Post post = fixtures.newPost(fixtures.newUser("token-post-owner"));
+
+        String comment = "{\"message\":\"Привет\",\"postId\":" + post.getId() + "}";
+
+        mockMvc.perform(post("/api/comments").contentType(MediaType.APPLICATION_JSON).content(comment))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").exists());
+
+        // Подпись не сходится - токен отклоняется, даже если запрос сам по себе открытый
+        mockMvc.perform(get("/api/posts").header(HttpHeaders.AUTHORIZATION, "Bearer " + token + "x"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/comments").header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON).content(comment))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.comment.authorUsername").value("token-author"));
+
+        // Пост принадлежит другому пользователю
+        mockMvc.perform(delete("/api/posts/" + post.getId()).header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void wrongPasswordGetsNoToken() throws Exception {
+        register("token-guesser", "right-password");
+
+        mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"token-guesser\",\"password\":\"wrong-password\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.token").doesNotExist());
+    }
+
+    @Test
+    void userMissingFromUsernameFilterCanLogIn() throws Exception {
+        // Так выглядит пользователь, созданный другим экземпляром приложения: в нашем фильтре его нет
+        User user = new User();
+        user.setUsername("token-elsewhere");
+        user.setPassword(passwordEncoder.encode("elsewhere-password"));
+        userRepository.save(user);
+
+        login("token-elsewhere", "elsewhere-password");
+    }
+
+    @Test
+    void takenUsernameIsReportedAndCannotBeRegisteredTwice() throws Exception {
+        mockMvc.perform(get("/api/auth/username-available").param("username", "token-twin"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(true));
+
+        register("token-twin", "first-password");
+
+        mockMvc.perform(get("/api/auth/username-available").param("username", "token-twin"))
+                .andExpect(jsonPath("$.available").value(false));
+        mockMvc.perform(post("/api/auth/register").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"token-twin\",\"password\":\"second-password\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void register(String username, String password) throws Exception {
+        mockMvc.perform(post("/api/auth/register").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.token").exists());
+    }
+
+    private String login(String username, String password) throws Exception {
+        String response = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(response, "$.token");
+    }
+}
@@ -0,0 +1,87 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.Comment;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.service.CommentCountService;
+import com.freeflyfish.MyInsta.service.CommentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет удаление комментариев: счетчик поста уменьшается ровно один раз,
+ * даже если один и тот же комментарий удаляют одновременно или повторно.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class CommentControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private CommentCountService commentCountService;
+
+    @Test
+    void concurrentDeletesDecrementTheCounterOnce() throws Exception {
+        User author = fixtures.newUser("comment-deleter");
+        Post post = fixtures.newPost(author);
+        commentService.createComment(author, post, "Первый");
+        Comment comment = commentService.createComment(author, post, "Второй");
+        commentCountService.flush();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int deleted = 0;
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> commentService.deleteComment(comment.getId())));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                    deleted++;
+                } catch (ExecutionException e) {
+                    // Комментарий уже удален другим потоком
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(deleted).isEqualTo(1);
+        mockMvc.perform(delete("/api/comments/" + comment.getId()).header(HttpHeaders.AUTHORIZATION, fixtures.bearer(author)))
+                .andExpect(status().isNotFound());
+
+        commentCountService.flush();
+        assertThat(postRepository.findCommentCountById(post.getId())).contains(1L);
+    }
+}
@@ -0,0 +1,110 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет разбор Range при отдаче файла: суффиксный и перекрывающиеся диапазоны,
+ * неудовлетворимый запрос (416) и If-Range с другим ETag (весь файл, 200).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class FileRangeTests {
+
+    private static final String KEY = "photos/range-test.jpg";
+    // Меньше порога неблокирующей записи (48 КБ): MockMvc ее не поддерживает
+    private static final int SIZE = 40 * 1024;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MediaStorage mediaStorage;
+
+    private byte[] content;
+
+    @BeforeEach
+    void storeFile() throws Exception {
+        content = new byte[SIZE];
+        new Random(7).nextBytes(content);
+        Path source = Files.createTempFile("range", ".jpg");
+        Files.write(source, content);
+        mediaStorage.store(KEY, source, "image/jpeg");
+    }
+
+    @AfterEach
+    void deleteFile() throws Exception {
+        mediaStorage.delete(KEY);
+    }
+
+    @Test
+    void suffixRangeReturnsTheLastBytes() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/files/" + KEY).header(HttpHeaders.RANGE, "bytes=-500"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes " + (SIZE - 500) + "-" + (SIZE - 1) + "/" + SIZE))
+                .andReturn().getResponse();
+
+        assertThat(response.getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(content, SIZE - 500, SIZE));
+    }
+
+    @Test
+    void overlappingRangesAreServedAsSeparateParts() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/files/" + KEY).header(HttpHeaders.RANGE, "bytes=0-99,50-149"))
+                .andExpect(status().isPartialContent())
+                .andReturn().getResponse();
+
+        assertThat(response.getContentType()).startsWith("multipart/byteranges");
+        String body = new String(response.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertThat(body)
+                .contains("Content-Range: bytes 0-99/" + SIZE)
+                .contains("Content-Range: bytes 50-149/" + SIZE)
+                .contains(new String(Arrays.copyOfRange(content, 0, 100), StandardCharsets.ISO_8859_1))
+                .contains(new String(Arrays.copyOfRange(content, 50, 150), StandardCharsets.ISO_8859_1));
+
+        // Перекрытия больше размера файла - защита от усиления ответа
+        mockMvc.perform(get("/api/files/" + KEY).header(HttpHeaders.RANGE, "bytes=0-,0-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+    @Test
+    void rangeBeyondTheEndIsNotSatisfiable() throws Exception {
+        mockMvc.perform(get("/api/files/" + KEY).header(HttpHeaders.RANGE, "bytes=" + SIZE + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + SIZE));
+    }
+
+    @Test
+    void ifRangeMismatchReturnsTheWholeFile() throws Exception {
+        String etag = mockMvc.perform(get("/api/files/" + KEY)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletResponse stale = mockMvc.perform(get("/api/files/" + KEY)
+                        .header(HttpHeaders.RANGE, "bytes=0-99").header(HttpHeaders.IF_RANGE, "\"stale-etag\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andReturn().getResponse();
+        assertThat(stale.getContentAsByteArray()).isEqualTo(content);
+
+        mockMvc.perform(get("/api/files/" + KEY).header(HttpHeaders.RANGE, "bytes=0-99").header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-99/" + SIZE));
+    }
+}
@@ -0,0 +1,115 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет отдачу файлов с ограничением скорости на соединение: тело приходит целиком
+ * и не быстрее лимита, а диапазоны (в том числе multipart/byteranges) остаются корректными.
+ * Нужен настоящий Tomcat - MockMvc не поддерживает неблокирующую запись.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "myinsta.files.rate-limit.per-connection=100KB")
+class FileShapingTests {
+
+    private static final String KEY = "photos/shaping-test.jpg";
+    private static final int SIZE = 300 * 1024;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MediaStorage mediaStorage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private byte[] content;
+
+    @BeforeEach
+    void storeFile() throws Exception {
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        Path source = Files.createTempFile("shaping", ".jpg");
+        Files.write(source, content);
+        mediaStorage.store(KEY, source, "image/jpeg");
+    }
+
+    @AfterEach
+    void deleteFile() throws Exception {
+        mediaStorage.delete(KEY);
+    }
+
+    @Test
+    void wholeFileIsDeliveredNoFasterThanTheLimit() throws Exception {
+        Timer serveTimer = meterRegistry.get("myinsta.files.serve").timer();
+        Counter servedBytes = meterRegistry.get("myinsta.files.served.bytes").counter();
+        long servedBefore = serveTimer.count();
+        double servingTimeBefore = serveTimer.totalTime(TimeUnit.MILLISECONDS);
+        double bytesBefore = servedBytes.count();
+
+        long started = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request().build(), HttpResponse.BodyHandlers.ofByteArray());
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo(content);
+        // Первые 100 КБ уходят сразу (полная корзина), остальные 200 КБ - не быстрее 100 КБ/с
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(1500));
+
+        // Метрики пишутся по завершении неблокирующей записи, а не при выходе из контроллера
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (serveTimer.count() == servedBefore && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(serveTimer.count()).isEqualTo(servedBefore + 1);
+        assertThat(serveTimer.totalTime(TimeUnit.MILLISECONDS) - servingTimeBefore).isGreaterThanOrEqualTo(1500);
+        assertThat(servedBytes.count() - bytesBefore).isEqualTo(SIZE);
+    }
+
+    @Test
+    void rangesAreServedCorrectlyUnderTheLimit() throws Exception {
+        HttpResponse<byte[]> single = client.send(request().header("Range", "bytes=1000-1999").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(single.statusCode()).isEqualTo(206);
+        assertThat(single.body()).isEqualTo(Arrays.copyOfRange(content, 1000, 2000));
+
+        HttpResponse<byte[]> multi = client.send(request().header("Range", "bytes=0-9,100000-100009").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(multi.statusCode()).isEqualTo(206);
+        String body = new String(multi.body(), StandardCharsets.ISO_8859_1);
+        assertThat(body)
+                .contains("Content-Range: bytes 0-9/" + SIZE)
+                .contains("Content-Range: bytes 100000-100009/" + SIZE)
+                .contains(new String(Arrays.copyOfRange(content, 0, 10), StandardCharsets.ISO_8859_1))
+                .contains(new String(Arrays.copyOfRange(content, 100000, 100010), StandardCharsets.ISO_8859_1))
+                .endsWith("--\r\n");
+    }
+
+    private HttpRequest.Builder request() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/files/" + KEY)).GET();
+    }
+}
@@ -0,0 +1,89 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет отдачу крупных локальных файлов коннектором без sendfile (как с TLS) и без
+ * ограничения скорости: тело пишется неблокирующей записью, а не копированием в потоке
+ * запроса, и приходит целиком - и весь файл, и несколько крупных диапазонов.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FileWithoutSendfileTests {
+
+    private static final String KEY = "photos/no-sendfile-test.jpg";
+    private static final int SIZE = 300 * 1024;
+
+    @TestConfiguration
+    static class DisableSendfile {
+        @Bean
+        TomcatConnectorCustomizer disableSendfile() {
+            return connector -> connector.setProperty("useSendfile", "false");
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MediaStorage mediaStorage;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private byte[] content;
+
+    @BeforeEach
+    void storeFile() throws Exception {
+        content = new byte[SIZE];
+        new Random(11).nextBytes(content);
+        Path source = Files.createTempFile("no-sendfile", ".jpg");
+        Files.write(source, content);
+        mediaStorage.store(KEY, source, "image/jpeg");
+    }
+
+    @AfterEach
+    void deleteFile() throws Exception {
+        mediaStorage.delete(KEY);
+    }
+
+    @Test
+    void largeBodiesAreDeliveredWhole() throws Exception {
+        HttpResponse<byte[]> whole = client.send(request().build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(whole.statusCode()).isEqualTo(200);
+        assertThat(whole.body()).isEqualTo(content);
+
+        HttpResponse<byte[]> multi = client.send(request().header("Range", "bytes=0-99999,200000-299999").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(multi.statusCode()).isEqualTo(206);
+        String body = new String(multi.body(), StandardCharsets.ISO_8859_1);
+        assertThat(body)
+                .contains("Content-Range: bytes 0-99999/" + SIZE)
+                .contains("Content-Range: bytes 200000-299999/" + SIZE)
+                .contains(new String(Arrays.copyOfRange(content, 0, 100000), StandardCharsets.ISO_8859_1))
+                .contains(new String(Arrays.copyOfRange(content, 200000, 300000), StandardCharsets.ISO_8859_1))
+                .endsWith("--\r\n");
+    }
+
+    private HttpRequest.Builder request() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/files/" + KEY)).GET();
+    }
+}
@@ -0,0 +1,139 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.service.LikeCountService;
+import com.freeflyfish.MyInsta.service.LikeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет лайки: повторный лайк не увеличивает счетчик, "лайкнул ли я" зависит
+ * от пользователя запроса, а счетчик сходится с БД после пакетной записи
+ * и восстанавливается пересчетом по post_likes после потери незаписанных изменений.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class LikeControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private LikeService likeService;
+
+    @Autowired
+    private LikeCountService likeCountService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void likeIsIdempotentAndVisibleOnlyToTheLiker() throws Exception {
+        User author = fixtures.newUser("like-author");
+        Post post = fixtures.newPost(author);
+        String auth = fixtures.bearer(fixtures.newUser("like-fan"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(put("/api/posts/" + post.getId() + "/like").header(HttpHeaders.AUTHORIZATION, auth))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.liked").value(true))
+                    .andExpect(jsonPath("$.likeCount").value(1));
+        }
+
+        mockMvc.perform(get("/api/posts/" + post.getId()).header(HttpHeaders.AUTHORIZATION, auth))
+                .andExpect(jsonPath("$.likeCount").value(1))
+                .andExpect(jsonPath("$.likedByMe").value(true));
+        mockMvc.perform(get("/api/posts/" + post.getId()).header(HttpHeaders.AUTHORIZATION, fixtures.bearer(author)))
+                .andExpect(jsonPath("$.likeCount").value(1))
+                .andExpect(jsonPath("$.likedByMe").value(false));
+
+        likeCountService.flush();
+        assertThat(postRepository.findLikeCountById(post.getId())).contains(1L);
+        // После записи в БД закэшированный пост не должен считать лайк дважды
+        mockMvc.perform(get("/api/posts/" + post.getId()))
+                .andExpect(jsonPath("$.likeCount").value(1))
+                .andExpect(jsonPath("$.likedByMe").value(false));
+
+        mockMvc.perform(delete("/api/posts/" + post.getId() + "/like").header(HttpHeaders.AUTHORIZATION, auth))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.liked").value(false))
+                .andExpect(jsonPath("$.likeCount").value(0));
+    }
+
+    @Test
+    void concurrentLikesOfOnePostAreAllCounted() throws Exception {
+        Post post = fixtures.newPost(fixtures.newUser("viral-author"));
+        List<User> fans = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            fans.add(fixtures.newUser("viral-fan-" + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (User fan : fans) {
+                // Каждый ставит лайк дважды - второй раз не должен учитываться
+                results.add(executor.submit(() -> likeService.like(post.getId(), fan.getId())));
+                results.add(executor.submit(() -> likeService.like(post.getId(), fan.getId())));
+            }
+            long added = 0;
+            for (Future<Boolean> result : results) {
+                added += result.get() ? 1 : 0;
+            }
+            assertThat(added).isEqualTo(fans.size());
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(likeService.getLikeCount(post.getId())).isEqualTo(fans.size());
+        likeCountService.flush();
+        assertThat(postRepository.findLikeCountById(post.getId())).contains((long) fans.size());
+    }
+
+    @Test
+    void recountRestoresLikesLostWithTheBuffer() {
+        Post post = fixtures.newPost(fixtures.newUser("recount-author"));
+        likeService.like(post.getId(), fixtures.newUser("recount-fan-1").getId());
+        likeService.like(post.getId(), fixtures.newUser("recount-fan-2").getId());
+        likeCountService.flush();
+        // Как после аварийной остановки: часть изменений до БД не дошла
+        jdbcTemplate.update("update posts set like_count = 0 where id = ?", post.getId());
+
+        new LikeCountService(postRepository, jdbcTemplate, transactionTemplate, true).recountIfRequested();
+
+        assertThat(postRepository.findLikeCountById(post.getId())).contains(2L);
+    }
+}
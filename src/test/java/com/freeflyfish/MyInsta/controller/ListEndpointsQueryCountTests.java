@@ -0,0 +1,172 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет, что списочные эндпоинты загружают авторов и медиафайлы
+ * фиксированным числом SQL-запросов, независимо от размера страницы (нет N+1):
+ * для одного и для многих элементов (с медиафайлами и комментариями) запросов столько же.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListEndpointsQueryCountTests {
+
+    private static final int POSTS = 60;
+    private static final int MEDIA_PER_POST = 3;
+    // Постов у "плодовитого" автора - против одного поста у остальных авторов
+    private static final int PROLIFIC_POSTS = 10;
+
+    // Верхняя граница запросов на один списочный эндпоинт
+    private static final long MAX_STATEMENTS_PER_REQUEST = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long firstPostId;
+    private Long secondPostId;
+    private Long commenterId;
+    private Long singlePostAuthorId;
+    private Long prolificAuthorId;
+
+    @BeforeAll
+    void seed() {
+        User commenter = fixtures.newUser("commenter");
+        commenterId = commenter.getId();
+
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < POSTS; i++) {
+            User author = fixtures.newUser("author" + i);
+
+            Post post = new Post();
+            post.setTitle("Post " + i);
+            post.setCaption("Caption " + i);
+            post.setUser(author);
+            for (int m = 0; m < MEDIA_PER_POST; m++) {
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setFilePath("uploads/photos/" + i + "-" + m + ".jpg");
+                mediaFile.setMediaType(MediaType.PHOTO);
+                post.addMediaFile(mediaFile);
+            }
+            posts.add(postRepository.save(post));
+        }
+        firstPostId = posts.get(0).getId();
+        secondPostId = posts.get(1).getId();
+
+        // Комментарии разных авторов к одному посту и одного автора к разным постам
+        for (int i = 0; i < POSTS; i++) {
+            User author = posts.get(i).getUser();
+            fixtures.newComment(author, posts.get(0), "Comment by " + author.getUsername());
+            fixtures.newComment(commenter, posts.get(i), "Comment by " + commenter.getUsername());
+        }
+
+        // Авторы только для сравнения постов пользователя: другие тесты их не запрашивают,
+        // поэтому оба запроса идут с одинаково холодными кэшами
+        singlePostAuthorId = seedAuthor("single-post-author", 1, commenter);
+        prolificAuthorId = seedAuthor("prolific-author", PROLIFIC_POSTS, commenter);
+    }
+
+    private Long seedAuthor(String username, int postCount, User commenter) {
+        User author = fixtures.newUser(username);
+        for (int i = 0; i < postCount; i++) {
+            Post post = new Post();
+            post.setTitle(username + " post " + i);
+            post.setCaption("Caption " + i);
+            post.setUser(author);
+            for (int m = 0; m < MEDIA_PER_POST; m++) {
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setFilePath("photos/" + username + "-" + i + "-" + m + ".jpg");
+                mediaFile.setMediaType(MediaType.PHOTO);
+                post.addMediaFile(mediaFile);
+            }
+            post = postRepository.save(post);
+            fixtures.newComment(commenter, post, "Comment by " + commenter.getUsername());
+        }
+        return author.getId();
+    }
+
+    @Test
+    void feedPageUsesConstantNumberOfQueries() throws Exception {
+        long small = countStatements("/api/posts?limit=5");
+        long large = countStatements("/api/posts?limit=50");
+
+        assertThat(large).isEqualTo(small);
+        assertThat(large).isLessThanOrEqualTo(MAX_STATEMENTS_PER_REQUEST);
+    }
+
+    @Test
+    void postsByUserUseConstantNumberOfQueries() throws Exception {
+        // Один пост против десяти - у каждого медиафайлы и комментарий
+        long single = countStatements("/api/posts/user/" + singlePostAuthorId);
+        long many = countStatements("/api/posts/user/" + prolificAuthorId);
+
+        assertThat(many).isEqualTo(single);
+        assertThat(many).isLessThanOrEqualTo(MAX_STATEMENTS_PER_REQUEST);
+    }
+
+    @Test
+    void commentsByPostUseConstantNumberOfQueries() throws Exception {
+        // Один комментарий против комментариев всех авторов
+        long single = countStatements("/api/comments/post/" + secondPostId);
+        long many = countStatements("/api/comments/post/" + firstPostId);
+
+        assertThat(many).isEqualTo(single);
+        assertThat(many).isLessThanOrEqualTo(MAX_STATEMENTS_PER_REQUEST);
+    }
+
+    @Test
+    void commentsByUserUseConstantNumberOfQueries() throws Exception {
+        // У автора1 один комментарий, у комментатора - по одному к каждому посту
+        long single = countStatements("/api/comments/user/" + userRepository.findByUsername("author1").orElseThrow().getId());
+        long many = countStatements("/api/comments/user/" + commenterId);
+
+        assertThat(many).isEqualTo(single);
+        assertThat(many).isLessThanOrEqualTo(MAX_STATEMENTS_PER_REQUEST);
+    }
+
+    private long countStatements(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,81 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет, что /actuator/prometheus открыт без токена и отдает метрики эндпоинтов,
+ * запросов к БД, пула соединений и отдачи файлов.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void prometheusEndpointExposesHotPathMetrics() throws Exception {
+        mockMvc.perform(get("/api/posts")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/files/photos/missing.jpg")).andExpect(status().isNotFound());
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(metrics)
+                .contains("http_server_requests_seconds_bucket")
+                .contains("myinsta_http_server_queries_count{method=\"GET\",uri=\"/api/posts\"}")
+                .contains("hikaricp_connections_acquire_seconds")
+                .contains("hibernate_statements_total")
+                .contains("myinsta_files_served_bytes_total")
+                .contains("myinsta_media_upload_seconds");
+    }
+
+    @Test
+    void streamQueriesAreRecordedOnceWhenTheResponseCompletes() throws Exception {
+        User author = fixtures.newUser("metrics-stream");
+        fixtures.newPost(author);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        MvcResult started = mockMvc.perform(get("/api/posts/user/" + author.getId() + "/stream")).andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        // Страницы читаются в потоке StreamingResponseBody, а не в потоке запроса
+        DistributionSummary queries = meterRegistry.get("myinsta.http.server.queries")
+                .tag("uri", "/api/posts/user/{userId}/stream")
+                .summary();
+        assertThat(queries.count()).isEqualTo(1);
+        assertThat(queries.totalAmount()).isEqualTo((double) statistics.getPrepareStatementCount());
+    }
+}
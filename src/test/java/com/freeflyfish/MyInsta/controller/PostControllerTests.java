@@ -0,0 +1,49 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.service.PostService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет ошибки ленты: поврежденный курсор - ошибка клиента (400),
+ * а сбой БД при чтении ленты - ошибка сервера (500), а не 400.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PostControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoSpyBean
+    private PostService postService;
+
+    @Test
+    void brokenCursorIsABadRequest() throws Exception {
+        mockMvc.perform(get("/api/posts").param("before", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Некорректный курсор: not-a-cursor"));
+    }
+
+    @Test
+    void databaseFailureIsAServerError() throws Exception {
+        doThrow(new DataAccessResourceFailureException("Нет соединения с БД"))
+                .when(postService).getFeedPage(any(), anyInt());
+
+        mockMvc.perform(get("/api/posts"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.type").value("DataAccessResourceFailureException"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет /api/search: поиск по заголовку, описанию и комментариям и постраничную выдачу.
+ * Тесты идут на H2, где вместо индекса tsvector используется поиск по подстроке.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SearchControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @BeforeAll
+    void seed() {
+        User author = fixtures.newUser("searcher");
+
+        fixtures.newPhotoPost(author, "Закат на море", "Лучший вечер лета");
+        fixtures.newPhotoPost(author, "Горы", "Поход на закат солнца");
+        Post commented = fixtures.newPhotoPost(author, "Кофе", "Утро");
+        for (int i = 0; i < 3; i++) {
+            fixtures.newPhotoPost(author, "Пейзаж " + i, "Пейзаж без подписи");
+        }
+
+        fixtures.newComment(author, commented, "Какой красивый закат было вчера");
+    }
+
+    @Test
+    void findsPostsByTitleCaptionAndComments() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "ЗАКАТ"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(3)))
+                .andExpect(jsonPath("$.posts[*].title").value(containsInAnyOrder("Закат на море", "Горы", "Кофе")))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void paginatesResults() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "пейзаж").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.hasMore").value(true));
+
+        mockMvc.perform(get("/api/search").param("q", "пейзаж").param("size", "2").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(1)))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void rejectsBlankQuery() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "  "))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,74 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.service.LikeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Проверяет, что потоковая выдача пишется в собственном ограниченном пуле (WebConfig):
+ * пока единственный поток занят медленным клиентом, следующий запрос сразу получает 503,
+ * а не ждет в очереди. Нужен настоящий сервер - MockMvc не выполняет повторную
+ * диспетчеризацию, когда пул отказал в задаче.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"myinsta.streams.threads=1", "myinsta.streams.queue-capacity=0"})
+@Import(TestFixtures.class)
+class StreamLimitTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @MockitoSpyBean
+    private LikeService likeService;
+
+    @Test
+    void streamsBeyondThePoolAreRejected() throws Exception {
+        User author = fixtures.newUser("limit-author");
+        fixtures.newPost(author);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(likeService).applyLikes(anyList(), any());
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/posts/user/" + author.getId() + "/stream")).build();
+        CompletableFuture<HttpResponse<String>> slow = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+
+        HttpResponse<String> rejected = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(rejected.statusCode()).isEqualTo(503);
+        assertThat(rejected.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("application/json"));
+        assertThat(rejected.body()).contains("\"error\"");
+
+        release.countDown();
+        HttpResponse<String> completed = slow.get(10, TimeUnit.SECONDS);
+        assertThat(completed.statusCode()).isEqualTo(200);
+        assertThat(completed.body().lines()).hasSize(1);
+    }
+}
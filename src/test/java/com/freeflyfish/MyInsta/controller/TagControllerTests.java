@@ -0,0 +1,91 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.service.TagService;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет посты по хэштегу/упоминанию с курсорной пагинацией и популярные хэштеги.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TagControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private TagService tagService;
+
+    @BeforeAll
+    void seed() {
+        User author = fixtures.newUser("tagger");
+
+        for (int i = 0; i < 5; i++) {
+            newPost(author, "Закат номер " + i + " #ЗакатТест #морескоп");
+        }
+        newPost(author, "Прогулка с @Tagger_Friend #морескоп");
+    }
+
+    @Test
+    void paginatesPostsByHashtagWithCursor() throws Exception {
+        String firstPage = mockMvc.perform(get("/api/tags/закаттест/posts").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(3)))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+        assertThat(cursor).isNotNull();
+
+        mockMvc.perform(get("/api/tags/{tag}/posts", "#ЗакатТест").param("limit", "3").param("before", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").value(nullValue()));
+    }
+
+    @Test
+    void findsPostsByMention() throws Exception {
+        mockMvc.perform(get("/api/tags/@tagger_friend/posts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts", hasSize(1)))
+                .andExpect(jsonPath("$.posts[0].caption").value("Прогулка с @Tagger_Friend #морескоп"));
+    }
+
+    @Test
+    void reportsTrendingHashtagsFromTheWindow() throws Exception {
+        String response = mockMvc.perform(get("/api/tags/trending").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<String> tags = JsonPath.read(response, "$[*].tag");
+        assertThat(tags).containsSubsequence("#морескоп", "#закаттест");
+        List<Integer> counts = JsonPath.read(response, "$[?(@.tag == '#морескоп')].postCount");
+        assertThat(counts).containsExactly(6);
+    }
+
+    private void newPost(User author, String caption) {
+        tagService.indexPost(fixtures.newPhotoPost(author, "Тег", caption));
+    }
+}
@@ -0,0 +1,163 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.UserRepository;
+import com.freeflyfish.MyInsta.service.TimelineService;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет домашнюю ленту: посты обычных авторов (разосланные при публикации)
+ * и популярных (подмешанные при чтении) идут вместе от новых к старым и листаются
+ * курсором без пропусков и повторов; встречные подписки не блокируют друг друга,
+ * а одновременные повторные подписки и отписки меняют счетчики ровно один раз.
+ */
+@SpringBootTest(properties = "myinsta.timeline.celebrity-threshold=2")
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class TimelineControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void timelineMergesFannedOutAndCelebrityPostsNewestFirst() throws Exception {
+        User reader = fixtures.newUser("timeline-reader");
+        User regular = fixtures.newUser("timeline-regular");
+        User celebrity = fixtures.newUser("timeline-celebrity");
+
+        follow(reader, regular);
+        follow(reader, celebrity);
+        // Второй подписчик делает автора популярным (порог в тесте - 2)
+        follow(fixtures.newUser("timeline-fan"), celebrity);
+
+        publish(regular, "R1");
+        publish(celebrity, "C1");
+        publish(regular, "R2");
+        publish(celebrity, "C2");
+        publish(regular, "R3");
+
+        List<String> titles = new ArrayList<>();
+        String cursor = null;
+        do {
+            String url = "/api/users/" + reader.getId() + "/timeline?limit=2" + (cursor == null ? "" : "&before=" + cursor);
+            String page = mockMvc.perform(get(url)).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            titles.addAll(JsonPath.read(page, "$.posts[*].title"));
+            cursor = JsonPath.read(page, "$.nextCursor");
+        } while (cursor != null);
+
+        assertThat(titles).containsExactly("R3", "C2", "R2", "C1", "R1");
+
+        // После отписки посты обычного автора убираются из ленты
+        timelineService.unfollow(reader.getId(), regular.getId());
+        String page = mockMvc.perform(get("/api/users/" + reader.getId() + "/timeline"))
+                .andReturn().getResponse().getContentAsString();
+        List<String> remaining = JsonPath.read(page, "$.posts[*].title");
+        assertThat(remaining).containsExactly("C2", "C1");
+    }
+
+    @Test
+    void mutualFollowsAtTheSameTimeBothSucceed() throws Exception {
+        List<User[]> pairs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            pairs.add(new User[]{fixtures.newUser("mutual-a-" + i), fixtures.newUser("mutual-b-" + i)});
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (User[] pair : pairs) {
+                results.add(executor.submit(follows(pair[0], pair[1])));
+                results.add(executor.submit(follows(pair[1], pair[0])));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (User[] pair : pairs) {
+            for (User user : pair) {
+                User stored = userRepository.findById(user.getId()).orElseThrow();
+                assertThat(stored.getFollowerCount()).isEqualTo(1);
+                assertThat(stored.getFollowingCount()).isEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    void repeatedFollowsAndUnfollowsAtTheSameTimeCountOnce() throws Exception {
+        User follower = fixtures.newUser("repeat-follower");
+        User followee = fixtures.newUser("repeat-followee");
+
+        assertThat(runConcurrently(8, follows(follower, followee))).containsOnlyOnce(true);
+        assertThat(userRepository.findById(followee.getId()).orElseThrow().getFollowerCount()).isEqualTo(1);
+        assertThat(userRepository.findById(follower.getId()).orElseThrow().getFollowingCount()).isEqualTo(1);
+
+        Callable<Boolean> unfollow = () -> timelineService.unfollow(follower.getId(), followee.getId());
+        assertThat(runConcurrently(8, unfollow)).containsOnlyOnce(true);
+        assertThat(userRepository.findById(followee.getId()).orElseThrow().getFollowerCount()).isZero();
+        assertThat(userRepository.findById(follower.getId()).orElseThrow().getFollowingCount()).isZero();
+    }
+
+    private static List<Boolean> runConcurrently(int times, Callable<Boolean> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(times);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < times; i++) {
+                futures.add(executor.submit(task));
+            }
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Callable<Boolean> follows(User follower, User followee) {
+        return () -> timelineService.follow(follower.getId(), followee.getId());
+    }
+
+    private void follow(User follower, User followee) throws Exception {
+        mockMvc.perform(post("/api/users/" + followee.getId() + "/follow")
+                        .header(HttpHeaders.AUTHORIZATION, fixtures.bearer(follower)))
+                .andExpect(status().isCreated());
+    }
+
+    private void publish(User author, String title) {
+        timelineService.fanOutPost(fixtures.newPhotoPost(author, title, "Описание"));
+    }
+}
@@ -0,0 +1,194 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.MediaBlobRepository;
+import com.freeflyfish.MyInsta.repository.MediaFileRepository;
+import com.freeflyfish.MyInsta.repository.UploadSessionRepository;
+import com.freeflyfish.MyInsta.service.PostService;
+import com.freeflyfish.MyInsta.storage.MediaStorage;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет протокол докачиваемой загрузки: части с неверным смещением отклоняются
+ * с текущим смещением, после возобновления файл собирается и становится медиафайлом поста.
+ * Сессия доступна только по токену ее владельца. Одинаковое содержимое хранится один раз
+ * и удаляется вместе с последним ссылающимся на него постом.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+class UploadControllerTests {
+
+    private static final MediaType CHUNK = MediaType.parseMediaType("application/offset+octet-stream");
+
+    @TempDir
+    static Path uploadsDir;
+
+    @DynamicPropertySource
+    static void uploadDirectories(DynamicPropertyRegistry registry) {
+        registry.add("myinsta.storage.local.root", () -> uploadsDir.resolve("storage").toString());
+        registry.add("myinsta.storage.temp-dir", () -> uploadsDir.resolve("storage/tmp").toString());
+        registry.add("myinsta.upload.session-dir", () -> uploadsDir.resolve("storage/tmp/sessions").toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MediaFileRepository mediaFileRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private MediaBlobRepository mediaBlobRepository;
+
+    @Autowired
+    private MediaStorage mediaStorage;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void resumesAfterWrongOffsetAndCreatesPostOnComplete() throws Exception {
+        User author = fixtures.newUser("uploader");
+        String auth = fixtures.bearer(author);
+        byte[] video = mp4(300_000);
+
+        String uploadId = createUpload(auth, "clip.mp4", video.length);
+
+        // Без токена и с чужим токеном сессии не видно
+        mockMvc.perform(head("/api/uploads/" + uploadId))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(head("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, fixtures.bearer(fixtures.newUser("stranger"))))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(patch("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, auth).contentType(CHUNK)
+                        .header("Upload-Offset", 0).content(Arrays.copyOfRange(video, 0, 120_000)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("Upload-Offset", "120000"));
+
+        // Повтор уже полученной части: сервер сообщает, откуда продолжать
+        mockMvc.perform(patch("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, auth).contentType(CHUNK)
+                        .header("Upload-Offset", 0).content(Arrays.copyOfRange(video, 0, 120_000)))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Upload-Offset", "120000"));
+
+        mockMvc.perform(head("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, auth))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Upload-Offset", "120000"))
+                .andExpect(header().string("Upload-Length", String.valueOf(video.length)));
+
+        // Незавершенную загрузку нельзя прикрепить к посту
+        mockMvc.perform(post("/api/uploads/" + uploadId + "/complete").header(HttpHeaders.AUTHORIZATION, auth))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, auth).contentType(CHUNK)
+                        .header("Upload-Offset", 120_000).content(Arrays.copyOfRange(video, 120_000, video.length)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("Upload-Offset", String.valueOf(video.length)));
+
+        String response = mockMvc.perform(post("/api/uploads/" + uploadId + "/complete").header(HttpHeaders.AUTHORIZATION, auth)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Видео\",\"caption\":\"Длинное\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.post.mediaFiles[0].mediaType").value("VIDEO"))
+                .andReturn().getResponse().getContentAsString();
+
+        Number postId = JsonPath.read(response, "$.post.id");
+        MediaFile mediaFile = mediaFileRepository.findByPostIdOrderByPositionAsc(postId.longValue()).get(0);
+        assertThat(mediaFile.getFileSize()).isEqualTo(video.length);
+        assertThat(mediaFile.getFilePath()).startsWith("videos/").endsWith(".mp4");
+        assertThat(uploadSessionRepository.existsById(uploadId)).isFalse();
+    }
+
+    @Test
+    void rejectsContentThatDoesNotMatchTheFileName() throws Exception {
+        String auth = fixtures.bearer(fixtures.newUser("spoofer"));
+        byte[] text = new byte[4096];
+        Arrays.fill(text, (byte) 'a');
+
+        String uploadId = createUpload(auth, "movie.mp4", text.length);
+        mockMvc.perform(patch("/api/uploads/" + uploadId).header(HttpHeaders.AUTHORIZATION, auth).contentType(CHUNK)
+                        .header("Upload-Offset", 0).content(text))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/api/uploads/" + uploadId + "/complete").header(HttpHeaders.AUTHORIZATION, auth))
+                .andExpect(status().isBadRequest());
+        assertThat(uploadSessionRepository.existsById(uploadId)).isTrue();
+    }
+
+    @Test
+    void sharedContentIsDeletedWithTheLastPost() throws Exception {
+        User author = fixtures.newUser("reposter");
+        byte[] video = mp4(50_000);
+        Post first = postService.createPost(author, "Первый", "", new MultipartFile[]{videoFile(video)});
+        Post second = postService.createPost(author, "Второй", "", new MultipartFile[]{videoFile(video)});
+
+        MediaFile mediaFile = mediaFileRepository.findByPostIdOrderByPositionAsc(first.getId()).get(0);
+        String hash = mediaFile.getContentHash();
+        assertThat(mediaFileRepository.findByPostIdOrderByPositionAsc(second.getId()).get(0).getFilePath())
+                .isEqualTo(mediaFile.getFilePath());
+        assertThat(mediaBlobRepository.findById(hash)).get().extracting("refCount").isEqualTo(2L);
+
+        postService.deletePost(first.getId());
+        assertThat(mediaStorage.exists(mediaFile.getFilePath())).isTrue();
+        assertThat(mediaBlobRepository.findById(hash)).get().extracting("refCount").isEqualTo(1L);
+
+        postService.deletePost(second.getId());
+        assertThat(mediaStorage.exists(mediaFile.getFilePath())).isFalse();
+        assertThat(mediaBlobRepository.existsById(hash)).isFalse();
+    }
+
+    private static MockMultipartFile videoFile(byte[] content) {
+        return new MockMultipartFile("files", "clip.mp4", "video/mp4", content);
+    }
+
+    private String createUpload(String auth, String fileName, long size) throws Exception {
+        String response = mockMvc.perform(post("/api/uploads").header(HttpHeaders.AUTHORIZATION, auth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fileName\":\"" + fileName + "\",\"size\":" + size + "}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Upload-Offset", "0"))
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(response, "$.uploadId");
+    }
+
+    private static byte[] mp4(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        byte[] header = {0, 0, 0, 0x20, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0, 0, 0};
+        System.arraycopy(header, 0, content, 0, header.length);
+        return content;
+    }
+}
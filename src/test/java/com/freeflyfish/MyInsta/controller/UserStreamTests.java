@@ -0,0 +1,194 @@
+package com.freeflyfish.MyInsta.controller;
+
+import com.freeflyfish.MyInsta.TestFixtures;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freeflyfish.MyInsta.entity.Comment;
+import com.freeflyfish.MyInsta.entity.MediaFile;
+import com.freeflyfish.MyInsta.entity.MediaType;
+import com.freeflyfish.MyInsta.entity.Post;
+import com.freeflyfish.MyInsta.entity.User;
+import com.freeflyfish.MyInsta.repository.CommentRepository;
+import com.freeflyfish.MyInsta.repository.PostRepository;
+import com.freeflyfish.MyInsta.service.LikeService;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет потоковую выдачу постов и комментариев пользователя в формате NDJSON:
+ * отдается вся история (больше одной пачки) в порядке "новые первыми", с медиафайлами,
+ * а число SQL-запросов растет с количеством пачек, а не записей. Пока пачка пишется
+ * клиенту, соединение с БД не удерживается.
+ */
+@SpringBootTest
+@Import(TestFixtures.class)
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserStreamTests {
+
+    // Больше двух пачек по 100, последняя неполная
+    private static final int ITEMS = 250;
+    private static final int MEDIA_PER_POST = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    // Лайки применяются к уже прочитанной пачке перед записью в ответ
+    @MockitoSpyBean
+    private LikeService likeService;
+
+    private Long authorId;
+
+    @BeforeAll
+    void seed() {
+        User author = fixtures.newUser("stream-author");
+        authorId = author.getId();
+
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Post post = new Post();
+            post.setTitle("Post " + i);
+            post.setCaption("Caption " + i);
+            post.setUser(author);
+            for (int m = 0; m < MEDIA_PER_POST; m++) {
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setFilePath("photos/stream-" + i + "-" + m + ".jpg");
+                mediaFile.setMediaType(MediaType.PHOTO);
+                post.addMediaFile(mediaFile);
+            }
+            posts.add(post);
+        }
+        posts = postRepository.saveAll(posts);
+
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            Comment comment = new Comment();
+            comment.setMessage("Comment " + i);
+            comment.setUser(author);
+            comment.setPost(posts.get(i));
+            comments.add(comment);
+        }
+        commentRepository.saveAll(comments);
+    }
+
+    @Test
+    void postsAreStreamedAsNdjsonNewestFirst() throws Exception {
+        Statistics statistics = statistics();
+        List<JsonNode> lines = stream("/api/posts/user/" + authorId + "/stream");
+
+        assertThat(lines).hasSize(ITEMS);
+        assertThat(createdDates(lines)).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(lines).allSatisfy(line -> {
+            assertThat(line.get("authorUsername").asText()).isEqualTo("stream-author");
+            assertThat(line.get("mediaFiles")).hasSize(MEDIA_PER_POST);
+        });
+        // Поиск пользователя плюс страница, догрузка медиафайлов и их копий на каждую пачку
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1 + 3 * 3);
+    }
+
+    @Test
+    void connectionIsReleasedWhileBatchIsWritten() throws Exception {
+        List<Integer> activeConnections = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            activeConnections.add(dataSource.getHikariPoolMXBean().getActiveConnections());
+            return invocation.callRealMethod();
+        }).when(likeService).applyLikes(anyList(), any());
+
+        assertThat(stream("/api/posts/user/" + authorId + "/stream")).hasSize(ITEMS);
+        assertThat(activeConnections).hasSize(3).containsOnly(0);
+    }
+
+    @Test
+    void commentsAreStreamedAsNdjsonNewestFirst() throws Exception {
+        List<JsonNode> lines = stream("/api/comments/user/" + authorId + "/stream");
+
+        assertThat(lines).hasSize(ITEMS);
+        assertThat(createdDates(lines)).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(lines).allSatisfy(line -> assertThat(line.get("postId").isNumber()).isTrue());
+    }
+
+    @Test
+    void unknownUserGetsJsonError() throws Exception {
+        for (String url : List.of("/api/posts/user/999999/stream", "/api/comments/user/999999/stream")) {
+            MvcResult started = mockMvc.perform(get(url)).andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.error").exists());
+        }
+    }
+
+    private List<JsonNode> stream(String url) throws Exception {
+        MvcResult started = mockMvc.perform(get(url))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(org.springframework.http.MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertThat(body).endsWith("\n");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private List<LocalDateTime> createdDates(List<JsonNode> lines) {
+        return lines.stream().map(line -> LocalDateTime.parse(line.get("createdDate").asText())).toList();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,180 @@
+package com.freeflyfish.MyInsta.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет реализации MediaStorage: локальную с шардированием по папкам
+ * и S3-совместимую на встроенной заглушке S3 API.
+ */
+class MediaStorageTests {
+
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer s3Stub;
+    private final Map<String, byte[]> s3Objects = new ConcurrentHashMap<>();
+    private final List<String> s3Authorizations = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startS3Stub() throws IOException {
+        s3Stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        s3Stub.createContext("/", this::handleS3Request);
+        s3Stub.start();
+    }
+
+    @AfterEach
+    void stopS3Stub() {
+        s3Stub.stop(0);
+    }
+
+    @Test
+    void localStorageShardsFilesIntoNestedDirectories() throws IOException {
+        Path root = tempDir.resolve("uploads");
+        LocalShardedMediaStorage storage = new LocalShardedMediaStorage(root.toString());
+
+        storage.store("photos/abc.jpg", staged(), "image/jpeg");
+
+        Path stored = storage.localPath("photos/abc.jpg");
+        assertThat(root.relativize(stored).getNameCount()).isEqualTo(4); // photos/xx/yy/abc.jpg
+        assertThat(stored.getFileName().toString()).isEqualTo("abc.jpg");
+        assertThat(Files.readAllBytes(stored)).isEqualTo(CONTENT);
+        assertThat(storage.stat("photos/abc.jpg").getSize()).isEqualTo(CONTENT.length);
+        assertThat(read(storage, "photos/abc.jpg", 4, 3)).isEqualTo("456");
+
+        storage.delete("photos/abc.jpg");
+        assertThat(storage.stat("photos/abc.jpg")).isNull();
+    }
+
+    @Test
+    void localStorageReadsFilesFromFlatLegacyLayout() throws IOException {
+        Path root = tempDir.resolve("uploads");
+        Files.createDirectories(root.resolve("photos"));
+        Files.write(root.resolve("photos/legacy.jpg"), CONTENT);
+        LocalShardedMediaStorage storage = new LocalShardedMediaStorage(root.toString());
+
+        // Старые записи в БД хранят путь с префиксом "uploads/"
+        assertThat(storage.stat("uploads/photos/legacy.jpg").getSize()).isEqualTo(CONTENT.length);
+        assertThat(read(storage, "photos/legacy.jpg", 0, 4)).isEqualTo("0123");
+
+        storage.delete("uploads/photos/legacy.jpg");
+        assertThat(Files.exists(root.resolve("photos/legacy.jpg"))).isFalse();
+    }
+
+    @Test
+    void keysEscapingTheStorageAreRejected() {
+        assertThat(MediaStorage.normalizeKey("uploads/photos/a.jpg")).isEqualTo("photos/a.jpg");
+        assertThat(MediaStorage.normalizeKey("../pom.xml")).isNull();
+        assertThat(MediaStorage.normalizeKey("photos/../../pom.xml")).isNull();
+        assertThat(MediaStorage.normalizeKey("/etc/passwd")).isNull();
+        assertThat(MediaStorage.normalizeKey("photos//a.jpg")).isNull();
+        assertThat(MediaStorage.normalizeKey("")).isNull();
+    }
+
+    @Test
+    void s3StorageStoresReadsAndDeletesObjects() throws IOException {
+        S3MediaStorage storage = new S3MediaStorage("http://127.0.0.1:" + s3Stub.getAddress().getPort(),
+                "us-east-1", "media", "test-access-key", "test-secret-key", "prod");
+
+        Path source = staged();
+        storage.store("photos/abc.jpg", source, "image/jpeg");
+
+        assertThat(Files.exists(source)).isFalse();
+        assertThat(s3Objects).containsKey("/media/prod/photos/abc.jpg");
+        assertThat(storage.localPath("photos/abc.jpg")).isNull();
+        assertThat(storage.stat("photos/abc.jpg").getSize()).isEqualTo(CONTENT.length);
+        assertThat(read(storage, "photos/abc.jpg", 10, 6)).isEqualTo("abcdef");
+
+        storage.delete("photos/abc.jpg");
+        assertThat(storage.stat("photos/abc.jpg")).isNull();
+        assertThatThrownBy(() -> storage.openRange("photos/abc.jpg", 0, 1)).isInstanceOf(NoSuchFileException.class);
+
+        assertThat(s3Authorizations).allSatisfy(authorization -> assertThat(authorization)
+                .matches("AWS4-HMAC-SHA256 Credential=test-access-key/\\d{8}/us-east-1/s3/aws4_request, "
+                        + "SignedHeaders=host;x-amz-content-sha256;x-amz-date, Signature=[0-9a-f]{64}"));
+    }
+
+    private Path staged() throws IOException {
+        Path file = Files.createTempFile(tempDir, "staged", ".tmp");
+        Files.write(file, CONTENT);
+        return file;
+    }
+
+    private static String read(MediaStorage storage, String key, long offset, long length) throws IOException {
+        try (InputStream input = storage.openRange(key, offset, length)) {
+            return new String(input.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Минимальная заглушка S3 API: PUT, HEAD, GET с Range и DELETE объекта по пути.
+     */
+    private void handleS3Request(HttpExchange exchange) throws IOException {
+        s3Authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+        String path = exchange.getRequestURI().getRawPath();
+        byte[] object = s3Objects.get(path);
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                s3Objects.put(path, exchange.getRequestBody().readAllBytes());
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "DELETE" -> {
+                s3Objects.remove(path);
+                exchange.sendResponseHeaders(204, -1);
+            }
+            case "HEAD" -> {
+                if (object == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.getResponseHeaders().set("Last-Modified",
+                            DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+                    exchange.sendResponseHeaders(200, -1);
+                }
+            }
+            case "GET" -> {
+                if (object == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    break;
+                }
+                Matcher range = Pattern.compile("bytes=(\\d+)-(\\d+)")
+                        .matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+                byte[] body = range.matches()
+                        ? Arrays.copyOfRange(object, Integer.parseInt(range.group(1)), Integer.parseInt(range.group(2)) + 1)
+                        : object;
+                exchange.sendResponseHeaders(range.matches() ? 206 : 200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            default -> exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+}
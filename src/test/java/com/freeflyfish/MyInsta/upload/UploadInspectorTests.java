@@ -0,0 +1,131 @@
+package com.freeflyfish.MyInsta.upload;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет однопроходную проверку загрузок: формат по сигнатуре, размеры из заголовка,
+ * хэш и ранний отказ без чтения остатка файла.
+ */
+class UploadInspectorTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final UploadInspector inspector =
+            new UploadInspector(DataSize.ofMegabytes(1), DataSize.ofMegabytes(2), DataSize.ofMegabytes(4), 10_000_000);
+
+    @Test
+    void detectsFormatDimensionsAndHashInOnePass() throws Exception {
+        byte[] png = image("png", 700, 500);
+        byte[] jpeg = image("jpg", 321, 123);
+
+        Path target = tempDir.resolve("a.part");
+        UploadInspection pngInspection = inspector.copy(new ByteArrayInputStream(png), target);
+        UploadInspection jpegInspection = inspector.inspect(write("b.jpg", jpeg));
+
+        assertThat(pngInspection.getFormat()).isEqualTo(MediaFormat.PNG);
+        assertThat(pngInspection.getWidth()).isEqualTo(700);
+        assertThat(pngInspection.getHeight()).isEqualTo(500);
+        assertThat(pngInspection.getSize()).isEqualTo(png.length);
+        assertThat(pngInspection.getContentHash())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png)));
+        assertThat(Files.readAllBytes(target)).isEqualTo(png);
+
+        assertThat(jpegInspection.getFormat()).isEqualTo(MediaFormat.JPEG);
+        assertThat(jpegInspection.getWidth()).isEqualTo(321);
+        assertThat(jpegInspection.getHeight()).isEqualTo(123);
+    }
+
+    @Test
+    void rejectsUnknownContentAfterFirstBytes() {
+        Path target = tempDir.resolve("fake.part");
+        CountingInputStream source = new CountingInputStream(
+                repeat("<html>not an image</html>".getBytes(StandardCharsets.US_ASCII), 1_000));
+
+        assertThatThrownBy(() -> inspector.copy(source, target))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("формат");
+        assertThat(source.read).isLessThanOrEqualTo(64 * 1024);
+        assertThat(target).doesNotExist();
+    }
+
+    @Test
+    void rejectsOversizedPhotoWithoutReadingTheRest() throws Exception {
+        byte[] png = image("png", 16, 16);
+        byte[] oversized = new byte[8 * 1024 * 1024];
+        System.arraycopy(png, 0, oversized, 0, png.length);
+        Path target = tempDir.resolve("big.part");
+        CountingInputStream source = new CountingInputStream(oversized);
+
+        assertThatThrownBy(() -> inspector.copy(source, target))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("слишком большой");
+        assertThat(source.read).isLessThan(2L * 1024 * 1024);
+        assertThat(target).doesNotExist();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    private static byte[] image(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, output);
+        return output.toByteArray();
+    }
+
+    private static byte[] repeat(byte[] chunk, int times) {
+        byte[] result = new byte[chunk.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(chunk, 0, result, i * chunk.length, chunk.length);
+        }
+        return result;
+    }
+
+    /**
+     * Считает, сколько байт у источника успели прочитать.
+     */
+    private static class CountingInputStream extends InputStream {
+        private final ByteArrayInputStream delegate;
+        private long read;
+
+        private CountingInputStream(byte[] content) {
+            this.delegate = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            int b = delegate.read();
+            if (b != -1) {
+                read++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            int n = delegate.read(buffer, offset, length);
+            if (n > 0) {
+                read += n;
+            }
+            return n;
+        }
+    }
+}
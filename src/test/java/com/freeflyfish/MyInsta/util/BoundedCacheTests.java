@@ -0,0 +1,42 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет, что загрузка, обогнавшая инвалидацию своего ключа, не кладет в кэш старое значение,
+ * а инвалидация другого ключа параллельные загрузки не отбрасывает.
+ */
+class BoundedCacheTests {
+
+    @Test
+    void fillIsDroppedOnlyWhenItsKeyWasInvalidated() {
+        BoundedCache<Long, String> cache = new BoundedCache<>(100, 10_000, value -> 10);
+
+        long stamp = cache.stamp();
+        cache.invalidate(2L);
+        cache.put(1L, "первый", stamp);
+        assertThat(cache.get(1L)).isEqualTo("первый");
+
+        stamp = cache.stamp();
+        cache.invalidate(1L);
+        cache.put(1L, "устаревший", stamp);
+        assertThat(cache.get(1L)).isNull();
+
+        // Новая метка после инвалидации - значение уже актуальное
+        cache.put(1L, "свежий", cache.stamp());
+        assertThat(cache.get(1L)).isEqualTo("свежий");
+    }
+
+    @Test
+    void fillIsDroppedAfterClear() {
+        BoundedCache<Long, String> cache = new BoundedCache<>(100, 10_000, value -> 10);
+
+        long stamp = cache.stamp();
+        cache.invalidateAll();
+        cache.put(1L, "устаревший", stamp);
+
+        assertThat(cache.get(1L)).isNull();
+    }
+}
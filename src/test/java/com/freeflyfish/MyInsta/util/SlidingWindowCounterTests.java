@@ -0,0 +1,78 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет скользящее окно счетчиков и разбор меток из описаний.
+ */
+class SlidingWindowCounterTests {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void countsExpireWhenTheirBucketLeavesTheWindow() {
+        AtomicLong now = new AtomicLong(100 * MINUTE);
+        SlidingWindowCounter counter = new SlidingWindowCounter(60 * MINUTE, 60, now::get);
+
+        counter.add("#old", now.get(), 1);
+        now.addAndGet(30 * MINUTE);
+        counter.add("#new", now.get(), 1);
+        counter.add("#new", now.get(), 1);
+        counter.add("#old", now.get(), 1);
+
+        assertThat(counter.top(10)).extracting(Map.Entry::getKey, Map.Entry::getValue)
+                .containsExactly(org.assertj.core.groups.Tuple.tuple("#new", 2L),
+                        org.assertj.core.groups.Tuple.tuple("#old", 2L));
+
+        // Первое событие #old выходит из окна
+        now.addAndGet(31 * MINUTE);
+        List<Map.Entry<String, Long>> top = counter.top(10);
+        assertThat(top.get(0).getKey()).isEqualTo("#new");
+        assertThat(top).extracting(Map.Entry::getValue).containsExactly(2L, 1L);
+
+        // Все события вышли из окна
+        now.addAndGet(2 * 60 * MINUTE);
+        assertThat(counter.top(10)).isEmpty();
+    }
+
+    @Test
+    void ignoresEventsOlderThanWindowAndSupportsRemoval() {
+        AtomicLong now = new AtomicLong(500 * MINUTE);
+        SlidingWindowCounter counter = new SlidingWindowCounter(60 * MINUTE, 12, now::get);
+
+        counter.add("#a", now.get() - 2 * 60 * MINUTE, 1);
+        counter.add("#b", now.get() - 10 * MINUTE, 1);
+        counter.add("#b", now.get() - 10 * MINUTE, -1);
+        counter.add("#c", now.get(), 1);
+
+        assertThat(counter.top(10)).extracting(Map.Entry::getKey).containsExactly("#c");
+    }
+
+    @Test
+    void topKeepsOnlyTheMostFrequentKeys() {
+        AtomicLong now = new AtomicLong(MINUTE);
+        SlidingWindowCounter counter = new SlidingWindowCounter(60 * MINUTE, 60, now::get);
+        for (int i = 1; i <= 20; i++) {
+            for (int j = 0; j < i; j++) {
+                counter.add("#tag" + i, now.get(), 1);
+            }
+        }
+
+        assertThat(counter.top(3)).extracting(Map.Entry::getKey).containsExactly("#tag20", "#tag19", "#tag18");
+    }
+
+    @Test
+    void extractsHashtagsAndMentions() {
+        assertThat(TagParser.extract("Вечер #Закат и #sea_view с @Alice. Пишите на mail@host.com #1 a#b #закат"))
+                .containsExactly("#закат", "#sea_view", "@alice");
+        assertThat(TagParser.normalize("Закат")).isEqualTo("#закат");
+        assertThat(TagParser.normalize("@Alice")).isEqualTo("@alice");
+        assertThat(TagParser.normalize("#")).isNull();
+    }
+}
@@ -0,0 +1,78 @@
+package com.freeflyfish.MyInsta.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет, что значение счетчика не теряет и не удваивает пакет, записываемый в БД во время чтения.
+ */
+class StripedCounterBufferTests {
+
+    @Test
+    void readOverlappingCommitIsRetried() throws Exception {
+        StripedCounterBuffer buffer = new StripedCounterBuffer();
+        AtomicLong stored = new AtomicLong();
+        AtomicInteger storedReads = new AtomicInteger();
+        CountDownLatch storedRead = new CountDownLatch(1);
+        CountDownLatch flushed = new CountDownLatch(1);
+        buffer.add(1L, 5);
+
+        // Читатель получает значение из БД до фиксации, а изменения из буфера - уже после нее
+        CompletableFuture<Long> reader = CompletableFuture.supplyAsync(() -> buffer.read(1L, () -> {
+            long value = stored.get();
+            if (storedReads.getAndIncrement() == 0) {
+                storedRead.countDown();
+                await(flushed);
+            }
+            return value;
+        }));
+
+        await(storedRead);
+        buffer.flush((deltas, beforeCommit) -> {
+            beforeCommit.run();
+            stored.addAndGet(deltas.get(1L));
+        });
+        flushed.countDown();
+
+        assertThat(reader.get(5, TimeUnit.SECONDS)).isEqualTo(5);
+        assertThat(storedReads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failedWriteReturnsDeltasToBuffer() {
+        StripedCounterBuffer buffer = new StripedCounterBuffer();
+        buffer.add(1L, 3);
+
+        assertThatThrownBy(() -> buffer.flush((deltas, beforeCommit) -> {
+            beforeCommit.run();
+            throw new IllegalStateException("commit failed");
+        })).isInstanceOf(IllegalStateException.class);
+        buffer.add(1L, 1);
+
+        assertThat(buffer.read(1L, () -> 0)).isEqualTo(4);
+        AtomicLong written = new AtomicLong();
+        buffer.flush((deltas, beforeCommit) -> {
+            beforeCommit.run();
+            written.set(deltas.get(1L));
+        });
+        assertThat(written.get()).isEqualTo(4);
+        assertThat(buffer.read(1L, written::get)).isEqualTo(4);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
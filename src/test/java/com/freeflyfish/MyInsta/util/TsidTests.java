@@ -0,0 +1,83 @@
+package com.freeflyfish.MyInsta.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.freeflyfish.MyInsta.dto.PostDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет, что ID растут, не повторяются между потоками и без потерь читаются как число в JavaScript.
+ */
+class TsidTests {
+
+    // Number.MAX_SAFE_INTEGER
+    private static final long MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+    @Test
+    void idsGrowAndFitIntoJavaScriptNumber() {
+        long previous = 0;
+        // Больше, чем помещается в одну миллисекунду, - генератор занимает следующие
+        for (int i = 0; i < 100_000; i++) {
+            long id = Tsid.next();
+            assertThat(id).isGreaterThan(previous).isLessThanOrEqualTo(MAX_SAFE_INTEGER);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idsFromConcurrentThreadsAreUnique() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(Tsid.next());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(ids).hasSize(80_000);
+    }
+
+    @Test
+    void nodeOutsideFiveBitsIsRejected() {
+        // Лишние биты не отбрасываются молча: иначе узлы 1 и 33 выдавали бы одинаковые ID
+        assertThatThrownBy(() -> Tsid.useNode(32)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Tsid.useNode(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void serializedIdIsAnExactJsonNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        // Подряд идущие ID отличаются младшими битами - именно их теряет double
+        for (int i = 0; i < 1000; i++) {
+            long id = Tsid.next();
+            PostDTO post = new PostDTO();
+            post.setId(id);
+
+            JsonNode node = objectMapper.readTree(objectMapper.writeValueAsString(post)).get("id");
+
+            assertThat(node.isIntegralNumber()).isTrue();
+            // Так число прочитает JSON.parse в браузере
+            assertThat((long) Double.parseDouble(node.asText())).isEqualTo(id);
+        }
+    }
+}